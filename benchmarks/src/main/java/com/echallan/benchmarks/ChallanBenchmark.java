@@ -0,0 +1,71 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Challan;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/** Per-object costs of {@link Challan}: rendering, overdue checks and the two ways of constructing one. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChallanBenchmark {
+    private static final int SIZE = 1024;
+
+    private Challan[] challans;
+    private LocalDate today;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void create() {
+        Datasets.pinClock();
+        today = Challan.today();
+        challans = new Challan[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            challans[i] = Datasets.challan(i);
+        }
+    }
+
+    private Challan nextChallan() {
+        return challans[next++ & (SIZE - 1)];
+    }
+
+    @Benchmark
+    public String toStringLine() {
+        return nextChallan().toString();
+    }
+
+    @Benchmark
+    public boolean isOverdue() {
+        return nextChallan().isOverdue();
+    }
+
+    @Benchmark
+    public boolean isOverdueOnDay() {
+        return nextChallan().isOverdue(today);
+    }
+
+    @Benchmark
+    public double getTotalAmount() {
+        return nextChallan().getTotalAmount();
+    }
+
+    /** What Database does for every row it reads back. */
+    @Benchmark
+    public Challan hydrate() {
+        Challan c = nextChallan();
+        return new Challan(c.getChallanId(), c.getVehicleNumber(), c.getViolation(), c.getFine(), c.getStatus(),
+                c.getIssueDate(), c.getDueDate(), c.getLocation(), c.getDueDay());
+    }
+
+    /** Issuing a new challan, which stamps and formats the current time. */
+    @Benchmark
+    public Challan issue() {
+        Challan c = nextChallan();
+        return new Challan(c.getChallanId(), c.getVehicleNumber(), c.getViolation(), c.getFine(), c.getLocation());
+    }
+}
@@ -0,0 +1,63 @@
+package com.echallan.benchmarks;
+
+import com.echallan.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers and a writer sharing one {@link Database}, as the GUI and an import do. Shows whether reads keep
+ * their latency while the single pooled writer is busy; compare against a run with {@code -p readerCount=1}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrencyBenchmark {
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"4"})
+    public int readerCount;
+
+    private Path file;
+    private Database database;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        file = Datasets.copy(Datasets.prepare(rows));
+        Datasets.silenceOutput();
+        database = new Database(Datasets.config(file).setReaderCount(readerCount));
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+        Datasets.discard(file);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public ChallanPage read() {
+        return database.getChallansPage(ChallanFilter.pending(), null, 200);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean write() {
+        long id;
+        synchronized (this) {
+            id = nextId++;
+        }
+        return database.addChallan(Datasets.challan("MIX", id));
+    }
+}
@@ -0,0 +1,102 @@
+package com.echallan.benchmarks;
+
+import com.echallan.ConnectionPool;
+import com.echallan.DatabaseConfig;
+import com.echallan.PooledConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same fixed queries through a {@link ConnectionPool} reader with its statement cache, and through a
+ * connection opened per call with {@link DriverManager#getConnection(String)} and a statement prepared per
+ * call, as every {@code Database} method did before the pool. {@code lookup} fetches one challan by ID;
+ * {@code count} reads the pending count, a query cheap enough that the connection is most of the cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class ConnectionBenchmark {
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private static final String LOOKUP = "SELECT challan_id, vehicle_number, violation, fine, status, issue_date, "
+            + "due_date, location FROM challans WHERE challan_id = ?";
+    private static final String COUNT = "SELECT pending FROM challan_stats WHERE dimension = 'all'";
+
+    private String url;
+    private ConnectionPool pool;
+    private final SplittableRandom random = new SplittableRandom(Datasets.SEED);
+
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows));
+        url = config.getUrl();
+        pool = new ConnectionPool(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        pool.close();
+    }
+
+    private String nextId() {
+        return Datasets.challan(random.nextInt(rows)).getChallanId();
+    }
+
+    @Benchmark
+    public String pooledLookup() throws SQLException {
+        try (PooledConnection conn = pool.reader()) {
+            PreparedStatement pstmt = conn.prepare(LOOKUP);
+            pstmt.setString(1, nextId());
+            return lookup(pstmt);
+        }
+    }
+
+    @Benchmark
+    public String perCallLookup() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement(LOOKUP)) {
+            pstmt.setString(1, nextId());
+            return lookup(pstmt);
+        }
+    }
+
+    @Benchmark
+    public long pooledCount() throws SQLException {
+        try (PooledConnection conn = pool.reader()) {
+            return count(conn.prepare(COUNT));
+        }
+    }
+
+    @Benchmark
+    public long perCallCount() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url);
+             PreparedStatement pstmt = conn.prepareStatement(COUNT)) {
+            return count(pstmt);
+        }
+    }
+
+    private static String lookup(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) throw new IllegalStateException("Missing challan");
+            // Read every column, as building a Challan does
+            StringBuilder row = new StringBuilder(128);
+            for (int i = 1; i <= 8; i++) {
+                row.append(rs.getString(i));
+            }
+            return row.toString();
+        }
+    }
+
+    private static long count(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.echallan.benchmarks;
+
+import com.echallan.BulkInsertResult;
+import com.echallan.Challan;
+import com.echallan.Database;
+import com.echallan.DatabaseConfig;
+import com.echallan.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible synthetic challans for the benchmarks. Row {@code i} is derived only from {@link #SEED} and
+ * {@code i}, so any row (for example a plate to search for) can be regenerated without the database, and
+ * every run on every machine sees the same data. The clock is pinned to {@link #TODAY} so overdue counts
+ * do not drift with the calendar.
+ */
+public final class Datasets {
+    public static final long SEED = 0x5EEDC4A11A4L;
+    public static final LocalDate TODAY = LocalDate.of(2025, 6, 30);
+
+    // Bump when the generator changes so cached database files are rebuilt
+    private static final int VERSION = 1;
+
+    private static final String[] STATES = {"KA", "MH", "DL", "TN", "UP", "GJ", "RJ", "WB", "KL", "TS"};
+    private static final String[] VIOLATIONS = {"Speeding", "Red Light Jump", "No Helmet", "No Seat Belt",
+            "Wrong Parking", "Drunk Driving", "Using Mobile", "No License"};
+    private static final double[] FINES = {500, 1000, 1000, 1000, 500, 10000, 5000, 5000};
+    private static final String[] LOCATIONS = new String[50];
+    static {
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            LOCATIONS[i] = "Junction " + (i + 1);
+        }
+    }
+    // Issue dates spread over the two years before TODAY
+    private static final int ISSUE_SPAN_DAYS = 730;
+
+    private static final PrintStream STDOUT = System.out;
+    private static final Log.Level LOG_LEVEL = Log.getLevel();
+
+    private Datasets() {
+    }
+
+    /** Pins {@link Challan}'s clock to noon UTC on {@link #TODAY}. */
+    public static void pinClock() {
+        Challan.setClock(Clock.fixed(TODAY.atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    /**
+     * Keeps Database's INFO messages (dataset generation, cache loads, imports) out of the measurement:
+     * they are not even queued, and anything already queued is written to a null stream.
+     * {@link #restoreOutput()} undoes it.
+     */
+    public static void silenceOutput() {
+        Log.setLevel(Log.Level.WARN);
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public static void restoreOutput() {
+        Log.flush();
+        System.setOut(STDOUT);
+        Log.setLevel(LOG_LEVEL);
+    }
+
+    /** The {@code index}-th synthetic challan. */
+    public static Challan challan(long index) {
+        return challan("BENCH", index);
+    }
+
+    /** Like {@link #challan(long)} but with an ID prefix, so writers can add rows that never collide. */
+    public static Challan challan(String idPrefix, long index) {
+        SplittableRandom random = new SplittableRandom(SEED ^ (index * 0x9E3779B97F4A7C15L));
+        int violation = random.nextInt(VIOLATIONS.length);
+        LocalDate issueDay = TODAY.minusDays(random.nextInt(ISSUE_SPAN_DAYS));
+        LocalDate dueDay = issueDay.plusDays(30);
+        // Older challans are more likely to have been paid
+        boolean paid = random.nextInt(ISSUE_SPAN_DAYS) < TODAY.toEpochDay() - issueDay.toEpochDay();
+        String issueDate = issueDay.format(Challan.DUE_DATE_FORMAT)
+                + String.format(" %02d:%02d", 6 + random.nextInt(16), random.nextInt(60));
+        return new Challan(idPrefix + String.format("%010d", index), plate(random), VIOLATIONS[violation],
+                FINES[violation], paid ? "PAID" : "PENDING", issueDate, dueDay.format(Challan.DUE_DATE_FORMAT),
+                LOCATIONS[random.nextInt(LOCATIONS.length)], dueDay.toEpochDay());
+    }
+
+    /** The plate of row {@code index}, e.g. {@code "KA 05 MJ 4821"}. */
+    public static String plate(long index) {
+        return challan(index).getVehicleNumber();
+    }
+
+    private static String plate(SplittableRandom random) {
+        return STATES[random.nextInt(STATES.length)] + " "
+                + String.format("%02d", 1 + random.nextInt(60)) + " "
+                + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26)) + " "
+                + String.format("%04d", random.nextInt(10000));
+    }
+
+    /** Rows {@code [from, to)} as a lazy iterator, for bulk inserts that should not hold the data in memory. */
+    public static Iterator<Challan> range(String idPrefix, long from, long to) {
+        return new Iterator<>() {
+            private long next = from;
+
+            @Override
+            public boolean hasNext() { return next < to; }
+
+            @Override
+            public Challan next() {
+                if (next >= to) throw new NoSuchElementException();
+                return challan(idPrefix, next++);
+            }
+        };
+    }
+
+    /**
+     * Path of a SQLite file holding rows {@code [0, rows)}, generated on first use and then reused from
+     * {@code java.io.tmpdir/echallan-bench}, since building the 10M-row file takes minutes. Benchmarks that
+     * write must work on a {@link #copy(Path)} so the shared file stays pristine.
+     */
+    public static synchronized Path prepare(int rows) {
+        Path dir = Path.of(System.getProperty("java.io.tmpdir"), "echallan-bench");
+        Path file = dir.resolve("challans-v" + VERSION + "-" + rows + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Files.createDirectories(dir);
+            Path partial = dir.resolve(file.getFileName() + ".partial");
+            deleteDatabase(partial);
+            STDOUT.println("Generating " + rows + " challans into " + file);
+            BulkInsertResult result = new BulkInsertResult();
+            try (Database database = new Database(config(partial).setBulkCommitSize(20_000))) {
+                database.addChallans(range("BENCH", 0, rows), result);
+            }
+            if (result.getInserted() != rows) {
+                throw new IllegalStateException("Dataset generation inserted " + result.getInserted() + " of " + rows + " rows");
+            }
+            STDOUT.println("Generated " + rows + " challans: " + result);
+            // The pool checkpoints the WAL on close, so the main file is complete on its own
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** A private copy of a prepared dataset in a new temp directory. */
+    public static Path copy(Path dataset) {
+        try {
+            Path dir = Files.createTempDirectory("echallan-bench");
+            Path target = dir.resolve(dataset.getFileName());
+            Files.copy(dataset, target);
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Deletes a database made by {@link #copy(Path)} along with its temp directory. */
+    public static void discard(Path file) {
+        deleteDatabase(file);
+        try {
+            Files.deleteIfExists(file.getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static DatabaseConfig config(Path file) {
+        // No background penalty accrual competing with the measured work; PenaltyAccrualBenchmark runs it itself
+        return new DatabaseConfig("jdbc:sqlite:" + file.toAbsolutePath()).setPenaltyIntervalMinutes(0);
+    }
+
+    /** Removes a database file together with its WAL and shared-memory files. */
+    public static void deleteDatabase(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(Path.of(file + "-wal"));
+            Files.deleteIfExists(Path.of(file + "-shm"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
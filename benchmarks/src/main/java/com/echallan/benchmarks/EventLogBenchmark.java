@@ -0,0 +1,74 @@
+package com.echallan.benchmarks;
+
+import com.echallan.ChallanEvent;
+import com.echallan.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Change log reads on a copy of a prepared dataset whose log holds one ISSUED event per row, as if every
+ * row had been inserted after the log existed. {@code page} reads {@code limit} events after a random
+ * cursor, as a consumer catching up does; {@code caughtUp} asks past the newest event, the poll a
+ * subscriber that is up to date makes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class EventLogBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"100", "1000"})
+    public int limit;
+
+    private Path copy;
+    private Database database;
+    private long latest;
+    private final SplittableRandom random = new SplittableRandom(Datasets.SEED);
+
+    @Setup(Level.Trial)
+    public void open() throws SQLException {
+        Datasets.pinClock();
+        copy = Datasets.copy(Datasets.prepare(rows));
+        Datasets.silenceOutput();
+        database = new Database(Datasets.config(copy).setOptimizeOnOpen(false).setEventRetentionDays(0)
+                .setEventRetentionRows(0));
+        database.warmup().join();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + copy.toAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("INSERT INTO challan_events (type, challan_id, vehicle_number, violation, fine, status, "
+                    + "issue_date, due_date, location, penalty_amount, recorded_at) SELECT 'ISSUED', challan_id, "
+                    + "vehicle_number, violation, fine, status, issue_date, due_date, location, penalty_amount, 0 "
+                    + "FROM challans ORDER BY rowid");
+        }
+        latest = database.getLatestEventSeq();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.discard(copy);
+        Datasets.restoreOutput();
+    }
+
+    @Benchmark
+    public List<ChallanEvent> page() {
+        return database.readEventsSince(random.nextLong(latest - limit), limit);
+    }
+
+    @Benchmark
+    public List<ChallanEvent> caughtUp() {
+        return database.readEventsSince(latest, limit);
+    }
+}
@@ -0,0 +1,67 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Challan;
+import com.echallan.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable single-row writes from many threads through the group-commit pipeline. {@code writeBatchSize=1}
+ * is the baseline of one transaction (and one fsync) per write; compare it with larger batches and with
+ * {@code durableWrites=false}. Scores are writes per second across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class GroupCommitBenchmark {
+    @Param({"1", "256"})
+    public int writeBatchSize;
+
+    @Param({"0", "2"})
+    public long writeBatchDelayMillis;
+
+    @Param({"true"})
+    public boolean durableWrites;
+
+    private Path file;
+    private Database database;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        file = Datasets.copy(Datasets.prepare(10_000));
+        Datasets.silenceOutput();
+        database = new Database(Datasets.config(file)
+                .setWriteBatchSize(writeBatchSize)
+                .setWriteBatchDelayMillis(writeBatchDelayMillis)
+                .setDurableWrites(durableWrites));
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+        Datasets.discard(file);
+    }
+
+    @Benchmark
+    public boolean addChallan() {
+        return database.addChallan(Datasets.challan("GROUP", nextId.getAndIncrement()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean issueAndPay() {
+        Challan challan = Datasets.challan("PAY", nextId.getAndIncrement());
+        return database.addChallan(challan) && database.payChallan(challan.getChallanId());
+    }
+}
@@ -0,0 +1,44 @@
+package com.echallan.benchmarks;
+
+import com.echallan.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link SnowflakeIdGenerator} with every thread sharing one generator, the worst case for its
+ * compare-and-set loop. One node is capped at 4,096 IDs per millisecond, so the aggregate score tops out
+ * near 4M ops/s. Run {@link IdUniquenessCheck} for the duplicate check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+    private SnowflakeIdGenerator generator;
+
+    @Setup(Level.Trial)
+    public void create() {
+        generator = new SnowflakeIdGenerator(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long nextLongUncontended() {
+        return generator.nextLong();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long nextLongContended() {
+        return generator.nextLong();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String nextIdContended() {
+        return generator.nextId();
+    }
+}
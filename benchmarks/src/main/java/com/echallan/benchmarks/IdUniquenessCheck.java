@@ -0,0 +1,75 @@
+package com.echallan.benchmarks;
+
+import com.echallan.SnowflakeIdGenerator;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Multi-threaded duplicate check for {@link SnowflakeIdGenerator}: several threads draw from one generator
+ * as fast as they can, then every ID is sorted and compared with its neighbour. Prints the rate and exits
+ * with status 1 if any ID repeats.
+ *
+ * <pre>java -cp target/benchmarks.jar com.echallan.benchmarks.IdUniquenessCheck [threads] [idsPerThread]</pre>
+ */
+public final class IdUniquenessCheck {
+    private IdUniquenessCheck() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1);
+        long[][] ids = new long[threads][perThread];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] out = ids[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < out.length; i++) {
+                    out[i] = generator.nextLong();
+                }
+            });
+            workers[t].start();
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - began;
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            // Each thread's IDs must already be strictly increasing
+            for (int i = 1; i < perThread; i++) {
+                if (ids[t][i] <= ids[t][i - 1]) {
+                    System.out.println("Thread " + t + " saw a non-increasing ID at position " + i);
+                    System.exit(1);
+                }
+            }
+            System.arraycopy(ids[t], 0, all, t * perThread, perThread);
+        }
+        Arrays.sort(all);
+        long duplicates = 0;
+        for (int i = 1; i < all.length; i++) {
+            if (all[i] == all[i - 1]) duplicates++;
+        }
+
+        System.out.printf("%d threads generated %,d IDs in %d ms: %,.0f IDs/s, %d duplicates%n",
+                threads, all.length, elapsed / 1_000_000, all.length * 1e9 / elapsed, duplicates);
+        System.out.println("First " + SnowflakeIdGenerator.PREFIX + SnowflakeIdGenerator.toText(all[0])
+                + ", last " + SnowflakeIdGenerator.PREFIX + SnowflakeIdGenerator.toText(all[all.length - 1]));
+        if (duplicates > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Challan;
+import com.echallan.ChallanServer;
+import com.echallan.Database;
+import com.echallan.RemoteChallanStore;
+import com.echallan.SnowflakeIdGenerator;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end write load against a {@link ChallanServer}: N clients, each on its own virtual thread with its
+ * own {@link RemoteChallanStore}, repeatedly issue a challan and then pay it, for a fixed time. Prints
+ * throughput and latency percentiles for each operation. Without a server URL it starts an embedded server
+ * on a scratch copy of the 10k-row dataset and reports how many writes shared each commit.
+ *
+ * <pre>java -cp target/benchmarks.jar com.echallan.benchmarks.LoadGenerator [clients] [seconds] [server-url]</pre>
+ */
+public final class LoadGenerator {
+    // Captured before the embedded server's logging is silenced
+    private static final PrintStream OUT = System.out;
+    private static final String[] VIOLATIONS = {"Over Speeding", "Signal Jump", "No Helmet", "Parking Violation"};
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String serverUrl = args.length > 2 ? args[2] : null;
+
+        Path file = null;
+        Database database = null;
+        ChallanServer server = null;
+        if (serverUrl == null) {
+            Datasets.silenceOutput();
+            file = Datasets.copy(Datasets.prepare(10_000));
+            database = new Database(Datasets.config(file));
+            database.warmup().join();
+            server = new ChallanServer(database, 0);
+            server.start();
+            serverUrl = "http://localhost:" + server.getPort();
+        }
+
+        try {
+            run(clients, seconds, serverUrl);
+            if (database != null) {
+                long writes = database.getWritePipeline().getWriteCount();
+                long commits = database.getWritePipeline().getCommitCount();
+                OUT.printf("Embedded server: %,d writes in %,d commits (%.1f writes per commit)%n",
+                        writes, commits, commits > 0 ? (double) writes / commits : 0);
+            }
+        } finally {
+            if (server != null) server.close();
+            if (database != null) database.close();
+            if (file != null) Datasets.discard(file);
+            Datasets.restoreOutput();
+        }
+    }
+
+    private static void run(int clients, int seconds, String serverUrl) throws InterruptedException {
+        // Fresh IDs on every run, so the same server can be loaded repeatedly
+        SnowflakeIdGenerator ids = new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_NODE_ID);
+        List<long[]> issueTimes = new ArrayList<>();
+        List<long[]> payTimes = new ArrayList<>();
+        LongAdder failures = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        LatencyLog[] issueLogs = new LatencyLog[clients];
+        LatencyLog[] payLogs = new LatencyLog[clients];
+
+        for (int c = 0; c < clients; c++) {
+            LatencyLog issued = issueLogs[c] = new LatencyLog();
+            LatencyLog paid = payLogs[c] = new LatencyLog();
+            int client = c;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try (RemoteChallanStore store = new RemoteChallanStore(serverUrl)) {
+                    start.await();
+                    for (long i = 0; System.nanoTime() < deadline[0]; i++) {
+                        Challan challan = new Challan(ids.nextId(), Datasets.plate(client * 1_000_000L + i),
+                                VIOLATIONS[(int) (i % VIOLATIONS.length)], 1000, "Junction " + (client % 50 + 1));
+                        long began = System.nanoTime();
+                        boolean ok = store.addChallan(challan);
+                        issued.add(System.nanoTime() - began);
+                        if (!ok) {
+                            failures.increment();
+                            continue;
+                        }
+                        began = System.nanoTime();
+                        if (!store.payChallan(challan.getChallanId())) failures.increment();
+                        paid.add(System.nanoTime() - began);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        OUT.println("Running " + clients + " clients against " + serverUrl + " for " + seconds + "s");
+        deadline[0] = System.nanoTime() + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (LatencyLog log : issueLogs) issueTimes.add(log.values());
+        for (LatencyLog log : payLogs) payTimes.add(log.values());
+        report("issue", issueTimes, seconds);
+        report("pay", payTimes, seconds);
+        OUT.println("Failed operations: " + failures.sum());
+    }
+
+    private static void report(String operation, List<long[]> perClient, int seconds) {
+        long[] all = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            OUT.println(operation + ": no operations completed");
+            return;
+        }
+        OUT.printf("%-5s %,10d ops  %,9.0f ops/s  p50 %6.2f ms  p99 %6.2f ms  max %7.2f ms%n",
+                operation, all.length, (double) all.length / seconds,
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, all[all.length - 1] / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /** Growable array of nanosecond latencies, owned by one client thread. */
+    private static final class LatencyLog {
+        private long[] values = new long[4096];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        long[] values() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
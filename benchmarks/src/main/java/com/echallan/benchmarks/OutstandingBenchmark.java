@@ -0,0 +1,61 @@
+package com.echallan.benchmarks;
+
+import com.echallan.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Database#getOutstanding(String)} for plates picked across a prepared dataset, sampled so the
+ * result carries p99 latency. Dataset plates are nearly all distinct and about half of the rows are
+ * pending, so the 10M dataset puts roughly 5M vehicles in the index. {@code outstandingIndex=false}
+ * measures the SQL aggregate the lookup falls back to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class OutstandingBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean outstandingIndex;
+
+    // Enough targets that lookups reach all over the table instead of a few cached slots
+    private static final int TARGETS = 1 << 16;
+
+    private Database database;
+    private String[] plates;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows)).setOutstandingIndex(outstandingIndex);
+        Datasets.silenceOutput();
+        database = new Database(config);
+        database.warmup().join();
+
+        // Plates as an officer would type them, with spaces; about half of them owe nothing
+        SplittableRandom random = new SplittableRandom(Datasets.SEED);
+        plates = new String[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            plates[i] = Datasets.plate(random.nextInt(rows));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+    }
+
+    @Benchmark
+    public Outstanding getOutstanding() {
+        return database.getOutstanding(plates[next++ & (TARGETS - 1)]);
+    }
+}
@@ -0,0 +1,95 @@
+package com.echallan.benchmarks;
+
+import com.echallan.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overdue detection in SQL against the path it replaced. The 2M-row dataset holds 1,001,707 pending
+ * challans, 918,865 of them overdue on {@link Datasets#TODAY}. {@code sql*} run the indexed
+ * {@code (status, due_day)} range scan and aggregate; {@code java*} load every pending row and check each
+ * with the old per-row {@code isOverdue()}, which built a formatter and parsed the due date every call, and
+ * priced the penalty as 10% of the fine in Java.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx8g"})
+public class OverdueBenchmark {
+    @Param({"2000000"})
+    public int rows;
+
+    private Database database;
+    // The old check compared against LocalDateTime.now(); pinned so both paths agree on what is overdue
+    private final LocalDateTime now = Datasets.TODAY.atTime(12, 0);
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows));
+        Datasets.silenceOutput();
+        database = new Database(config);
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+    }
+
+    @Benchmark
+    public List<Challan> sqlOverdue() {
+        return database.getOverdueChallans();
+    }
+
+    @Benchmark
+    public ChallanSummary sqlSummary() {
+        return database.getSummary(ChallanFilter.overdue(Challan.today()));
+    }
+
+    @Benchmark
+    public List<Challan> javaOverdue() {
+        List<Challan> overdue = new ArrayList<>();
+        for (Challan challan : database.getPendingChallans()) {
+            if (legacyIsOverdue(challan)) {
+                overdue.add(challan);
+            }
+        }
+        return overdue;
+    }
+
+    @Benchmark
+    public ChallanSummary javaSummary() {
+        long count = 0;
+        double totalFine = 0;
+        double totalPenalty = 0;
+        for (Challan challan : database.getPendingChallans()) {
+            if (legacyIsOverdue(challan)) {
+                count++;
+                totalFine += challan.getFine();
+                totalPenalty += challan.getFine() * 0.1;
+            }
+        }
+        return new ChallanSummary(count, totalFine, count, totalPenalty);
+    }
+
+    // Challan.isOverdue() as it was before due_day
+    private boolean legacyIsOverdue(Challan challan) {
+        if ("PAID".equals(challan.getStatus())) return false;
+        try {
+            LocalDateTime due = LocalDateTime.parse(challan.getDueDate() + " 23:59",
+                    DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+            return now.isAfter(due);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
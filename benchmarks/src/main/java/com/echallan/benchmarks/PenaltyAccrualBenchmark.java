@@ -0,0 +1,78 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Challan;
+import com.echallan.Database;
+import com.echallan.PenaltyRun;
+import com.echallan.PenaltySchedule;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Penalty accrual on a fresh copy of a prepared dataset, about half of whose rows are pending and most of
+ * those overdue. {@code full} is the first accrual after the migration, which prices every pending row
+ * under the default rules; {@code daily} is the next day's run under a three-tier schedule, which only
+ * touches the rows whose days overdue reach a tier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class PenaltyAccrualBenchmark {
+    private static final PenaltySchedule SCHEDULE = new PenaltySchedule(List.of(
+            new PenaltySchedule.Tier(PenaltySchedule.ANY, 1, 0.10),
+            new PenaltySchedule.Tier(PenaltySchedule.ANY, 30, 0.20),
+            new PenaltySchedule.Tier(PenaltySchedule.ANY, 90, 0.30)));
+
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"full", "daily"})
+    public String run;
+
+    private Path dataset;
+    private Path copy;
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Datasets.pinClock();
+        dataset = Datasets.prepare(rows);
+        Datasets.silenceOutput();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() {
+        Datasets.restoreOutput();
+    }
+
+    @Setup(Level.Invocation)
+    public void open() {
+        Datasets.pinClock();
+        copy = Datasets.copy(dataset);
+        database = new Database(Datasets.config(copy).setOptimizeOnOpen(false));
+        database.warmup().join();
+        if (run.equals("daily")) {
+            // Prices every pending row as of today, then moves on a day
+            database.setPenaltySchedule(SCHEDULE);
+            Challan.setClock(Clock.fixed(Datasets.TODAY.plusDays(1).atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        database.close();
+        Datasets.discard(copy);
+    }
+
+    @Benchmark
+    public PenaltyRun accrue() {
+        return database.accruePenalties();
+    }
+}
@@ -0,0 +1,59 @@
+package com.echallan.benchmarks;
+
+import com.echallan.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkpoint lookups, {@link Database#getOutstanding(String)}, for plates with no challan at all against a
+ * prepared dataset without the dues index, so every lookup the {@link PendingPlateFilter} cannot rule out
+ * is a SQL aggregate. {@code plateFilter=false} is that aggregate for every plate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class PlateFilterBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean plateFilter;
+
+    private static final int TARGETS = 1 << 16;
+
+    private Database database;
+    private String[] plates;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows)).setPendingPlateFilter(plateFilter);
+        Datasets.silenceOutput();
+        database = new Database(config);
+        database.warmup().join();
+
+        // Plates of rows past the dataset: drawn like dataset plates, but almost never issued a challan
+        SplittableRandom random = new SplittableRandom(Datasets.SEED);
+        plates = new String[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            plates[i] = Datasets.plate(rows + random.nextInt(rows));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+    }
+
+    @Benchmark
+    public Outstanding getOutstanding() {
+        return database.getOutstanding(plates[next++ & (TARGETS - 1)]);
+    }
+}
@@ -0,0 +1,125 @@
+package com.echallan.benchmarks;
+
+import com.echallan.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths of {@link Database} against a prepared dataset. Searches are sampled so the JSON result
+ * carries p50/p99 latencies as well as the mean. Materializing every row of the 10M dataset needs a
+ * large heap; run it with {@code -jvmArgsAppend -Xmx12g} or limit {@code -p rows}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx8g"})
+public class QueryBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    /** Rows held by the in-memory cache; 0 measures the SQLite paths. */
+    @Param({"0"})
+    public int memoryCacheRows;
+
+    private static final int TARGETS = 1024;
+
+    private Database database;
+    private String[] plates;
+    private String[] prefixes;
+    private String[] fragments;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows)).setMemoryCacheRows(memoryCacheRows);
+        Datasets.silenceOutput();
+        database = new Database(config);
+        database.warmup().join();
+
+        // Search for plates that exist, picked reproducibly across the whole dataset
+        SplittableRandom random = new SplittableRandom(Datasets.SEED);
+        plates = new String[TARGETS];
+        prefixes = new String[TARGETS];
+        fragments = new String[TARGETS];
+        for (int i = 0; i < TARGETS; i++) {
+            String key = PlateNumbers.normalize(Datasets.plate(random.nextInt(rows)));
+            plates[i] = key;
+            prefixes[i] = key.substring(0, 6);
+            fragments[i] = key.substring(key.length() - 5);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+    }
+
+    private int nextTarget() {
+        return next++ & (TARGETS - 1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<Challan> searchExact() {
+        return database.searchByVehicle(plates[nextTarget()], SearchMode.EXACT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<Challan> searchPrefix() {
+        return database.searchByVehicle(prefixes[nextTarget()], SearchMode.PREFIX);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<Challan> searchSubstring() {
+        return database.searchByVehicle(fragments[nextTarget()], SearchMode.SUBSTRING);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Challan> getAllChallans() {
+        return database.getAllChallans();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean forEachChallan(Blackhole blackhole) {
+        return database.forEachChallan(ChallanFilter.all(), blackhole::consume);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Challan> getOverdueChallans() {
+        return database.getOverdueChallans();
+    }
+
+    @Benchmark
+    public ChallanPage firstPage() {
+        return database.getChallansPage(ChallanFilter.all(), null, 200);
+    }
+
+    @Benchmark
+    public ChallanPage firstOverduePage() {
+        return database.getChallansPage(ChallanFilter.overdue(Challan.today()), null, 200);
+    }
+
+    @Benchmark
+    public ChallanSummary overdueSummary() {
+        return database.getSummary(ChallanFilter.overdue(Challan.today()));
+    }
+
+    @Benchmark
+    public Map<String, Object> getStatistics() {
+        return database.getStatistics();
+    }
+}
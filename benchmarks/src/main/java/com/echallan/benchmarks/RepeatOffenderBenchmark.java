@@ -0,0 +1,67 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Challan;
+import com.echallan.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issuance throughput with repeat-offender detection off ({@code repeatOffenderThreshold=0}) and on.
+ * Challans are issued at the pinned current time to a pool of {@code plates} vehicles, so with detection
+ * on most issuances find a full ring and refresh a flag. Scores are issuances per second across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class RepeatOffenderBenchmark {
+    @Param({"0", "3"})
+    public int repeatOffenderThreshold;
+
+    @Param({"10000"})
+    public int plates;
+
+    @Param({"false"})
+    public boolean durableWrites;
+
+    private Path file;
+    private Database database;
+    private String[] plateNumbers;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        plateNumbers = new String[plates];
+        for (int i = 0; i < plates; i++) {
+            plateNumbers[i] = Datasets.plate(i);
+        }
+        file = Datasets.copy(Datasets.prepare(10_000));
+        Datasets.silenceOutput();
+        database = new Database(Datasets.config(file)
+                .setWriteBatchSize(256)
+                .setDurableWrites(durableWrites)
+                .setRepeatOffenderThreshold(repeatOffenderThreshold));
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+        Datasets.discard(file);
+    }
+
+    @Benchmark
+    public boolean addChallan() {
+        long id = nextId.getAndIncrement();
+        return database.addChallan(new Challan("REPEAT" + id, plateNumbers[(int) (id % plates)],
+                "Speeding", 1000, "MG Road"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.echallan.benchmarks;
+
+import com.echallan.ChallanReport;
+import com.echallan.Database;
+import com.echallan.DatabaseConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full {@link Database#getReport()} over a prepared dataset: every row scanned once and aggregated by
+ * location, violation, hour and month. The pool gets one reader per core, so the scan uses every core;
+ * {@code workers} caps that to measure scaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class ReportBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    // 0 uses every core
+    @Param({"0"})
+    public int workers;
+
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        int readers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        DatabaseConfig config = Datasets.config(Datasets.prepare(rows)).setReaderCount(readers).setOptimizeOnOpen(false);
+        Datasets.silenceOutput();
+        database = new Database(config);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+    }
+
+    @Benchmark
+    public ChallanReport report() {
+        return database.getReport();
+    }
+}
@@ -0,0 +1,76 @@
+package com.echallan.benchmarks;
+
+import com.echallan.ChallanSettlement;
+import com.echallan.Database;
+import com.echallan.SettlementResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settles a reconciliation file listing every challan of a prepared dataset, in a scrambled order as a
+ * bank would report payments, against a fresh copy of the dataset with the dues index on. About half
+ * the rows are pending and get paid; the rest are reported as already paid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class SettlementBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private Path dataset;
+    private Path file;
+    private Path copy;
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        Datasets.pinClock();
+        dataset = Datasets.prepare(rows);
+        file = Files.createTempFile("echallan-settlement", ".txt");
+        // Visits every index once: the multiplier is odd, so it is coprime with any power of two above rows
+        long span = Long.highestOneBit(rows) << 1;
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (long i = 0; i < span; i++) {
+                long index = (i * 0x9E3779B97F4A7C15L) & (span - 1);
+                if (index < rows) {
+                    writer.write(Datasets.challan(index).getChallanId());
+                    writer.newLine();
+                }
+            }
+        }
+        Datasets.silenceOutput();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        Datasets.restoreOutput();
+        Files.deleteIfExists(file);
+    }
+
+    @Setup(Level.Invocation)
+    public void open() {
+        copy = Datasets.copy(dataset);
+        database = new Database(Datasets.config(copy).setOutstandingIndex(true).setOptimizeOnOpen(false));
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        database.close();
+        Datasets.discard(copy);
+    }
+
+    @Benchmark
+    public SettlementResult settle() throws IOException {
+        return new ChallanSettlement(database).settleFile(file);
+    }
+}
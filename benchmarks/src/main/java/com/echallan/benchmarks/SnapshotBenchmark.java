@@ -0,0 +1,80 @@
+package com.echallan.benchmarks;
+
+import com.echallan.BulkInsertResult;
+import com.echallan.ChallanSnapshot;
+import com.echallan.Database;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-table {@link ChallanSnapshot} export from a prepared dataset, and import of that snapshot into an
+ * empty database through the bulk insert path. Each invocation moves every row once, so throughput in rows
+ * per second is {@code rows / score}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SnapshotBenchmark {
+    @Param({"1000000", "10000000"})
+    public int rows;
+
+    private Path dataset;
+    private Path directory;
+    private Path snapshot;
+    private Path target;
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        Datasets.pinClock();
+        dataset = Datasets.prepare(rows);
+        directory = Files.createTempDirectory("echallan-snapshot");
+        snapshot = directory.resolve("challans" + ChallanSnapshot.EXTENSION);
+        Datasets.silenceOutput();
+        try (Database source = new Database(Datasets.config(dataset).setOptimizeOnOpen(false))) {
+            new ChallanSnapshot(source).export(snapshot);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanUp() throws IOException {
+        Datasets.restoreOutput();
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(directory.resolve("export" + ChallanSnapshot.EXTENSION));
+        Files.deleteIfExists(directory);
+    }
+
+    @Setup(Level.Invocation)
+    public void open(BenchmarkParams params) {
+        // export reads the shared dataset; import writes into a new, empty file
+        boolean importing = params.getBenchmark().endsWith("importSnapshot");
+        target = importing ? directory.resolve("import.db") : null;
+        database = new Database(Datasets.config(importing ? target : dataset).setOptimizeOnOpen(false));
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        database.close();
+        if (target != null) {
+            Datasets.deleteDatabase(target);
+        }
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        return new ChallanSnapshot(database).export(directory.resolve("export" + ChallanSnapshot.EXTENSION));
+    }
+
+    @Benchmark
+    public BulkInsertResult importSnapshot() throws IOException {
+        return new ChallanSnapshot(database).importSnapshot(snapshot);
+    }
+}
@@ -0,0 +1,59 @@
+package com.echallan.benchmarks;
+
+import com.echallan.Database;
+import com.echallan.DatabaseConfig;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from {@code new Database(...)} to the first statistics read, with the desktop app's settings, on
+ * an already migrated file. This is the database's share of time-to-usable-window; the cache load and
+ * {@code PRAGMA optimize} that follow run in the background and are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private Path file;
+    private Database database;
+
+    @Setup(Level.Trial)
+    public void prepare() {
+        Datasets.pinClock();
+        file = Datasets.prepare(rows);
+        Datasets.silenceOutput();
+        // Migrates a file generated by an older build once, outside the measurement
+        try (Database migrated = new Database(config())) {
+            migrated.warmup().join();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        Datasets.restoreOutput();
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        database.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> openToFirstRead() {
+        database = new Database(config());
+        return database.getStatistics();
+    }
+
+    private DatabaseConfig config() {
+        return Datasets.config(file).setMemoryCacheRows(2_000_000);
+    }
+}
@@ -0,0 +1,66 @@
+package com.echallan.benchmarks;
+
+import com.echallan.BulkInsertResult;
+import com.echallan.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert paths of {@link Database} on a private copy of a prepared dataset, so index and trigger costs
+ * reflect a table of realistic size. Every inserted row has a fresh ID, so the table grows during the
+ * trial. Bulk results are reported per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WriteBenchmark {
+    private static final int BULK_ROWS = 10_000;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private Path file;
+    private Database database;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void open() {
+        Datasets.pinClock();
+        file = Datasets.copy(Datasets.prepare(rows));
+        Datasets.silenceOutput();
+        database = new Database(Datasets.config(file));
+        database.warmup().join();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        database.close();
+        Datasets.restoreOutput();
+        Datasets.discard(file);
+    }
+
+    @Benchmark
+    public boolean addChallan() {
+        return database.addChallan(Datasets.challan("ADD", nextId++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_ROWS)
+    public BulkInsertResult addChallansBulk() {
+        BulkInsertResult result = new BulkInsertResult();
+        database.addChallans(Datasets.range("BULK", nextId, nextId + BULK_ROWS), result);
+        nextId += BULK_ROWS;
+        return result;
+    }
+
+    @Benchmark
+    public boolean payChallan() {
+        // Paying an already paid challan still runs the update and its statistics trigger
+        return database.payChallan(Datasets.challan(nextId++ % rows).getChallanId());
+    }
+}
@@ -0,0 +1,64 @@
+package com.echallan;
+
+import java.util.*;
+
+/**
+ * Outcome of a bulk ingest: how many rows were inserted and which rows were rejected.
+ * Failures are counted in full but only the first {@link #MAX_RECORDED_FAILURES} are kept,
+ * so a feed full of duplicates cannot exhaust memory.
+ */
+public class BulkInsertResult {
+    public static final int MAX_RECORDED_FAILURES = 10_000;
+
+    /** A rejected input row; {@code position} is its 1-based line or item number in the source. */
+    public record Failure(long position, String challanId, String reason) {
+        @Override
+        public String toString() {
+            return "#" + position + " " + (challanId != null ? challanId : "-") + ": " + reason;
+        }
+    }
+
+    private long inserted;
+    private long failed;
+    private long elapsedNanos;
+    private final List<Failure> failures = new ArrayList<>();
+
+    void addInserted(long count) {
+        inserted += count;
+    }
+
+    void addFailure(long position, String challanId, String reason) {
+        failed++;
+        if (failures.size() < MAX_RECORDED_FAILURES) {
+            failures.add(new Failure(position, challanId, reason));
+        }
+    }
+
+    void merge(BulkInsertResult other) {
+        inserted += other.inserted;
+        failed += other.failed;
+        for (Failure failure : other.failures) {
+            if (failures.size() >= MAX_RECORDED_FAILURES) break;
+            failures.add(failure);
+        }
+    }
+
+    void addElapsedNanos(long nanos) {
+        elapsedNanos += nanos;
+    }
+
+    public long getInserted() { return inserted; }
+    public long getFailed() { return failed; }
+    public List<Failure> getFailures() { return Collections.unmodifiableList(failures); }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : inserted * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Inserted " + inserted + " rows, rejected " + failed
+                + String.format(" (%.0f rows/s)", getRowsPerSecond());
+    }
+}
@@ -1,9 +1,28 @@
 package com.echallan;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
 public class Challan {
+    // Share of the fine added once a challan is past its due date, under PenaltySchedule.DEFAULT
+    public static final double PENALTY_RATE = 0.1;
+
+    // Formatters are immutable and thread-safe, so every instance shares them
+    public static final DateTimeFormatter ISSUE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    public static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    /** Returned by {@link #getDueDay()} when the due date is missing or not a date. */
+    public static final long NO_DUE_DAY = Long.MIN_VALUE;
+    // dueDay has not been derived from dueDate yet
+    private static final long DUE_DAY_UNKNOWN = Long.MIN_VALUE + 1;
+
+    private static Clock clock = Clock.systemDefaultZone();
+
     private String challanId;
     private String vehicleNumber;
     private String violation;
@@ -12,6 +31,13 @@ public class Challan {
     private String issueDate;
     private String dueDate;
     private String location;
+    // Materialized by the daily penalty accrual; frozen once the challan is paid
+    private double penaltyAmount;
+
+    // Due date as an epoch day, and the overdue answer cached for the day it was computed on
+    private long dueDay = DUE_DAY_UNKNOWN;
+    private long overdueCheckedDay = Long.MIN_VALUE;
+    private boolean overdue;
 
     public Challan(String challanId, String vehicleNumber, String violation, double fine) {
         this.challanId = challanId;
@@ -21,12 +47,13 @@ public class Challan {
         this.status = "PENDING";
 
         // Set issue date to current date
-        LocalDateTime now = LocalDateTime.now();
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-        this.issueDate = now.format(formatter);
+        LocalDateTime now = LocalDateTime.now(clock);
+        this.issueDate = now.format(ISSUE_DATE_FORMAT);
 
         // Set due date to 30 days from issue date
-        this.dueDate = now.plusDays(30).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        LocalDate due = now.toLocalDate().plusDays(30);
+        this.dueDate = due.format(DUE_DATE_FORMAT);
+        this.dueDay = due.toEpochDay();
 
         this.location = "Not Specified";
     }
@@ -37,6 +64,44 @@ public class Challan {
         this.location = location != null ? location : "Not Specified";
     }
 
+    /**
+     * Hydration constructor for rows read back from storage: takes every field as stored and does no
+     * clock reads or date formatting. {@code dueDay} is the due date as an epoch day, or
+     * {@link #NO_DUE_DAY} to derive it from {@code dueDate} on first use.
+     */
+    public Challan(String challanId, String vehicleNumber, String violation, double fine, String status,
+                   String issueDate, String dueDate, String location, long dueDay) {
+        this(challanId, vehicleNumber, violation, fine, status, issueDate, dueDate, location, dueDay, 0);
+    }
+
+    /** Hydration constructor that also takes the stored {@code penalty_amount}. */
+    public Challan(String challanId, String vehicleNumber, String violation, double fine, String status,
+                   String issueDate, String dueDate, String location, long dueDay, double penaltyAmount) {
+        this.challanId = challanId;
+        this.vehicleNumber = vehicleNumber;
+        this.violation = violation;
+        this.fine = fine;
+        this.status = status;
+        this.issueDate = issueDate;
+        this.dueDate = dueDate;
+        this.location = location;
+        this.dueDay = dueDay != NO_DUE_DAY ? dueDay : DUE_DAY_UNKNOWN;
+        this.penaltyAmount = penaltyAmount;
+    }
+
+    /** Replaces the clock used for new issue dates and overdue checks; intended for tests and benchmarks. */
+    public static void setClock(Clock newClock) {
+        clock = newClock;
+    }
+
+    public static LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    public static LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
     // Getters
     public String getChallanId() { return challanId; }
     public String getVehicleNumber() { return vehicleNumber; }
@@ -48,44 +113,80 @@ public class Challan {
     public String getLocation() { return location; }
 
     // Setters
-    public void setStatus(String status) { this.status = status; }
+    public void setStatus(String status) {
+        this.status = status;
+        this.overdueCheckedDay = Long.MIN_VALUE;
+    }
     public void setIssueDate(String issueDate) { this.issueDate = issueDate; }
-    public void setDueDate(String dueDate) { this.dueDate = dueDate; }
+    public void setDueDate(String dueDate) {
+        this.dueDate = dueDate;
+        this.dueDay = DUE_DAY_UNKNOWN;
+        this.overdueCheckedDay = Long.MIN_VALUE;
+    }
     public void setLocation(String location) { this.location = location; }
+    public void setPenaltyAmount(double penaltyAmount) { this.penaltyAmount = penaltyAmount; }
+
+    /** Due date as an epoch day, parsed from {@link #getDueDate()} at most once; {@link #NO_DUE_DAY} if it is not a date. */
+    public long getDueDay() {
+        if (dueDay == DUE_DAY_UNKNOWN) {
+            try {
+                dueDay = LocalDate.parse(dueDate.length() > 10 ? dueDate.substring(0, 10) : dueDate, DUE_DATE_FORMAT).toEpochDay();
+            } catch (DateTimeParseException | NullPointerException e) {
+                dueDay = NO_DUE_DAY;
+            }
+        }
+        return dueDay;
+    }
 
     // Check if challan is overdue
     public boolean isOverdue() {
-        if ("PAID".equals(status)) return false;
-        try {
-            LocalDateTime due = LocalDateTime.parse(dueDate + " 23:59",
-                    DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
-            return LocalDateTime.now().isAfter(due);
-        } catch (Exception e) {
-            return false;
+        return isOverdue(today());
+    }
+
+    /** Overdue once the whole due day has passed; the answer is cached per {@code today}. */
+    public boolean isOverdue(LocalDate today) {
+        long day = today.toEpochDay();
+        if (day != overdueCheckedDay) {
+            long due = getDueDay();
+            overdue = !"PAID".equals(status) && due != NO_DUE_DAY && day > due;
+            overdueCheckedDay = day;
         }
+        return overdue;
     }
 
-    // Get penalty amount for overdue challans
+    /**
+     * Late-payment penalty as stored by the last daily accrual ({@link Database#accruePenalties()}), not
+     * recomputed here; a paid challan keeps the penalty it had when it was paid.
+     */
     public double getPenaltyAmount() {
-        return isOverdue() ? fine * 0.1 : 0; // 10% penalty
+        return penaltyAmount;
     }
 
     // Get total amount including penalty
     public double getTotalAmount() {
-        return fine + getPenaltyAmount();
+        return fine + penaltyAmount;
+    }
+
+    /** Two-decimal rendering of a rupee amount, rounding half up like {@code %.2f}. */
+    public static String formatAmount(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP).toPlainString();
     }
 
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        // Evaluate the date-dependent state once for the whole line
+        boolean isOverdue = isOverdue(today());
+        double penalty = penaltyAmount;
+
+        StringBuilder sb = new StringBuilder(160);
         sb.append("ID: ").append(challanId)
                 .append(" | Vehicle: ").append(vehicleNumber)
                 .append(" | Violation: ").append(violation)
                 .append(" | Fine: ₹").append(fine);
 
-        if (getPenaltyAmount() > 0) {
-            sb.append(" | Penalty: ₹").append(String.format("%.2f", getPenaltyAmount()));
-            sb.append(" | Total: ₹").append(String.format("%.2f", getTotalAmount()));
+        if (penalty > 0) {
+            sb.append(" | Penalty: ₹").append(formatAmount(penalty));
+            sb.append(" | Total: ₹").append(formatAmount(fine + penalty));
         }
 
         sb.append(" | Status: ").append(status)
@@ -93,10 +194,10 @@ public class Challan {
                 .append(" | Due: ").append(dueDate)
                 .append(" | Location: ").append(location);
 
-        if (isOverdue() && !"PAID".equals(status)) {
+        if (isOverdue) {
             sb.append(" [OVERDUE]");
         }
 
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Cold storage for settled challans. PAID rows issued before a cutoff move out of the hot {@code challans}
+ * table into one table per issue month ({@code challans_archive_YYYYMM}), so listings, the memory cache
+ * and pending-only queries no longer carry history that can never change again. The month tables are
+ * WITHOUT ROWID tables clustered on {@code challan_id} and appended to in key order, which keeps their
+ * pages full and saves the separate primary-key index the hot table needs.
+ *
+ * <p>{@link #ARCHIVED_VIEW} is the union of every month table and {@link #HISTORY_VIEW} adds the hot
+ * table, so historical queries and the statistics check see every challan ever issued. The
+ * {@code challan_archives} registry lists the months; the archived view is regenerated from it whenever a
+ * month is added.
+ */
+final class ChallanArchive {
+    static final String ARCHIVED_VIEW = "challans_archived";
+    static final String HISTORY_VIEW = "challans_history";
+    // Shared by the hot table, the month tables and both views; due_day is stored once archived
+    static final String COLUMNS = "challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location, due_day, vehicle_key, "
+            + "penalty_amount";
+    // The view columns as migration 6 shipped them, before penalty_amount; migration 7 recreates the views
+    private static final String COLUMNS_V6 = "challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location, due_day, vehicle_key";
+
+    private ChallanArchive() {
+    }
+
+    /** Schema migration 6: the month registry and the two views, empty until the first row is archived. */
+    static void install(PooledConnection conn) throws SQLException {
+        install(conn, COLUMNS_V6);
+    }
+
+    private static void install(PooledConnection conn, String columns) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS challan_archives (
+                    month TEXT PRIMARY KEY,
+                    table_name TEXT NOT NULL,
+                    row_count INTEGER NOT NULL DEFAULT 0
+                ) WITHOUT ROWID
+            """);
+            createArchivedView(conn.getConnection(), columns);
+            stmt.execute("CREATE VIEW IF NOT EXISTS " + HISTORY_VIEW + " AS SELECT " + columns + " FROM challans "
+                    + "UNION ALL SELECT " + columns + " FROM " + ARCHIVED_VIEW);
+        }
+    }
+
+    /**
+     * Schema migration: gives month tables archived before penalties were materialized a
+     * {@code penalty_amount} column, and recreates both views to carry it.
+     */
+    static void addPenalties(PooledConnection conn) throws SQLException {
+        Connection connection = conn.getConnection();
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT table_name FROM challan_archives")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        try (Statement stmt = connection.createStatement()) {
+            for (String table : tables) {
+                boolean exists;
+                try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM pragma_table_info('" + table + "') WHERE name = 'penalty_amount'")) {
+                    exists = rs.next();
+                }
+                if (!exists) {
+                    stmt.execute("ALTER TABLE " + table + " ADD COLUMN penalty_amount REAL NOT NULL DEFAULT 0");
+                }
+            }
+            stmt.execute("DROP VIEW IF EXISTS " + HISTORY_VIEW);
+        }
+        install(conn, COLUMNS);
+    }
+
+    /** Rows held in month tables, read from the registry rather than counted. */
+    static long archivedRows(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT TOTAL(row_count) FROM challan_archives").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Moves up to {@code limit} of the oldest PAID challans issued before {@code cutoff} (an ISO date) into
+     * their month tables, in the caller's transaction, and returns their IDs. The statistics summary is
+     * credited before the delete so its totals keep counting the moved rows.
+     */
+    static List<String> archiveChunk(PooledConnection conn, String cutoff, int limit) throws SQLException {
+        Connection connection = conn.getConnection();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS archive_batch (id INTEGER PRIMARY KEY, month TEXT NOT NULL)");
+            stmt.execute("DELETE FROM temp.archive_batch");
+        }
+
+        // Walks idx_challans_status_issue from the oldest paid row; dates that do not start with a month stay hot
+        PreparedStatement select = conn.prepare("SELECT rowid, challan_id, substr(issue_date, 1, 7) FROM challans "
+                + "WHERE status = 'PAID' AND issue_date < ? AND substr(issue_date, 1, 7) GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]' "
+                + "ORDER BY issue_date LIMIT ?");
+        select.setString(1, cutoff);
+        select.setInt(2, limit);
+        List<String> ids = new ArrayList<>();
+        Map<String, Integer> months = new TreeMap<>();
+        PreparedStatement mark = conn.prepare("INSERT INTO temp.archive_batch (id, month) VALUES (?, ?)");
+        try (ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                String month = rs.getString(3);
+                mark.setLong(1, rs.getLong(1));
+                mark.setString(2, month);
+                mark.addBatch();
+                ids.add(rs.getString(2));
+                months.merge(month, 1, Integer::sum);
+            }
+        }
+        if (ids.isEmpty()) return ids;
+        mark.executeBatch();
+
+        boolean newMonth = false;
+        for (Map.Entry<String, Integer> entry : months.entrySet()) {
+            String table = tableName(entry.getKey());
+            newMonth |= createMonth(connection, entry.getKey(), table);
+            // A plain INSERT: an ID already in the archive fails the chunk rather than losing either row
+            PreparedStatement copy = conn.prepare("INSERT INTO " + table + " (" + COLUMNS + ") SELECT "
+                    + prefixed("c") + " FROM challans c JOIN temp.archive_batch b ON c.rowid = b.id "
+                    + "WHERE b.month = ? ORDER BY c.challan_id");
+            copy.setString(1, entry.getKey());
+            copy.executeUpdate();
+            PreparedStatement count = conn.prepare("UPDATE challan_archives SET row_count = row_count + ? WHERE month = ?");
+            count.setInt(1, entry.getValue());
+            count.setString(2, entry.getKey());
+            count.executeUpdate();
+        }
+        if (newMonth) {
+            createArchivedView(connection);
+        }
+
+        ChallanStatistics.retainArchived(conn);
+        // The delete trigger logs each row; relabel those events so consumers can tell archiving from deletion
+        long lastSeq = ChallanEvents.latestSeq(conn);
+        conn.prepare("DELETE FROM challans WHERE rowid IN (SELECT id FROM temp.archive_batch)").executeUpdate();
+        ChallanEvents.markArchived(conn, lastSeq);
+        return ids;
+    }
+
+    static String tableName(String month) {
+        return "challans_archive_" + month.replace("-", "");
+    }
+
+    // Returns true if the month was not archived before
+    private static boolean createMonth(Connection conn, String month, String table) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM challan_archives WHERE month = ?")) {
+            pstmt.setString(1, month);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return false;
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "challan_id TEXT PRIMARY KEY, "
+                    + "vehicle_number TEXT NOT NULL, "
+                    + "violation TEXT NOT NULL, "
+                    + "fine REAL NOT NULL, "
+                    + "status TEXT, "
+                    + "issue_date TEXT, "
+                    + "due_date TEXT, "
+                    + "location TEXT, "
+                    + "due_day INTEGER, "
+                    + "vehicle_key TEXT, "
+                    + "penalty_amount REAL NOT NULL DEFAULT 0"
+                    + ") WITHOUT ROWID");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_vehicle_key ON " + table + "(vehicle_key)");
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO challan_archives (month, table_name, row_count) VALUES (?, ?, 0)")) {
+            pstmt.setString(1, month);
+            pstmt.setString(2, table);
+            pstmt.executeUpdate();
+        }
+        Log.info("Created archive table " + table);
+        return true;
+    }
+
+    private static void createArchivedView(Connection conn) throws SQLException {
+        createArchivedView(conn, COLUMNS);
+    }
+
+    private static void createArchivedView(Connection conn, String columns) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT table_name FROM challan_archives ORDER BY month")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        StringBuilder sql = new StringBuilder("CREATE VIEW " + ARCHIVED_VIEW + " AS ");
+        if (tables.isEmpty()) {
+            // Same columns, no rows: keeps the history view valid before anything is archived
+            sql.append("SELECT ").append(columns).append(" FROM challans WHERE 0");
+        } else {
+            for (int i = 0; i < tables.size(); i++) {
+                if (i > 0) sql.append(" UNION ALL ");
+                sql.append("SELECT ").append(columns).append(" FROM ").append(tables.get(i));
+            }
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP VIEW IF EXISTS " + ARCHIVED_VIEW);
+            stmt.execute(sql.toString());
+        }
+    }
+
+    private static String prefixed(String alias) {
+        StringBuilder columns = new StringBuilder();
+        for (String column : COLUMNS.split(", ")) {
+            if (!columns.isEmpty()) columns.append(", ");
+            columns.append(alias).append('.').append(column);
+        }
+        return columns.toString();
+    }
+}
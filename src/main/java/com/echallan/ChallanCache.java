@@ -0,0 +1,557 @@
+package com.echallan;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Write-through, column-oriented copy of the {@code challans} table for views that are refreshed all day.
+ * Each field lives in its own array: fines and penalties in {@code double[]}s, due dates as epoch days in an
+ * {@code int[]}, and status, violation and location as {@code int} codes into per-column dictionaries.
+ * Filters and aggregates are answered by scanning those primitive arrays, so nothing is boxed and no
+ * {@link Challan} is created until a row is actually returned.
+ *
+ * <p>{@link Database} loads the cache once, applies every committed insert, payment and deletion while it
+ * still holds the writer, and answers listings and summaries from here whenever the filter has no plate
+ * search. The cache holds at most {@link DatabaseConfig#getMemoryCacheRows()} rows; past that it drops its
+ * arrays and every query goes back to SQLite.
+ */
+public class ChallanCache {
+    private static final int INITIAL_CAPACITY = 1024;
+    // Status code of a deleted slot, reclaimed by compact()
+    private static final int DELETED = -1;
+    // Filter codes: no restriction, and a value the dictionary has never seen (matches nothing)
+    private static final int ANY = -2;
+    private static final int NO_MATCH = -3;
+    // dueDays entry for a missing or unparseable due date; never counts as overdue
+    private static final int NO_DUE_DAY = Integer.MIN_VALUE;
+
+    private final int maxRows;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Dictionary statuses = new Dictionary();
+    private final Dictionary violations = new Dictionary();
+    private final Dictionary locations = new Dictionary();
+
+    // Column arrays; slots [0, size) are used, deleted slots have status DELETED
+    private String[] ids;
+    private String[] vehicles;
+    private String[] issueDates;
+    private String[] dueDates;
+    private int[] statusCodes;
+    private int[] violationCodes;
+    private int[] locationCodes;
+    private double[] fines;
+    private double[] penalties;
+    private int[] dueDays;
+    private int size;
+    private int deleted;
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+
+    // Slots ascending by (issue_date, challan_id), so listings walk it backwards and new challans, being the
+    // newest, append at the end; rebuilt lazily after an out-of-order insert
+    private int[] order = new int[0];
+    private int orderSize;
+    private boolean orderValid = true;
+
+    private boolean active = true;
+
+    ChallanCache(int maxRows) {
+        if (maxRows < 1) throw new IllegalArgumentException("maxRows must be at least 1");
+        this.maxRows = maxRows;
+        allocate(Math.min(INITIAL_CAPACITY, maxRows));
+    }
+
+    /** False once the table outgrew the row limit; the cache then answers nothing. */
+    public boolean isActive() {
+        lock.readLock().lock();
+        try {
+            return active;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Rough heap footprint of the column arrays, excluding the shared strings themselves. */
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            if (!active) return 0;
+            // Four reference columns, four int columns (including order), two double columns and the id map
+            return (long) ids.length * (4 * 4 + 4 * 4 + 2 * 8 + 48);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Writes, called by Database after the corresponding change has committed
+
+    void add(Challan challan) {
+        lock.writeLock().lock();
+        try {
+            append(challan);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void addAll(List<Challan> challans) {
+        lock.writeLock().lock();
+        try {
+            for (Challan challan : challans) {
+                if (!append(challan)) break;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void markPaid(String challanId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.get(challanId);
+            if (active && slot != null) {
+                statusCodes[slot] = statuses.code("PAID");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Stores penalties changed by an accrual run, by challan ID. */
+    void setPenalties(Map<String, Double> changes) {
+        lock.writeLock().lock();
+        try {
+            if (!active) return;
+            for (Map.Entry<String, Double> change : changes.entrySet()) {
+                Integer slot = slotsById.get(change.getKey());
+                if (slot != null) {
+                    penalties[slot] = change.getValue();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String challanId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = active ? slotsById.remove(challanId) : null;
+            if (slot == null) return;
+            statusCodes[slot] = DELETED;
+            ids[slot] = null;
+            vehicles[slot] = null;
+            issueDates[slot] = null;
+            dueDates[slot] = null;
+            deleted++;
+            if (deleted > INITIAL_CAPACITY && deleted > size / 4) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean append(Challan challan) {
+        if (!active) return false;
+        if (size - deleted >= maxRows) {
+            Log.info("Challan cache limit of " + maxRows + " rows reached; queries will use the database");
+            clear();
+            return false;
+        }
+        if (size == ids.length) {
+            if (deleted > 0) {
+                compact();
+            }
+            if (size == ids.length) {
+                grow();
+            }
+        }
+        int slot = size++;
+        ids[slot] = challan.getChallanId();
+        vehicles[slot] = challan.getVehicleNumber();
+        issueDates[slot] = challan.getIssueDate();
+        dueDates[slot] = challan.getDueDate();
+        statusCodes[slot] = statuses.code(challan.getStatus());
+        violationCodes[slot] = violations.code(challan.getViolation());
+        locationCodes[slot] = locations.code(challan.getLocation());
+        fines[slot] = challan.getFine();
+        penalties[slot] = challan.getPenaltyAmount();
+        long dueDay = challan.getDueDay();
+        dueDays[slot] = dueDay == Challan.NO_DUE_DAY || dueDay < Integer.MIN_VALUE + 1 || dueDay > Integer.MAX_VALUE
+                ? NO_DUE_DAY : (int) dueDay;
+        slotsById.put(ids[slot], slot);
+
+        if (orderValid) {
+            if (orderSize > 0 && compare(order[orderSize - 1], slot) > 0) {
+                orderValid = false;
+            } else {
+                if (orderSize == order.length) {
+                    order = Arrays.copyOf(order, ids.length);
+                }
+                order[orderSize++] = slot;
+            }
+        }
+        return true;
+    }
+
+    private void allocate(int capacity) {
+        ids = new String[capacity];
+        vehicles = new String[capacity];
+        issueDates = new String[capacity];
+        dueDates = new String[capacity];
+        statusCodes = new int[capacity];
+        violationCodes = new int[capacity];
+        locationCodes = new int[capacity];
+        fines = new double[capacity];
+        penalties = new double[capacity];
+        dueDays = new int[capacity];
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) maxRows, Math.max(ids.length * 2L, INITIAL_CAPACITY));
+        capacity = Math.max(capacity, size + 1);
+        ids = Arrays.copyOf(ids, capacity);
+        vehicles = Arrays.copyOf(vehicles, capacity);
+        issueDates = Arrays.copyOf(issueDates, capacity);
+        dueDates = Arrays.copyOf(dueDates, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        violationCodes = Arrays.copyOf(violationCodes, capacity);
+        locationCodes = Arrays.copyOf(locationCodes, capacity);
+        fines = Arrays.copyOf(fines, capacity);
+        penalties = Arrays.copyOf(penalties, capacity);
+        dueDays = Arrays.copyOf(dueDays, capacity);
+    }
+
+    /** Squeezes out deleted slots in place, keeping the listing order valid if it was. */
+    private void compact() {
+        int[] newSlot = new int[size];
+        int next = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (statusCodes[slot] == DELETED) {
+                newSlot[slot] = -1;
+                continue;
+            }
+            newSlot[slot] = next;
+            if (next != slot) {
+                ids[next] = ids[slot];
+                vehicles[next] = vehicles[slot];
+                issueDates[next] = issueDates[slot];
+                dueDates[next] = dueDates[slot];
+                statusCodes[next] = statusCodes[slot];
+                violationCodes[next] = violationCodes[slot];
+                locationCodes[next] = locationCodes[slot];
+                fines[next] = fines[slot];
+                penalties[next] = penalties[slot];
+                dueDays[next] = dueDays[slot];
+                slotsById.put(ids[next], next);
+            }
+            next++;
+        }
+        Arrays.fill(ids, next, size, null);
+        Arrays.fill(vehicles, next, size, null);
+        Arrays.fill(issueDates, next, size, null);
+        Arrays.fill(dueDates, next, size, null);
+        size = next;
+        deleted = 0;
+
+        if (orderValid) {
+            int kept = 0;
+            for (int i = 0; i < orderSize; i++) {
+                int mapped = newSlot[order[i]];
+                if (mapped >= 0) {
+                    order[kept++] = mapped;
+                }
+            }
+            orderSize = kept;
+        }
+    }
+
+    private void clear() {
+        active = false;
+        allocate(0);
+        order = new int[0];
+        orderSize = 0;
+        size = 0;
+        deleted = 0;
+        slotsById.clear();
+    }
+
+    // Reads
+
+    /**
+     * Count, fine total, overdue count and pending penalties for {@code filter}, or null when the cache cannot answer it
+     * (plate searches, or the cache is inactive) and the caller should ask the database.
+     */
+    ChallanSummary summarize(ChallanFilter filter) {
+        lock.readLock().lock();
+        try {
+            Matcher matcher = matcher(filter);
+            if (matcher == null) return null;
+            int today = (int) Challan.today().toEpochDay();
+            long count = 0;
+            long overdueCount = 0;
+            double totalFine = 0;
+            double totalPenalty = 0;
+            int pending = statuses.find("PENDING");
+            for (int slot = 0; slot < size; slot++) {
+                if (!matcher.matches(slot)) continue;
+                count++;
+                totalFine += fines[slot];
+                if (statusCodes[slot] == pending) {
+                    totalPenalty += penalties[slot];
+                    if (dueDays[slot] != NO_DUE_DAY && dueDays[slot] < today) {
+                        overdueCount++;
+                    }
+                }
+            }
+            return new ChallanSummary(count, totalFine, overdueCount, totalPenalty);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Same contract as {@link Database#getChallansPage}, or null when the cache cannot answer it. */
+    ChallanPage page(ChallanFilter filter, ChallanPage.Cursor after, int limit) {
+        ensureOrder();
+        lock.readLock().lock();
+        try {
+            Matcher matcher = matcher(filter);
+            if (matcher == null || !orderValid) return null;
+            List<Challan> challans = new ArrayList<>(Math.min(limit, 1000));
+            int start = after == null ? orderSize - 1 : lastBefore(after);
+            for (int i = start; i >= 0; i--) {
+                int slot = order[i];
+                if (!matcher.matches(slot)) continue;
+                if (challans.size() == limit) {
+                    return new ChallanPage(challans, ChallanPage.Cursor.after(challans.get(limit - 1)));
+                }
+                challans.add(hydrate(slot));
+            }
+            return new ChallanPage(challans, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Rows {@code [offset, offset + limit)} of the default listing order, or null when the cache cannot answer. */
+    List<Challan> rows(ChallanFilter filter, int offset, int limit) {
+        ensureOrder();
+        lock.readLock().lock();
+        try {
+            Matcher matcher = matcher(filter);
+            if (matcher == null || !orderValid) return null;
+            List<Challan> challans = new ArrayList<>(Math.min(limit, 1000));
+            int skipped = 0;
+            for (int i = orderSize - 1; i >= 0 && challans.size() < limit; i--) {
+                int slot = order[i];
+                if (!matcher.matches(slot)) continue;
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    challans.add(hydrate(slot));
+                }
+            }
+            return challans;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands every matching challan to {@code consumer} in listing order while holding the read lock, so
+     * consumers must not call back into the database. Returns false when the cache cannot answer.
+     */
+    boolean forEach(ChallanFilter filter, Consumer<Challan> consumer) {
+        ensureOrder();
+        lock.readLock().lock();
+        try {
+            Matcher matcher = matcher(filter);
+            if (matcher == null || !orderValid) return false;
+            for (int i = orderSize - 1; i >= 0; i--) {
+                int slot = order[i];
+                if (matcher.matches(slot)) {
+                    consumer.accept(hydrate(slot));
+                }
+            }
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Challan hydrate(int slot) {
+        return new Challan(ids[slot], vehicles[slot], violations.value(violationCodes[slot]), fines[slot],
+                statuses.value(statusCodes[slot]), issueDates[slot], dueDates[slot],
+                locations.value(locationCodes[slot]), dueDays[slot] == NO_DUE_DAY ? Challan.NO_DUE_DAY : dueDays[slot],
+                penalties[slot]);
+    }
+
+    /** Per-row predicate over the primitive columns; built once per query. */
+    private final class Matcher {
+        private final int status;
+        private final int violation;
+        private final int overdueBefore;
+        private final int pending;
+
+        Matcher(int status, int violation, int overdueBefore, int pending) {
+            this.status = status;
+            this.violation = violation;
+            this.overdueBefore = overdueBefore;
+            this.pending = pending;
+        }
+
+        boolean matches(int slot) {
+            int code = statusCodes[slot];
+            if (code == DELETED) return false;
+            if (status != ANY && code != status) return false;
+            if (violation != ANY && violationCodes[slot] != violation) return false;
+            if (overdueBefore != NO_DUE_DAY) {
+                return code == pending && dueDays[slot] != NO_DUE_DAY && dueDays[slot] < overdueBefore;
+            }
+            return true;
+        }
+    }
+
+    // Returns null when the filter needs the database; call with the read lock held
+    private Matcher matcher(ChallanFilter filter) {
+        if (!active || filter.vehicleNumber() != null) return null;
+        int status = ANY;
+        if (filter.status() != null) {
+            int code = statuses.find(filter.status());
+            status = code >= 0 ? code : NO_MATCH;
+        }
+        int violation = ANY;
+        if (filter.violation() != null) {
+            int code = violations.find(filter.violation());
+            violation = code >= 0 ? code : NO_MATCH;
+        }
+        int overdueBefore = NO_DUE_DAY;
+        int pending = statuses.find("PENDING");
+        if (filter.overdueAsOf() != null) {
+            LocalDate day = filter.overdueAsOf();
+            overdueBefore = (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, day.toEpochDay()));
+            if (pending < 0) pending = NO_MATCH;
+        }
+        return new Matcher(status, violation, overdueBefore, pending);
+    }
+
+    // Position in order of the last row that sorts strictly below the cursor, i.e. the next one listed
+    private int lastBefore(ChallanPage.Cursor after) {
+        int low = 0;
+        int high = orderSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int slot = order[mid];
+            if (compareKeys(issueDates[slot], ids[slot], after.issueDate(), after.challanId()) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private void ensureOrder() {
+        lock.readLock().lock();
+        try {
+            if (orderValid || !active) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (!orderValid && active) {
+                rebuildOrder();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildOrder() {
+        int[] slots = new int[size - deleted];
+        int n = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (statusCodes[slot] != DELETED) {
+                slots[n++] = slot;
+            }
+        }
+        mergeSort(slots, new int[n], 0, n);
+        order = slots.length >= ids.length ? slots : Arrays.copyOf(slots, ids.length);
+        orderSize = n;
+        orderValid = true;
+    }
+
+    // Stable merge sort of slot numbers by compare(), avoiding Integer boxing
+    private void mergeSort(int[] a, int[] tmp, int from, int to) {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        mergeSort(a, tmp, from, mid);
+        mergeSort(a, tmp, mid, to);
+        if (compare(a[mid - 1], a[mid]) <= 0) return;
+        System.arraycopy(a, from, tmp, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compare(tmp[i], tmp[j]) <= 0)) {
+                a[k] = tmp[i++];
+            } else {
+                a[k] = tmp[j++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        return compareKeys(issueDates[a], ids[a], issueDates[b], ids[b]);
+    }
+
+    // Ascending (issue_date, challan_id) with NULL first, as SQLite orders them
+    private static int compareKeys(String issueA, String idA, String issueB, String idB) {
+        int cmp = compareNullable(issueA, issueB);
+        return cmp != 0 ? cmp : compareNullable(idA, idB);
+    }
+
+    private static int compareNullable(String a, String b) {
+        if (a == null) return b == null ? 0 : -1;
+        if (b == null) return 1;
+        return a.compareTo(b);
+    }
+
+    /** Maps the distinct values of a low-cardinality column to dense int codes. */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int find(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+    }
+}
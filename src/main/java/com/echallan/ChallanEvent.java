@@ -0,0 +1,27 @@
+package com.echallan;
+
+import java.time.Instant;
+
+/**
+ * One entry of the change log in {@code challan_events}: what happened to a challan, with the row as it
+ * stood after the change (before it, for {@link Type#DELETED} and {@link Type#ARCHIVED}). Sequence numbers
+ * increase with every commit and are never reused; gaps only appear where retention has dropped events.
+ */
+public record ChallanEvent(long seq, Type type, Challan challan, Instant recordedAt) {
+    public enum Type {
+        /** A new row, including every row of a bulk insert or import. */
+        ISSUED,
+        /** The status became PAID, by a single payment or a settlement. */
+        PAID,
+        /** Any other status change. */
+        STATUS,
+        DELETED,
+        /** Moved to the monthly archive tables; still searchable there. */
+        ARCHIVED
+    }
+
+    @Override
+    public String toString() {
+        return seq + " " + type + " " + challan.getChallanId() + " at " + recordedAt;
+    }
+}
@@ -0,0 +1,204 @@
+package com.echallan;
+
+import java.sql.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Change log of the challans table. Triggers append a row to {@code challan_events} in the same
+ * transaction as every insert, status change and delete, so an event is visible exactly when its change
+ * is and a rolled-back write leaves none. {@code seq} is an {@code AUTOINCREMENT} key: it only grows and is
+ * never reused, even once retention has deleted every older event, so a consumer's cursor is simply the
+ * last sequence number it processed.
+ *
+ * <p>Bulk inserts suspend the insert trigger like the other per-row triggers and log the chunk with one
+ * {@code INSERT ... SELECT}. Archiving deletes through the delete trigger and then relabels its events as
+ * {@link ChallanEvent.Type#ARCHIVED}. Penalty accrual changes no status and logs nothing.
+ *
+ * <p>A consumer that starts from nothing reads {@link Database#getLatestEventSeq()} first, then takes its
+ * snapshot, then follows from that number; events already reflected in the snapshot arrive again and are
+ * harmless to reapply. {@link Database#compactEvents()} drops events past the configured age or count.
+ */
+public final class ChallanEvents {
+    static final String INSERT_TRIGGER = "challan_events_insert";
+
+    // The trigger's clock: the current time as epoch milliseconds
+    private static final String NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+    private static final String COLUMNS = "type, challan_id, vehicle_number, violation, fine, status, issue_date, "
+            + "due_date, location, penalty_amount, recorded_at";
+
+    private ChallanEvents() {
+    }
+
+    /** Schema migration: the log table and the triggers that write it. */
+    static void install(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS challan_events (
+                    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                    type TEXT NOT NULL,
+                    challan_id TEXT NOT NULL,
+                    vehicle_number TEXT,
+                    violation TEXT,
+                    fine REAL,
+                    status TEXT,
+                    issue_date TEXT,
+                    due_date TEXT,
+                    location TEXT,
+                    penalty_amount REAL,
+                    recorded_at INTEGER NOT NULL
+                )
+            """);
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS " + INSERT_TRIGGER + " AFTER INSERT ON challans BEGIN "
+                    + "INSERT INTO challan_events (" + COLUMNS + ") VALUES ('ISSUED', " + values("new") + "); END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS challan_events_status AFTER UPDATE OF status ON challans "
+                    + "WHEN old.status IS NOT new.status BEGIN "
+                    + "INSERT INTO challan_events (" + COLUMNS + ") VALUES "
+                    + "(CASE new.status WHEN 'PAID' THEN 'PAID' ELSE 'STATUS' END, " + values("new") + "); END");
+            stmt.execute("CREATE TRIGGER IF NOT EXISTS challan_events_delete AFTER DELETE ON challans BEGIN "
+                    + "INSERT INTO challan_events (" + COLUMNS + ") VALUES ('DELETED', " + values("old") + "); END");
+        }
+    }
+
+    private static String values(String row) {
+        return row + ".challan_id, " + row + ".vehicle_number, " + row + ".violation, " + row + ".fine, "
+                + row + ".status, " + row + ".issue_date, " + row + ".due_date, " + row + ".location, "
+                + row + ".penalty_amount, " + NOW_MILLIS;
+    }
+
+    /** Logs a bulk chunk's rows, those above {@code lastRowid}, while {@link #INSERT_TRIGGER} is suspended. */
+    static void recordInserted(PooledConnection conn, long lastRowid) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("INSERT INTO challan_events (" + COLUMNS + ") SELECT 'ISSUED', "
+                + "challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location, "
+                + "penalty_amount, " + NOW_MILLIS + " FROM challans WHERE rowid > ? ORDER BY rowid");
+        pstmt.setLong(1, lastRowid);
+        pstmt.executeUpdate();
+    }
+
+    /** Relabels the delete events logged after {@code afterSeq} in the caller's transaction as archived. */
+    static void markArchived(PooledConnection conn, long afterSeq) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("UPDATE challan_events SET type = 'ARCHIVED' WHERE seq > ?");
+        pstmt.setLong(1, afterSeq);
+        pstmt.executeUpdate();
+    }
+
+    /** The newest sequence number, or 0 while the log is empty and has never held an event. */
+    static long latestSeq(PooledConnection conn) throws SQLException {
+        // sqlite_sequence keeps the high-water mark after retention has emptied the table
+        try (ResultSet rs = conn.prepare("SELECT IFNULL(MAX(seq), 0) FROM sqlite_sequence WHERE name = 'challan_events'")
+                .executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /** Up to {@code limit} events after {@code afterSeq}, oldest first. */
+    static List<ChallanEvent> read(PooledConnection conn, long afterSeq, int limit) throws SQLException {
+        List<ChallanEvent> events = new ArrayList<>(Math.min(limit, 1024));
+        PreparedStatement pstmt = conn.prepare("SELECT seq, " + COLUMNS + " FROM challan_events WHERE seq > ? "
+                + "ORDER BY seq LIMIT ?");
+        pstmt.setLong(1, afterSeq);
+        pstmt.setInt(2, limit);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Challan challan = new Challan(rs.getString(3), rs.getString(4), rs.getString(5), rs.getDouble(6),
+                        rs.getString(7), rs.getString(8), rs.getString(9), rs.getString(10), Challan.NO_DUE_DAY,
+                        rs.getDouble(11));
+                events.add(new ChallanEvent(rs.getLong(1), ChallanEvent.Type.valueOf(rs.getString(2)), challan,
+                        Instant.ofEpochMilli(rs.getLong(12))));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * The newest sequence number retention may drop: everything recorded before {@code cutoffMillis}
+     * (when positive) and everything but the newest {@code keepRows} (when positive). Ages are read in
+     * sequence order from the oldest event, so only the expired events and one more are visited.
+     */
+    static long retentionBound(PooledConnection conn, long cutoffMillis, long keepRows) throws SQLException {
+        long latest = latestSeq(conn);
+        long bound = 0;
+        if (keepRows > 0) {
+            try (ResultSet rs = conn.prepare("SELECT IFNULL(MAX(seq), 0) FROM challan_events").executeQuery()) {
+                long newest = rs.next() ? rs.getLong(1) : 0;
+                // seq has gaps only below the retained range, so the newest keepRows are a seq range
+                bound = Math.max(bound, newest - keepRows);
+            }
+        }
+        if (cutoffMillis > 0) {
+            PreparedStatement pstmt = conn.prepare("SELECT seq FROM challan_events WHERE recorded_at >= ? "
+                    + "ORDER BY seq LIMIT 1");
+            pstmt.setLong(1, cutoffMillis);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                bound = Math.max(bound, rs.next() ? rs.getLong(1) - 1 : latest);
+            }
+        }
+        return bound;
+    }
+
+    /** The oldest sequence number still held, or 0 when the log is empty. */
+    static long oldestSeq(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT IFNULL(MIN(seq), 0) FROM challan_events").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /** Deletes the events up to and including {@code seq}; returns how many. */
+    static int deleteThrough(PooledConnection conn, long seq) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("DELETE FROM challan_events WHERE seq <= ?");
+        pstmt.setLong(1, seq);
+        return pstmt.executeUpdate();
+    }
+
+    /**
+     * Command line: {@code ChallanEvents since|tail [seq] [jdbc-url]} prints events after {@code seq}
+     * (default 0 for {@code since}, the current end for {@code tail}) as NDJSON; {@code tail} then follows
+     * new events until interrupted. {@code ChallanEvents compact [jdbc-url]} applies retention once.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1 || !List.of("since", "tail", "compact").contains(args[0])) {
+            System.err.println("Usage: ChallanEvents since|tail [seq] [jdbc-url]");
+            System.err.println("       ChallanEvents compact [jdbc-url]");
+            System.exit(1);
+        }
+        String url = args.length > 1 && args[args.length - 1].startsWith("jdbc:") ? args[args.length - 1] : null;
+        Long from = args.length > 1 && !args[1].startsWith("jdbc:") ? Long.valueOf(args[1]) : null;
+        DatabaseConfig config = url != null ? new DatabaseConfig(url) : new DatabaseConfig();
+        try (Database database = new Database(config.setOptimizeOnOpen(false).setPenaltyIntervalMinutes(0))) {
+            switch (args[0]) {
+                case "since" -> {
+                    long seq = from != null ? from : 0;
+                    List<ChallanEvent> events;
+                    Log.flush();
+                    do {
+                        events = database.readEventsSince(seq, 10_000);
+                        for (ChallanEvent event : events) {
+                            System.out.println(ChallanJson.writeEvent(event));
+                        }
+                        if (!events.isEmpty()) seq = events.get(events.size() - 1).seq();
+                    } while (!events.isEmpty());
+                }
+                case "tail" -> {
+                    long seq = from != null ? from : database.getLatestEventSeq();
+                    Log.flush();
+                    EventSubscription subscription = database.subscribe(seq, events -> {
+                        for (ChallanEvent event : events) {
+                            System.out.println(ChallanJson.writeEvent(event));
+                        }
+                        System.out.flush();
+                    });
+                    // Until the process is stopped, or the subscription ends on an error
+                    while (!subscription.isClosed()) {
+                        Thread.sleep(1000);
+                    }
+                }
+                default -> {
+                    long dropped = database.compactEvents();
+                    Log.flush();
+                    System.out.println("Dropped " + dropped + " events");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.echallan;
+
+import java.time.LocalDate;
+
+/**
+ * Which challans a listing query returns. A null field means "no restriction"; the vehicle
+ * number is matched against the normalized plate key using {@code searchMode}, and
+ * {@code overdueAsOf} keeps only pending challans whose due date is before that day.
+ */
+public record ChallanFilter(String status, String vehicleNumber, SearchMode searchMode, LocalDate overdueAsOf,
+                            String violation) {
+
+    public static ChallanFilter all() {
+        return new ChallanFilter(null, null, null, null, null);
+    }
+
+    public static ChallanFilter pending() {
+        return new ChallanFilter("PENDING", null, null, null, null);
+    }
+
+    public static ChallanFilter overdue(LocalDate today) {
+        return new ChallanFilter("PENDING", null, null, today, null);
+    }
+
+    public static ChallanFilter vehicle(String vehicleNumber) {
+        return vehicle(vehicleNumber, SearchMode.SUBSTRING);
+    }
+
+    public static ChallanFilter vehicle(String vehicleNumber, SearchMode searchMode) {
+        return new ChallanFilter(null, vehicleNumber, searchMode, null, null);
+    }
+
+    /** This filter further restricted to one violation type, or unrestricted again when {@code violation} is null. */
+    public ChallanFilter withViolation(String violation) {
+        return new ChallanFilter(status, vehicleNumber, searchMode, overdueAsOf, violation);
+    }
+}
@@ -0,0 +1,227 @@
+package com.echallan;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams challans from CSV or NDJSON files into {@link Database#addChallans(Iterator, BulkInsertResult)}.
+ * Files are read line by line, so memory use does not depend on file size. Lines that cannot be parsed
+ * are reported as failures with their line number and the rest of the file is still loaded.
+ *
+ * <p>CSV files need a header row naming the columns ({@code challan_id, vehicle_number, violation, fine}
+ * are required; {@code status, issue_date, due_date, location} are optional). NDJSON files hold one
+ * object per line with the same field names.
+ */
+public class ChallanImporter {
+    private final Database database;
+
+    public ChallanImporter(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Picks the format from the file extension: {@code .csv}, {@code .ndjson}/{@code .jsonl}, or a
+     * {@link ChallanSnapshot} ({@code .echs}).
+     */
+    public BulkInsertResult importFile(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) return importCsv(file);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) return importNdjson(file);
+        if (name.endsWith(ChallanSnapshot.EXTENSION)) return new ChallanSnapshot(database).importSnapshot(file);
+        throw new IllegalArgumentException("Unsupported import format: " + file.getFileName());
+    }
+
+    public BulkInsertResult importCsv(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new BulkInsertResult();
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            List<String> names = parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+            for (int i = 0; i < names.size(); i++) {
+                columns.put(names.get(i).trim().toLowerCase(), i);
+            }
+            for (String required : List.of("challan_id", "vehicle_number", "violation", "fine")) {
+                if (!columns.containsKey(required)) {
+                    throw new IOException("CSV header is missing column: " + required);
+                }
+            }
+            return load(reader, 1, line -> {
+                List<String> values = parseCsvLine(line);
+                return toChallan(name -> {
+                    Integer index = columns.get(name);
+                    return index != null && index < values.size() ? values.get(index) : null;
+                });
+            });
+        }
+    }
+
+    public BulkInsertResult importNdjson(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(reader, 0, line -> {
+                Map<String, Object> fields = Json.parseObject(line);
+                return toChallan(name -> {
+                    Object value = fields.get(name);
+                    if (value instanceof Double d && d == Math.rint(d) && !name.equals("fine")) {
+                        return String.valueOf(d.longValue());
+                    }
+                    return value != null ? value.toString() : null;
+                });
+            });
+        }
+    }
+
+    private interface LineParser {
+        Challan parse(String line);
+    }
+
+    private interface FieldSource {
+        String get(String name);
+    }
+
+    private BulkInsertResult load(BufferedReader reader, long linesRead, LineParser parser) throws IOException {
+        BulkInsertResult result = new BulkInsertResult();
+        LineIterator lines = new LineIterator(reader, linesRead, parser, result);
+        database.addChallans(lines, lines::lineNumber, result);
+        if (lines.ioError != null) {
+            throw lines.ioError;
+        }
+        Log.info("Import finished: " + result);
+        return result;
+    }
+
+    private static Challan toChallan(FieldSource fields) {
+        String fine = fields.get("fine");
+        if (fine == null || fine.isBlank()) {
+            throw new IllegalArgumentException("missing fine");
+        }
+        Challan challan = new Challan(
+                trimToNull(fields.get("challan_id")),
+                trimToNull(fields.get("vehicle_number")),
+                trimToNull(fields.get("violation")),
+                Double.parseDouble(fine.trim()),
+                trimToNull(fields.get("location")));
+        String status = trimToNull(fields.get("status"));
+        if (status != null) challan.setStatus(status.toUpperCase());
+        String issueDate = trimToNull(fields.get("issue_date"));
+        if (issueDate != null) challan.setIssueDate(issueDate);
+        String dueDate = trimToNull(fields.get("due_date"));
+        if (dueDate != null) challan.setDueDate(dueDate);
+        return challan;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /** Splits one CSV record, honouring double-quoted fields with {@code ""} escapes. */
+    static List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        values.add(field.toString());
+        return values;
+    }
+
+    /** Reads ahead to the next parseable line, recording unparseable ones as failures. */
+    private static class LineIterator implements Iterator<Challan> {
+        private final BufferedReader reader;
+        private final LineParser parser;
+        private final BulkInsertResult result;
+        private long lineNumber;
+        private long nextLineNumber;
+        private Challan next;
+        private boolean done;
+        private IOException ioError;
+
+        LineIterator(BufferedReader reader, long linesRead, LineParser parser, BulkInsertResult result) {
+            this.reader = reader;
+            this.parser = parser;
+            this.result = result;
+            this.nextLineNumber = linesRead;
+        }
+
+        long lineNumber() {
+            return lineNumber;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    ioError = e;
+                    line = null;
+                }
+                if (line == null) {
+                    done = true;
+                    break;
+                }
+                nextLineNumber++;
+                if (line.isBlank()) continue;
+                try {
+                    next = parser.parse(line);
+                } catch (RuntimeException e) {
+                    result.addFailure(nextLineNumber, null, "unparseable line: " + e.getMessage());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Challan next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Challan challan = next;
+            next = null;
+            lineNumber = nextLineNumber;
+            return challan;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ChallanImporter <file.csv|file.ndjson|file.echs> [jdbc-url]");
+            System.exit(1);
+        }
+        DatabaseConfig config = args.length > 1 ? new DatabaseConfig(args[1]) : new DatabaseConfig();
+        try (Database database = new Database(config)) {
+            BulkInsertResult result = new ChallanImporter(database).importFile(Path.of(args[0]));
+            Log.flush();
+            for (BulkInsertResult.Failure failure : result.getFailures()) {
+                System.err.println("Rejected " + failure);
+            }
+        }
+    }
+}
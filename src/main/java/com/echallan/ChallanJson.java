@@ -0,0 +1,233 @@
+package com.echallan;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * JSON shapes of the HTTP API, shared by {@link ChallanServer} and {@link RemoteChallanStore}. Challans use
+ * the field names of the NDJSON import format.
+ */
+final class ChallanJson {
+    private ChallanJson() {
+    }
+
+    static String write(Challan challan) {
+        return appendChallan(new StringBuilder(192), challan).toString();
+    }
+
+    static String writeList(List<Challan> challans) {
+        StringBuilder sb = new StringBuilder(64 + challans.size() * 192);
+        appendList(sb, challans);
+        return sb.toString();
+    }
+
+    static String writePage(ChallanPage page) {
+        StringBuilder sb = new StringBuilder(64 + page.challans().size() * 192);
+        sb.append("{\"challans\":");
+        appendList(sb, page.challans());
+        sb.append(",\"next\":");
+        ChallanPage.Cursor next = page.next();
+        if (next == null) {
+            sb.append("null");
+        } else {
+            sb.append("{\"issue_date\":").append(Json.quote(next.issueDate()))
+                    .append(",\"challan_id\":").append(Json.quote(next.challanId())).append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    static String writeSummary(ChallanSummary summary) {
+        return "{\"count\":" + summary.count()
+                + ",\"total_fine\":" + summary.totalFine()
+                + ",\"overdue_count\":" + summary.overdueCount()
+                + ",\"total_penalty\":" + summary.totalPenalty() + "}";
+    }
+
+    static String writeOutstanding(Outstanding outstanding) {
+        LocalDate due = outstanding.earliestDueDate();
+        return "{\"vehicle_key\":" + Json.quote(outstanding.vehicleKey())
+                + ",\"pending_count\":" + outstanding.pendingCount()
+                + ",\"pending_fine\":" + outstanding.pendingFine()
+                + ",\"earliest_due_date\":" + (due != null ? Json.quote(due.toString()) : "null") + "}";
+    }
+
+    static String writeRepeatOffenders(List<RepeatOffender> offenders) {
+        StringBuilder sb = new StringBuilder(2 + offenders.size() * 112).append('[');
+        for (RepeatOffender offender : offenders) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append("{\"vehicle_key\":").append(Json.quote(offender.vehicleKey()))
+                    .append(",\"violations\":").append(offender.violations())
+                    .append(",\"first_issued\":").append(Json.quote(offender.firstIssuedAt().toString()))
+                    .append(",\"last_issued\":").append(Json.quote(offender.lastIssuedAt().toString())).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Flat map of strings and numbers, as returned by {@link Database#getStatistics()}. */
+    static String writeMap(Map<String, Object> values) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(Json.quote(entry.getKey())).append(':');
+            Object value = entry.getValue();
+            sb.append(value instanceof Number || value instanceof Boolean || value == null
+                    ? String.valueOf(value) : Json.quote(value.toString()));
+        }
+        return sb.append('}').toString();
+    }
+
+    /** One change log entry: {@code seq}, {@code type}, {@code recorded_at} and the challan as logged. */
+    static String writeEvent(ChallanEvent event) {
+        return appendEvent(new StringBuilder(256), event).toString();
+    }
+
+    /** A page of the change log and the cursor to ask for the next one with; {@code since} when it is empty. */
+    static String writeEvents(List<ChallanEvent> events, long since) {
+        StringBuilder sb = new StringBuilder(32 + events.size() * 256).append("{\"events\":[");
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendEvent(sb, events.get(i));
+        }
+        long next = events.isEmpty() ? since : events.get(events.size() - 1).seq();
+        return sb.append("],\"next\":").append(next).append('}').toString();
+    }
+
+    private static StringBuilder appendEvent(StringBuilder sb, ChallanEvent event) {
+        sb.append("{\"seq\":").append(event.seq())
+                .append(",\"type\":").append(Json.quote(event.type().name()))
+                .append(",\"recorded_at\":").append(Json.quote(event.recordedAt().toString()))
+                .append(",\"challan\":");
+        return appendChallan(sb, event.challan()).append('}');
+    }
+
+    static String writeError(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static void appendList(StringBuilder sb, List<Challan> challans) {
+        sb.append('[');
+        for (int i = 0; i < challans.size(); i++) {
+            if (i > 0) sb.append(',');
+            appendChallan(sb, challans.get(i));
+        }
+        sb.append(']');
+    }
+
+    private static StringBuilder appendChallan(StringBuilder sb, Challan c) {
+        return sb.append("{\"challan_id\":").append(Json.quote(c.getChallanId()))
+                .append(",\"vehicle_number\":").append(Json.quote(c.getVehicleNumber()))
+                .append(",\"violation\":").append(Json.quote(c.getViolation()))
+                .append(",\"fine\":").append(c.getFine())
+                .append(",\"status\":").append(Json.quote(c.getStatus()))
+                .append(",\"issue_date\":").append(Json.quote(c.getIssueDate()))
+                .append(",\"due_date\":").append(Json.quote(c.getDueDate()))
+                .append(",\"location\":").append(Json.quote(c.getLocation()))
+                .append(",\"penalty_amount\":").append(c.getPenaltyAmount())
+                .append('}');
+    }
+
+    // Reading
+
+    static Challan readChallan(Map<String, Object> fields) {
+        Object fine = fields.get("fine");
+        if (!(fine instanceof Double)) {
+            throw new IllegalArgumentException("missing fine");
+        }
+        String challanId = string(fields, "challan_id");
+        if (challanId == null || challanId.isBlank()) {
+            throw new IllegalArgumentException("missing challan_id");
+        }
+        String issueDate = string(fields, "issue_date");
+        if (issueDate == null) {
+            // A new challan from a client that left the dates to the server, as the importer allows
+            Challan challan = new Challan(challanId, string(fields, "vehicle_number"), string(fields, "violation"),
+                    (Double) fine, string(fields, "location"));
+            String status = string(fields, "status");
+            if (status != null) challan.setStatus(status.toUpperCase());
+            String dueDate = string(fields, "due_date");
+            if (dueDate != null) challan.setDueDate(dueDate);
+            return challan;
+        }
+        // Absent from older clients; the server prices pending challans itself
+        Object penalty = fields.get("penalty_amount");
+        return new Challan(challanId, string(fields, "vehicle_number"), string(fields, "violation"),
+                (Double) fine, string(fields, "status"), issueDate,
+                string(fields, "due_date"), string(fields, "location"), Challan.NO_DUE_DAY,
+                penalty instanceof Double amount ? amount : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Challan> readList(Object value) {
+        if (!(value instanceof List<?> items)) {
+            throw new IllegalArgumentException("Expected a JSON array of challans");
+        }
+        List<Challan> challans = new ArrayList<>(items.size());
+        for (Object item : items) {
+            challans.add(readChallan((Map<String, Object>) item));
+        }
+        return challans;
+    }
+
+    @SuppressWarnings("unchecked")
+    static ChallanPage readPage(Map<String, Object> fields) {
+        List<Challan> challans = readList(fields.get("challans"));
+        Map<String, Object> next = (Map<String, Object>) fields.get("next");
+        return new ChallanPage(challans, next == null ? null
+                : new ChallanPage.Cursor(string(next, "issue_date"), string(next, "challan_id")));
+    }
+
+    static ChallanSummary readSummary(Map<String, Object> fields) {
+        return new ChallanSummary(number(fields, "count").longValue(), number(fields, "total_fine"),
+                number(fields, "overdue_count").longValue(), number(fields, "total_penalty"));
+    }
+
+    static Outstanding readOutstanding(Map<String, Object> fields) {
+        String due = string(fields, "earliest_due_date");
+        return new Outstanding(string(fields, "vehicle_key"), number(fields, "pending_count").longValue(),
+                number(fields, "pending_fine"), due != null ? LocalDate.parse(due).toEpochDay() : Challan.NO_DUE_DAY);
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<RepeatOffender> readRepeatOffenders(Object value) {
+        if (!(value instanceof List<?> items)) {
+            throw new IllegalArgumentException("Expected a JSON array of repeat offenders");
+        }
+        List<RepeatOffender> offenders = new ArrayList<>(items.size());
+        for (Object item : items) {
+            Map<String, Object> fields = (Map<String, Object>) item;
+            offenders.add(new RepeatOffender(string(fields, "vehicle_key"), number(fields, "violations").intValue(),
+                    LocalDateTime.parse(string(fields, "first_issued")).toEpochSecond(ZoneOffset.UTC),
+                    LocalDateTime.parse(string(fields, "last_issued")).toEpochSecond(ZoneOffset.UTC)));
+        }
+        return offenders;
+    }
+
+    /** Inverse of {@link #writeMap(Map)} for statistics: whole numbers come back as Integer, the rest as Double. */
+    static Map<String, Object> readStatistics(Map<String, Object> fields) {
+        Map<String, Object> stats = new HashMap<>();
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Double d && !entry.getKey().endsWith("_amount")
+                    && d == Math.rint(d) && Math.abs(d) <= Integer.MAX_VALUE) {
+                value = d.intValue();
+            }
+            stats.put(entry.getKey(), value);
+        }
+        return stats;
+    }
+
+    private static String string(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value != null ? value.toString() : null;
+    }
+
+    private static Double number(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        if (!(value instanceof Double d)) {
+            throw new IllegalArgumentException("missing " + name);
+        }
+        return d;
+    }
+}
@@ -0,0 +1,21 @@
+package com.echallan;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing, newest first. Pass {@link #next()} back to
+ * {@link Database#getChallansPage(ChallanFilter, Cursor, int)} to continue; it is null on the last page.
+ */
+public record ChallanPage(List<Challan> challans, Cursor next) {
+
+    /** Position just after the last row of a page, by the listing order {@code (issue_date, challan_id)}. */
+    public record Cursor(String issueDate, String challanId) {
+        static Cursor after(Challan challan) {
+            return new Cursor(challan.getIssueDate(), challan.getChallanId());
+        }
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,255 @@
+package com.echallan;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Materialized late-payment penalties. {@code challans.penalty_amount} holds every pending challan's
+ * penalty under the {@link PenaltySchedule} stored in {@code penalty_rules}, as of the day recorded in
+ * {@code penalty_state}; reads and aggregates take it as stored. A penalty only changes on the day its
+ * challan reaches a tier threshold, so the daily accrual visits just the pending challans due exactly a
+ * threshold before one of the days since the last run, through {@code idx_challans_status_due}. A first
+ * run, a rule change or a gap of more than {@value #MAX_CATCH_UP_DAYS} days recomputes every pending
+ * challan instead.
+ *
+ * <p>Each pass copies the rows whose penalty changes into {@code temp.penalty_rows}, adjusts the
+ * statistics summary from the copy and applies it with one {@code UPDATE ... FROM}. {@link Database}
+ * drives the passes and logs every run, with its timing, in {@code penalty_runs}.
+ */
+public final class ChallanPenalties {
+    /** Returned by {@link #accruedDay} before the first accrual and after a rule change. */
+    static final long NOT_ACCRUED = Long.MIN_VALUE;
+    // Longest gap since the last run that is caught up day by day rather than recomputed
+    static final int MAX_CATCH_UP_DAYS = 31;
+
+    // The penalty of the challans row being read as of epoch day ?1: the violation's own tiers before the
+    // default ones, then the highest threshold reached. A NULL due day reaches none.
+    private static final String PENALTY_SQL = "fine * IFNULL((SELECT rate FROM penalty_rules r "
+            + "WHERE r.violation IN (challans.violation, '') AND r.min_days <= ?1 - challans.due_day "
+            + "ORDER BY r.violation = '', r.min_days DESC LIMIT 1), 0)";
+
+    private ChallanPenalties() {
+    }
+
+    /** Schema migration: the rule table, seeded with {@link PenaltySchedule#DEFAULT}, the accrual state and the run log. */
+    static void install(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS penalty_rules (
+                    violation TEXT NOT NULL,
+                    min_days INTEGER NOT NULL,
+                    rate REAL NOT NULL,
+                    PRIMARY KEY (violation, min_days)
+                ) WITHOUT ROWID
+            """);
+            stmt.execute("CREATE TABLE IF NOT EXISTS penalty_state (id INTEGER PRIMARY KEY CHECK (id = 1), accrued_day INTEGER)");
+            stmt.execute("INSERT OR IGNORE INTO penalty_state (id, accrued_day) VALUES (1, NULL)");
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS penalty_runs (
+                    accrued_day INTEGER NOT NULL,
+                    full INTEGER NOT NULL,
+                    rows_changed INTEGER NOT NULL,
+                    elapsed_ms INTEGER NOT NULL,
+                    finished_at TEXT NOT NULL
+                )
+            """);
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM penalty_rules LIMIT 1")) {
+                if (rs.next()) return;
+            }
+        }
+        writeSchedule(conn, PenaltySchedule.DEFAULT);
+    }
+
+    static PenaltySchedule readSchedule(PooledConnection conn) throws SQLException {
+        List<PenaltySchedule.Tier> tiers = new ArrayList<>();
+        try (ResultSet rs = conn.prepare("SELECT violation, min_days, rate FROM penalty_rules").executeQuery()) {
+            while (rs.next()) {
+                tiers.add(new PenaltySchedule.Tier(rs.getString(1), rs.getInt(2), rs.getDouble(3)));
+            }
+        }
+        return new PenaltySchedule(tiers);
+    }
+
+    /** Replaces the rules in the caller's transaction and marks every stored penalty as out of date. */
+    static void writeSchedule(PooledConnection conn, PenaltySchedule schedule) throws SQLException {
+        conn.prepare("DELETE FROM penalty_rules").executeUpdate();
+        PreparedStatement insert = conn.prepare("INSERT INTO penalty_rules (violation, min_days, rate) VALUES (?, ?, ?)");
+        for (PenaltySchedule.Tier tier : schedule.getTiers()) {
+            insert.setString(1, tier.violation());
+            insert.setInt(2, tier.minDaysOverdue());
+            insert.setDouble(3, tier.rate());
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        setAccruedDay(conn, NOT_ACCRUED);
+    }
+
+    /** The epoch day stored penalties are correct for, or {@link #NOT_ACCRUED}. */
+    static long accruedDay(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT accrued_day FROM penalty_state WHERE id = 1").executeQuery()) {
+            if (!rs.next()) return NOT_ACCRUED;
+            long day = rs.getLong(1);
+            return rs.wasNull() ? NOT_ACCRUED : day;
+        }
+    }
+
+    static void setAccruedDay(PooledConnection conn, long day) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("UPDATE penalty_state SET accrued_day = ? WHERE id = 1");
+        if (day == NOT_ACCRUED) {
+            pstmt.setNull(1, Types.INTEGER);
+        } else {
+            pstmt.setLong(1, day);
+        }
+        pstmt.executeUpdate();
+    }
+
+    /**
+     * Fills {@code temp.penalty_rows} with the pending challans, among those due on one of {@code dueDays},
+     * whose penalty as of {@code today} differs from the stored one, and returns how many there are.
+     */
+    static int collectDueOn(PooledConnection conn, long today, Collection<Long> dueDays) throws SQLException {
+        prepareTemp(conn);
+        conn.prepare("DELETE FROM temp.penalty_days").executeUpdate();
+        PreparedStatement day = conn.prepare("INSERT OR IGNORE INTO temp.penalty_days VALUES (?)");
+        for (long dueDay : dueDays) {
+            day.setLong(1, dueDay);
+            day.addBatch();
+        }
+        day.executeBatch();
+        PreparedStatement collect = conn.prepare(collectSql("status = 'PENDING' AND due_day IN (SELECT due_day FROM temp.penalty_days)"));
+        collect.setLong(1, today);
+        return collect.executeUpdate();
+    }
+
+    /** Like {@link #collectDueOn}, for every pending challan with a rowid in {@code (afterRowid, lastRowid]}. */
+    static int collectRange(PooledConnection conn, long today, long afterRowid, long lastRowid) throws SQLException {
+        prepareTemp(conn);
+        // +status keeps the planner on the rowid range rather than the status indexes
+        PreparedStatement collect = conn.prepare(collectSql("rowid > ?2 AND rowid <= ?3 AND +status = 'PENDING'"));
+        collect.setLong(1, today);
+        collect.setLong(2, afterRowid);
+        collect.setLong(3, lastRowid);
+        return collect.executeUpdate();
+    }
+
+    private static String collectSql(String where) {
+        // MATERIALIZED evaluates the rule lookup once per row, not again for the comparison
+        return "WITH candidates AS MATERIALIZED (SELECT rowid AS id, challan_id, violation, location, issue_date, "
+                + "penalty_amount AS old, " + PENALTY_SQL + " AS new FROM challans WHERE " + where + ") "
+                + "INSERT INTO temp.penalty_rows SELECT * FROM candidates WHERE new IS NOT old";
+    }
+
+    private static void prepareTemp(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS penalty_rows (id INTEGER PRIMARY KEY, challan_id TEXT, "
+                    + "violation TEXT, location TEXT, issue_date TEXT, old REAL, new REAL)");
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS penalty_days (due_day INTEGER PRIMARY KEY)");
+        }
+        conn.prepare("DELETE FROM temp.penalty_rows").executeUpdate();
+    }
+
+    /**
+     * Writes the collected penalties with one set-based UPDATE and credits the summary with the difference.
+     * The caller suspends {@code challan_stats_update} around it, since the summary is adjusted here in bulk.
+     */
+    static void apply(PooledConnection conn) throws SQLException {
+        ChallanStatistics.applyPenalties(conn);
+        // Driven by the rowid list: as UPDATE ... FROM the planner scans challans and probes the temp table
+        conn.prepare("UPDATE challans SET penalty_amount = (SELECT new FROM temp.penalty_rows p WHERE p.id = challans.rowid) "
+                + "WHERE rowid IN (SELECT id FROM temp.penalty_rows)").executeUpdate();
+    }
+
+    /** The collected changes by challan ID, for the memory cache. */
+    static Map<String, Double> collected(PooledConnection conn) throws SQLException {
+        Map<String, Double> penalties = new HashMap<>();
+        try (ResultSet rs = conn.prepare("SELECT challan_id, new FROM temp.penalty_rows").executeQuery()) {
+            while (rs.next()) {
+                penalties.put(rs.getString(1), rs.getDouble(2));
+            }
+        }
+        return penalties;
+    }
+
+    /** The epoch days whose pending challans may change penalty between {@code accruedDay} and {@code today}. */
+    static Set<Long> crossingDueDays(PenaltySchedule schedule, long accruedDay, long today) {
+        Set<Long> dueDays = new TreeSet<>();
+        // A challan reaches threshold t on the day its due day is t days behind
+        for (int threshold : schedule.thresholds()) {
+            for (long day = accruedDay + 1; day <= today; day++) {
+                dueDays.add(day - threshold);
+            }
+        }
+        return dueDays;
+    }
+
+    static void recordRun(PooledConnection conn, PenaltyRun run) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("INSERT INTO penalty_runs (accrued_day, full, rows_changed, elapsed_ms, "
+                + "finished_at) VALUES (?, ?, ?, ?, ?)");
+        pstmt.setLong(1, run.accruedDay().toEpochDay());
+        pstmt.setBoolean(2, run.full());
+        pstmt.setLong(3, run.rowsChanged());
+        pstmt.setLong(4, run.elapsedMillis());
+        pstmt.setString(5, run.finishedAt().toString());
+        pstmt.executeUpdate();
+    }
+
+    /** The most recent runs, newest first. */
+    static List<PenaltyRun> readRuns(PooledConnection conn, int limit) throws SQLException {
+        List<PenaltyRun> runs = new ArrayList<>();
+        PreparedStatement pstmt = conn.prepare("SELECT accrued_day, full, rows_changed, elapsed_ms, finished_at "
+                + "FROM penalty_runs ORDER BY rowid DESC LIMIT ?");
+        pstmt.setInt(1, limit);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                runs.add(new PenaltyRun(LocalDate.ofEpochDay(rs.getLong(1)), rs.getBoolean(2), rs.getLong(3),
+                        rs.getLong(4), LocalDateTime.parse(rs.getString(5))));
+            }
+        }
+        return runs;
+    }
+
+    /** Command line: {@code ChallanPenalties accrue|recompute|history|rules [rules.csv] [jdbc-url]}. */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !List.of("accrue", "recompute", "history", "rules").contains(args[0])) {
+            System.err.println("Usage: ChallanPenalties accrue|recompute|history [jdbc-url]");
+            System.err.println("       ChallanPenalties rules [rules.csv] [jdbc-url]");
+            System.exit(1);
+        }
+        // Only "rules" takes a file; a JDBC URL is always the last argument
+        String url = args.length > 1 && args[args.length - 1].startsWith("jdbc:") ? args[args.length - 1] : null;
+        String file = args[0].equals("rules") && args.length > 1 && !args[1].startsWith("jdbc:") ? args[1] : null;
+        PenaltySchedule schedule = file != null ? PenaltySchedule.read(Path.of(file)) : null;
+        DatabaseConfig config = url != null ? new DatabaseConfig(url) : new DatabaseConfig();
+        try (Database database = new Database(config.setOptimizeOnOpen(false).setPenaltyIntervalMinutes(0))) {
+            switch (args[0]) {
+                case "accrue", "recompute" -> {
+                    PenaltyRun run = args[0].equals("accrue") ? database.accruePenalties() : database.recomputePenalties();
+                    Log.flush();
+                    System.out.println(run != null ? run : "Penalties were already accrued today, or the run failed");
+                }
+                case "history" -> {
+                    List<PenaltyRun> runs = database.getPenaltyRuns(30);
+                    Log.flush();
+                    System.out.println("accrued_day,full,rows_changed,elapsed_ms,finished_at");
+                    for (PenaltyRun run : runs) {
+                        System.out.println(run.accruedDay() + "," + run.full() + "," + run.rowsChanged() + ","
+                                + run.elapsedMillis() + "," + run.finishedAt());
+                    }
+                }
+                default -> {
+                    boolean applied = schedule == null || database.setPenaltySchedule(schedule);
+                    Log.flush();
+                    System.out.print(database.getPenaltySchedule().toCsv());
+                    if (!applied) {
+                        System.err.println("Could not apply " + file);
+                        System.exit(2);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.echallan;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Violation hotspot and revenue figures by location, violation type, hour of day and issue month, built by
+ * {@link Database#getReport()}. Every {@link Row} carries fines issued, collected against pending, the
+ * overdue count as of {@link #getAsOf()} and the penalty exposure: the penalties stored on pending challans
+ * by the last accrual ({@link Challan#getPenaltyAmount()}).
+ * Archived challans are included, so collected revenue covers the whole history.
+ *
+ * <p>Rows with no usable location, violation or date fall under the empty key, as in
+ * {@link ChallanStatistics}.
+ */
+public final class ChallanReport {
+    public enum Dimension {
+        LOCATION, VIOLATION,
+        // "00" to "23", from the issue time
+        HOUR,
+        // "2025-06", from the issue date
+        MONTH;
+
+        private final String csvName = name().toLowerCase();
+
+        public String csvName() { return csvName; }
+    }
+
+    /** What {@link #top} ranks by. */
+    public enum Measure { ISSUED, FINES_ISSUED, PAID, COLLECTED, PENDING, PENDING_AMOUNT, OVERDUE, PENALTY_EXPOSURE }
+
+    /** Figures for one key of one dimension; amounts in rupees. */
+    public record Row(String key, long issued, double finesIssued, long paid, double collected, long pending,
+                      double pendingAmount, long overdue, double penaltyExposure) {
+        public double value(Measure measure) {
+            return switch (measure) {
+                case ISSUED -> issued;
+                case FINES_ISSUED -> finesIssued;
+                case PAID -> paid;
+                case COLLECTED -> collected;
+                case PENDING -> pending;
+                case PENDING_AMOUNT -> pendingAmount;
+                case OVERDUE -> overdue;
+                case PENALTY_EXPOSURE -> penaltyExposure;
+            };
+        }
+    }
+
+    static final String CSV_HEADER = "dimension,key,issued,fines_issued,paid,collected,pending,pending_amount,overdue,penalty_exposure";
+
+    private final LocalDate asOf;
+    private final Map<Dimension, List<Row>> rows;
+    private final Row totals;
+    private final long elapsedNanos;
+
+    /** {@code rows} holds every dimension, each list sorted by key. */
+    ChallanReport(LocalDate asOf, Map<Dimension, List<Row>> rows, Row totals, long elapsedNanos) {
+        this.asOf = asOf;
+        this.rows = rows;
+        this.totals = totals;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    static ChallanReport empty(LocalDate asOf) {
+        Map<Dimension, List<Row>> rows = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : Dimension.values()) {
+            rows.put(dimension, List.of());
+        }
+        return new ChallanReport(asOf, rows, new Row("", 0, 0, 0, 0, 0, 0, 0, 0), 0);
+    }
+
+    /** The day overdue status was computed for. */
+    public LocalDate getAsOf() { return asOf; }
+
+    /** Figures over every challan scanned; {@code issued} is the number of rows the report covers. */
+    public Row totals() { return totals; }
+
+    public long getElapsedMillis() { return elapsedNanos / 1_000_000; }
+
+    /** Every key of {@code dimension}, in key order. */
+    public List<Row> rows(Dimension dimension) {
+        return rows.get(dimension);
+    }
+
+    /** The {@code k} keys of {@code dimension} with the highest {@code measure}, highest first; ties in key order. */
+    public List<Row> top(Dimension dimension, Measure measure, int k) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1");
+        Comparator<Row> order = Comparator.comparingDouble((Row row) -> row.value(measure))
+                .thenComparing(Row::key, Comparator.reverseOrder());
+        // Min-heap of the best k so far; its head is the weakest candidate
+        PriorityQueue<Row> best = new PriorityQueue<>(k + 1, order);
+        for (Row row : rows.get(dimension)) {
+            best.add(row);
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+        List<Row> result = new ArrayList<>(best);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    /** All four dimensions as one CSV document, grouped by dimension. */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Dimension dimension : Dimension.values()) {
+            appendCsv(csv, dimension, rows.get(dimension));
+        }
+        return csv.toString();
+    }
+
+    public String toCsv(Dimension dimension) {
+        return appendCsv(new StringBuilder(CSV_HEADER).append('\n'), dimension, rows.get(dimension)).toString();
+    }
+
+    /** {@link #top} as CSV. */
+    public String toCsv(Dimension dimension, Measure measure, int k) {
+        return appendCsv(new StringBuilder(CSV_HEADER).append('\n'), dimension, top(dimension, measure, k)).toString();
+    }
+
+    private static StringBuilder appendCsv(StringBuilder csv, Dimension dimension, List<Row> rows) {
+        for (Row row : rows) {
+            csv.append(dimension.csvName()).append(',');
+            appendField(csv, row.key());
+            csv.append(',').append(row.issued())
+                    .append(',').append(Challan.formatAmount(row.finesIssued()))
+                    .append(',').append(row.paid())
+                    .append(',').append(Challan.formatAmount(row.collected()))
+                    .append(',').append(row.pending())
+                    .append(',').append(Challan.formatAmount(row.pendingAmount()))
+                    .append(',').append(row.overdue())
+                    .append(',').append(Challan.formatAmount(row.penaltyExposure()))
+                    .append('\n');
+        }
+        return csv;
+    }
+
+    // RFC 4180 quoting, so ChallanImporter.parseCsvLine reads the key back unchanged
+    static void appendField(StringBuilder csv, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            csv.append(value);
+            return;
+        }
+        csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Command-line report: {@code ChallanReport [jdbc-url] [location|violation|hour|month] [top-k] [measure]}.
+     * Prints CSV for every dimension, one dimension, or its top k keys by a {@link Measure}
+     * (default {@code FINES_ISSUED}).
+     */
+    public static void main(String[] args) {
+        DatabaseConfig config = args.length > 0 ? new DatabaseConfig(args[0]) : new DatabaseConfig();
+        try (Database database = new Database(config.setOptimizeOnOpen(false))) {
+            ChallanReport report = database.getReport();
+            Log.flush();
+            if (args.length < 2) {
+                System.out.print(report.toCsv());
+                return;
+            }
+            Dimension dimension = Dimension.valueOf(args[1].toUpperCase());
+            if (args.length < 3) {
+                System.out.print(report.toCsv(dimension));
+                return;
+            }
+            Measure measure = args.length > 3 ? Measure.valueOf(args[3].toUpperCase()) : Measure.FINES_ISSUED;
+            System.out.print(report.toCsv(dimension, measure, Integer.parseInt(args[2])));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Usage: ChallanReport [jdbc-url] [location|violation|hour|month] [top-k] [measure]");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.echallan;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Headless mode: serves a {@link Database} over a local HTTP/JSON API so several desktop clients
+ * ({@link RemoteChallanStore}) can share one database file. Requests run on virtual threads; reads go
+ * straight to the connection pool, while writes are queued on the database's {@link WritePipeline}, so
+ * concurrent clients share group commits. Batch size and delay come from {@link DatabaseConfig}.
+ *
+ * <pre>
+ * GET    /api/health
+ * GET    /api/statistics
+ * GET    /api/summary?{filter}
+ * GET    /api/challans?{filter}&amp;sort=FINE&amp;desc=true&amp;offset=0&amp;limit=200
+ * GET    /api/challans/page?{filter}&amp;afterIssueDate=...&amp;afterId=...&amp;limit=200
+ * GET    /api/challans/overdue
+ * GET    /api/archive?vehicle=...&amp;mode=SUBSTRING
+ * GET    /api/outstanding?vehicle=...
+ * GET    /api/repeat-offenders[?vehicle=...]    flagged plates, most recent first; at most one with vehicle
+ * GET    /api/report?by=location&amp;top=10&amp;measure=PENALTY_EXPOSURE    CSV; all dimensions without by
+ * GET    /api/events?since=0&amp;limit=200&amp;wait=30    change log after since; waits up to wait seconds for one
+ * POST   /api/challans                 body: one challan, NDJSON import field names
+ * POST   /api/challans/{id}/pay
+ * DELETE /api/challans/{id}
+ * GET    /metrics                      {@link DatabaseMetrics} in Prometheus text format
+ * </pre>
+ * {@code {filter}} is any of {@code status, vehicle, mode (EXACT|PREFIX|SUBSTRING), violation, overdueAsOf}.
+ * Writes answer 200/201 when a row changed and 404/409 when none did.
+ *
+ * <p>The server listens on loopback unless given another bind address, such as {@code 0.0.0.0} for
+ * booth terminals on the LAN. Anything other than loopback needs a shared token. Every request must then
+ * carry it as {@code Authorization: Bearer <token>}, or it is answered 401. The token is the only access
+ * control and travels in clear over plain HTTP, so the port belongs on a trusted network or behind a TLS
+ * proxy. {@link RemoteChallanStore} sends the token from {@link #TOKEN_PROPERTY} or
+ * {@link #TOKEN_ENV}, the same places {@link #main} reads it from.
+ */
+public class ChallanServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8085;
+    /** System property with the address to listen on; loopback when unset. */
+    public static final String BIND_PROPERTY = "echallan.server.bind";
+    /** System property, or failing that environment variable, with the shared API token. */
+    public static final String TOKEN_PROPERTY = "echallan.server.token";
+    public static final String TOKEN_ENV = "ECHALLAN_SERVER_TOKEN";
+    private static final int MAX_LIMIT = 10_000;
+    // Longest long poll on /api/events; requests run on virtual threads, so a waiting client is cheap
+    private static final int MAX_EVENT_WAIT_SECONDS = 60;
+    // Longest wait for the writer to commit a write; under RemoteChallanStore's 10 s request timeout
+    private static final int WRITE_TIMEOUT_SECONDS = 8;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle on, every response waits ~40ms for
+        // the client's delayed ACK. Read once when the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final Database database;
+    private final WritePipeline writes;
+    private final HttpServer server;
+    // Null when requests need no token, which is only allowed on loopback
+    private final byte[] expectedAuthorization;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Binds to the loopback interface without a token; {@code port} 0 picks a free port (see {@link #getPort()}). */
+    public ChallanServer(Database database, int port) throws IOException {
+        this(database, InetAddress.getLoopbackAddress(), port, null);
+    }
+
+    /**
+     * Binds to {@code bindAddress}. {@code token} may be null only on a loopback address; when set, every
+     * request under {@code /api/} and {@code /metrics} must present it.
+     */
+    public ChallanServer(Database database, InetAddress bindAddress, int port, String token) throws IOException {
+        boolean noToken = token == null || token.isBlank();
+        if (noToken && !bindAddress.isLoopbackAddress()) {
+            throw new IllegalArgumentException("Refusing to serve " + bindAddress.getHostAddress()
+                    + " without a token: set " + TOKEN_PROPERTY + " or " + TOKEN_ENV);
+        }
+        this.database = database;
+        this.writes = database.getWritePipeline();
+        this.expectedAuthorization = noToken ? null : ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.setExecutor(executor);
+        server.createContext("/api/", authorized(this::handle));
+        server.createContext("/metrics", authorized(database.getMetrics().handler()));
+    }
+
+    /** The shared token from {@link #TOKEN_PROPERTY} or {@link #TOKEN_ENV}, or null when neither is set. */
+    public static String configuredToken() {
+        String token = System.getProperty(TOKEN_PROPERTY);
+        if (token == null || token.isBlank()) token = System.getenv(TOKEN_ENV);
+        return token == null || token.isBlank() ? null : token.trim();
+    }
+
+    private HttpHandler authorized(HttpHandler handler) {
+        if (expectedAuthorization == null) return handler;
+        return exchange -> {
+            String header = exchange.getRequestHeaders().getFirst("Authorization");
+            // Constant time, so the comparison does not leak how much of a guess was right
+            if (header != null && MessageDigest.isEqual(expectedAuthorization, header.getBytes(StandardCharsets.UTF_8))) {
+                handler.handle(exchange);
+            } else {
+                try (exchange) {
+                    exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                    send(exchange, 401, ChallanJson.writeError("Missing or wrong token"));
+                }
+            }
+        };
+    }
+
+    public void start() {
+        server.start();
+        Log.info("Challan server listening on http://" + server.getAddress().getHostString() + ":" + getPort() + "/api/");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests and waits for the ones in flight; the database stays open. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getRawPath().substring("/api/".length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            try {
+                route(exchange, method, path, query);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                send(exchange, 400, ChallanJson.writeError(e.getMessage()));
+            } catch (TimeoutException e) {
+                // The write stays queued and may still commit, so the client must not assume either outcome
+                Log.warn("Write not committed within " + WRITE_TIMEOUT_SECONDS + " s: " + method + " "
+                        + exchange.getRequestURI());
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, ChallanJson.writeError("Write not committed in time; it may still be applied"));
+            } catch (Exception e) {
+                Log.error("Error handling " + method + " " + exchange.getRequestURI() + ": " + e.getMessage());
+                send(exchange, 500, ChallanJson.writeError("Internal error"));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, String[] path, Map<String, String> query) throws Exception {
+        String resource = path[0];
+        switch (method + " " + resource + "/" + path.length) {
+            case "GET health/1" -> send(exchange, 200, "{\"status\":\"" + (database.testConnection() ? "UP" : "DOWN") + "\"}");
+            case "GET statistics/1" -> send(exchange, 200, ChallanJson.writeMap(database.getStatistics()));
+            case "GET summary/1" -> send(exchange, 200, ChallanJson.writeSummary(database.getSummary(filter(query))));
+            case "GET challans/1" -> {
+                ChallanSort sort = ChallanSort.DEFAULT;
+                if (query.containsKey("sort")) {
+                    sort = new ChallanSort(ChallanSort.Column.valueOf(query.get("sort").toUpperCase()),
+                            Boolean.parseBoolean(query.getOrDefault("desc", "false")));
+                }
+                List<Challan> rows = database.getChallans(filter(query), sort,
+                        intParam(query, "offset", 0), limit(query));
+                send(exchange, 200, ChallanJson.writeList(rows));
+            }
+            case "GET challans/2" -> {
+                if (path[1].equals("page")) {
+                    String afterId = query.get("afterId");
+                    ChallanPage.Cursor after = afterId == null ? null
+                            : new ChallanPage.Cursor(query.get("afterIssueDate"), afterId);
+                    send(exchange, 200, ChallanJson.writePage(database.getChallansPage(filter(query), after, limit(query))));
+                } else if (path[1].equals("overdue")) {
+                    send(exchange, 200, ChallanJson.writeList(database.getOverdueChallans()));
+                } else {
+                    send(exchange, 404, ChallanJson.writeError("Unknown resource"));
+                }
+            }
+            case "GET archive/1" -> {
+                ChallanFilter filter = filter(query);
+                if (filter.vehicleNumber() == null) {
+                    throw new IllegalArgumentException("vehicle is required");
+                }
+                send(exchange, 200, ChallanJson.writeList(
+                        database.searchArchivedByVehicle(filter.vehicleNumber(), filter.searchMode())));
+            }
+            case "GET outstanding/1" -> {
+                String vehicle = query.get("vehicle");
+                if (vehicle == null || vehicle.isBlank()) {
+                    throw new IllegalArgumentException("vehicle is required");
+                }
+                send(exchange, 200, ChallanJson.writeOutstanding(database.getOutstanding(vehicle)));
+            }
+            case "GET repeat-offenders/1" -> {
+                String vehicle = query.get("vehicle");
+                if (vehicle == null) {
+                    send(exchange, 200, ChallanJson.writeRepeatOffenders(database.getRepeatOffenders()));
+                } else {
+                    RepeatOffender flag = database.getRepeatOffender(vehicle);
+                    send(exchange, 200, ChallanJson.writeRepeatOffenders(flag != null ? List.of(flag) : List.of()));
+                }
+            }
+            case "GET report/1" -> {
+                ChallanReport report = database.getReport();
+                String by = query.get("by");
+                if (by == null) {
+                    sendCsv(exchange, report.toCsv());
+                } else if (query.containsKey("top")) {
+                    ChallanReport.Measure measure = ChallanReport.Measure.valueOf(
+                            query.getOrDefault("measure", "FINES_ISSUED").toUpperCase());
+                    sendCsv(exchange, report.toCsv(ChallanReport.Dimension.valueOf(by.toUpperCase()), measure,
+                            intParam(query, "top", 10)));
+                } else {
+                    sendCsv(exchange, report.toCsv(ChallanReport.Dimension.valueOf(by.toUpperCase())));
+                }
+            }
+            case "GET events/1" -> {
+                long since = longParam(query, "since", 0);
+                int wait = intParam(query, "wait", 0);
+                if (wait < 0 || wait > MAX_EVENT_WAIT_SECONDS) {
+                    throw new IllegalArgumentException("wait must be between 0 and " + MAX_EVENT_WAIT_SECONDS);
+                }
+                List<ChallanEvent> events = wait > 0 ? database.awaitEvents(since, limit(query), wait * 1000L)
+                        : database.readEventsSince(since, limit(query));
+                send(exchange, 200, ChallanJson.writeEvents(events, since));
+            }
+            case "POST challans/1" -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                Challan challan = ChallanJson.readChallan(Json.parseObject(body));
+                boolean added = committed(writes.addChallan(challan));
+                send(exchange, added ? 201 : 409, added ? ChallanJson.write(challan)
+                        : ChallanJson.writeError("Challan not added: " + challan.getChallanId()));
+            }
+            case "POST challans/3" -> {
+                if (!path[2].equals("pay")) {
+                    send(exchange, 404, ChallanJson.writeError("Unknown resource"));
+                    return;
+                }
+                String challanId = decode(path[1]);
+                sendWrite(exchange, committed(writes.payChallan(challanId)), "No challan " + challanId);
+            }
+            case "DELETE challans/2" -> {
+                String challanId = decode(path[1]);
+                sendWrite(exchange, committed(writes.deleteChallan(challanId)), "No challan " + challanId);
+            }
+            default -> send(exchange, 404, ChallanJson.writeError("Unknown resource"));
+        }
+    }
+
+    private static ChallanFilter filter(Map<String, String> query) {
+        String vehicle = query.get("vehicle");
+        String mode = query.get("mode");
+        String overdueAsOf = query.get("overdueAsOf");
+        return new ChallanFilter(query.get("status"), vehicle,
+                mode != null ? SearchMode.valueOf(mode.toUpperCase()) : vehicle != null ? SearchMode.SUBSTRING : null,
+                overdueAsOf != null ? LocalDate.parse(overdueAsOf) : null,
+                query.get("violation"));
+    }
+
+    private static int limit(Map<String, String> query) {
+        int limit = intParam(query, "limit", ChallanTableModel.BLOCK_SIZE);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private static long longParam(Map<String, String> query, String name, long fallback) {
+        String value = query.get(name);
+        if (value == null) return fallback;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+
+    private static int intParam(Map<String, String> query, String name, int fallback) {
+        String value = query.get(name);
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(decode(pair.substring(0, eq)), decode(pair.substring(eq + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    private static boolean committed(CompletableFuture<Boolean> write) throws Exception {
+        return write.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static void sendWrite(HttpExchange exchange, boolean changed, String notFound) throws IOException {
+        send(exchange, changed ? 200 : 404, changed ? "{\"ok\":true}" : ChallanJson.writeError(notFound));
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void sendCsv(HttpExchange exchange, String csv) throws IOException {
+        send(exchange, 200, "text/csv; charset=utf-8", csv);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * {@code java [-Dechallan.server.bind=0.0.0.0] [-Dechallan.server.token=...] com.echallan.ChallanServer [port] [jdbc-url]}
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        DatabaseConfig config = new DatabaseConfig().setArchiveAfterDays(365).setOutstandingIndex(true)
+                .setPendingPlateFilter(true).setRepeatOffenderThreshold(3).setJmxEnabled(true);
+        if (args.length > 1) {
+            config.setUrl(args[1]);
+        }
+        Database database = new Database(config);
+        if (!database.testConnection()) {
+            System.err.println("Database connection failed, not starting the server");
+            database.close();
+            System.exit(1);
+        }
+        String bind = System.getProperty(BIND_PROPERTY);
+        InetAddress bindAddress = bind != null && !bind.isBlank() ? InetAddress.getByName(bind.trim())
+                : InetAddress.getLoopbackAddress();
+        ChallanServer server;
+        try {
+            server = new ChallanServer(database, bindAddress, port, configuredToken());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            database.close();
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            database.close();
+        }));
+        server.start();
+    }
+}
@@ -0,0 +1,135 @@
+package com.echallan;
+
+import javax.swing.SwingUtilities;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous front for a {@link ChallanStore} (local {@link Database} or remote server) used by the GUI. Every call runs on a virtual thread and
+ * returns a {@link CompletableFuture}; the connection pool bounds how many actually touch SQLite at once.
+ * Calls made through {@link #submitLatest(String, Callable)} cancel the previous call with the same key,
+ * so a new search replaces one that is still running instead of queueing behind it.
+ */
+public class ChallanService implements AutoCloseable {
+    private final ChallanStore store;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    public ChallanService(ChallanStore store) {
+        this.store = store;
+    }
+
+    public ChallanStore getStore() { return store; }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        // Cancelling the returned future interrupts the worker, e.g. while it waits for a pooled connection
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /** Like {@link #submit(Callable)}, but first cancels any unfinished task submitted under {@code key}. */
+    public <T> CompletableFuture<T> submitLatest(String key, Callable<T> task) {
+        CompletableFuture<T> future = submit(task);
+        CompletableFuture<?> previous = latest.put(key, future);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        future.whenComplete((value, error) -> latest.remove(key, future));
+        return future;
+    }
+
+    // Typed operations
+
+    public CompletableFuture<Boolean> addChallan(Challan challan) {
+        return submit(() -> store.addChallan(challan));
+    }
+
+    public CompletableFuture<Boolean> payChallan(String challanId) {
+        return submit(() -> store.payChallan(challanId));
+    }
+
+    public CompletableFuture<Boolean> deleteChallan(String challanId) {
+        return submit(() -> store.deleteChallan(challanId));
+    }
+
+    /** Pays every challan; completes with how many were marked paid. */
+    public CompletableFuture<Integer> payChallans(List<String> challanIds) {
+        return submit(() -> store.payChallans(challanIds));
+    }
+
+    /** Deletes every challan; completes with how many were deleted. */
+    public CompletableFuture<Integer> deleteChallans(List<String> challanIds) {
+        return submit(() -> store.deleteChallans(challanIds));
+    }
+
+    public CompletableFuture<Map<String, Object>> getStatistics() {
+        return submitLatest("statistics", store::getStatistics);
+    }
+
+    public CompletableFuture<List<Challan>> getOverdueChallans() {
+        return submit(store::getOverdueChallans);
+    }
+
+    public CompletableFuture<List<Challan>> searchArchivedByVehicle(String vehicleNumber, SearchMode mode) {
+        return submit(() -> store.searchArchivedByVehicle(vehicleNumber, mode));
+    }
+
+    public CompletableFuture<Outstanding> getOutstanding(String vehicleNumber) {
+        return submit(() -> store.getOutstanding(vehicleNumber));
+    }
+
+    public CompletableFuture<RepeatOffender> getRepeatOffender(String vehicleNumber) {
+        return submit(() -> store.getRepeatOffender(vehicleNumber));
+    }
+
+    public CompletableFuture<List<RepeatOffender>> getRepeatOffenders() {
+        return submit(store::getRepeatOffenders);
+    }
+
+    public CompletableFuture<ChallanPage> getChallansPage(ChallanFilter filter, ChallanPage.Cursor after, int limit) {
+        return submit(() -> store.getChallansPage(filter, after, limit));
+    }
+
+    public CompletableFuture<List<Challan>> getChallans(ChallanFilter filter, ChallanSort sort, int offset, int limit) {
+        return submit(() -> store.getChallans(filter, sort, offset, limit));
+    }
+
+    public CompletableFuture<ChallanSummary> getSummary(ChallanFilter filter) {
+        return submit(() -> store.getSummary(filter));
+    }
+
+    /**
+     * Delivers the outcome of {@code future} on the Swing event dispatch thread. Cancelled futures
+     * are dropped silently, since they were replaced by a newer request.
+     */
+    public static <T> void onEdt(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenCompleteAsync((value, error) -> {
+            if (future.isCancelled()) {
+                return;
+            }
+            if (error != null) {
+                onError.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                onSuccess.accept(value);
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package com.echallan;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Streams a bank reconciliation file into {@link Database#settlePayments(Iterator, SettlementResult)}.
+ * The file is read line by line, so a file of millions of payments needs no more memory than one
+ * settlement chunk.
+ *
+ * <p>A {@code .csv} file needs a header row with a {@code challan_id} column; other columns (amounts,
+ * bank references) are ignored. Any other file holds one challan ID per line.
+ */
+public class ChallanSettlement {
+    private final Database database;
+
+    public ChallanSettlement(Database database) {
+        this.database = database;
+    }
+
+    public SettlementResult settleFile(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            SettlementResult result = new SettlementResult();
+            IdIterator ids;
+            if (file.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                String header = reader.readLine();
+                if (header == null) {
+                    return result;
+                }
+                List<String> names = ChallanImporter.parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+                int column = -1;
+                for (int i = 0; i < names.size(); i++) {
+                    if (names.get(i).trim().equalsIgnoreCase("challan_id")) column = i;
+                }
+                if (column < 0) {
+                    throw new IOException("CSV header is missing column: challan_id");
+                }
+                int index = column;
+                ids = new IdIterator(reader, result, line -> {
+                    List<String> values = ChallanImporter.parseCsvLine(line);
+                    return index < values.size() ? values.get(index) : null;
+                });
+            } else {
+                ids = new IdIterator(reader, result, line -> line.startsWith("\uFEFF") ? line.substring(1) : line);
+            }
+            database.settlePayments(ids, result);
+            if (ids.ioError != null) {
+                throw ids.ioError;
+            }
+            Log.info("Settlement finished: " + result);
+            return result;
+        }
+    }
+
+    private interface LineParser {
+        String parse(String line);
+    }
+
+    /** Reads ahead to the next line holding an ID, counting unparseable ones as failed. */
+    private static class IdIterator implements Iterator<String> {
+        private final BufferedReader reader;
+        private final SettlementResult result;
+        private final LineParser parser;
+        private String next;
+        private boolean done;
+        private IOException ioError;
+
+        IdIterator(BufferedReader reader, SettlementResult result, LineParser parser) {
+            this.reader = reader;
+            this.result = result;
+            this.parser = parser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !done) {
+                String line;
+                try {
+                    line = reader.readLine();
+                } catch (IOException e) {
+                    ioError = e;
+                    line = null;
+                }
+                if (line == null) {
+                    done = true;
+                    break;
+                }
+                if (line.isBlank()) continue;
+                try {
+                    String id = parser.parse(line);
+                    if (id != null && !id.isBlank()) {
+                        next = id.strip();
+                    } else {
+                        result.addFailed(1);
+                    }
+                } catch (RuntimeException e) {
+                    result.addFailed(1);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            String id = next;
+            next = null;
+            return id;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ChallanSettlement <file.csv|file.txt> [jdbc-url]");
+            System.exit(1);
+        }
+        DatabaseConfig config = args.length > 1 ? new DatabaseConfig(args[1]) : new DatabaseConfig();
+        try (Database database = new Database(config.setOptimizeOnOpen(false))) {
+            SettlementResult result = new ChallanSettlement(database).settleFile(Path.of(args[0]));
+            Log.flush();
+            for (String challanId : result.getUnmatchedIds()) {
+                System.err.println("Unmatched " + challanId);
+            }
+            for (String challanId : result.getAlreadyPaidIds()) {
+                System.err.println("Already paid " + challanId);
+            }
+            System.out.println(result);
+        }
+    }
+}
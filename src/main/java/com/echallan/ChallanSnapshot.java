@@ -0,0 +1,643 @@
+package com.echallan;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Compact binary snapshots of the {@code challans} table ({@code .echs} files) for bulk exchange. Export
+ * streams rows straight from a read snapshot to a {@link FileChannel}; import maps the file one block at a
+ * time and feeds {@link Database#addChallans(Iterator, BulkInsertResult)}. Both sides hold a single block
+ * in memory, whatever the table size.
+ *
+ * <p>The file is a header, a run of blocks of up to {@link #BLOCK_ROWS} rows, and a trailer holding the
+ * row count. Within a block each column is stored contiguously:
+ * <ul>
+ *   <li>{@code challan_id}: front-coded against the previous ID, which suits time-ordered IDs</li>
+ *   <li>{@code violation}, {@code status}, {@code location}: a per-block dictionary and one varint code per row</li>
+ *   <li>{@code fine}: a zigzag varint of paise, or the raw double when the value is not a whole paisa</li>
+ *   <li>{@code issue_date}: varint delta in minutes from the previous row; {@code due_date}: varint delta in
+ *       days from the row's issue day</li>
+ * </ul>
+ * Dates not in the app's own formats are stored as text, so every value round-trips exactly. Strings are
+ * UTF-8 with a varint length. Fixed-width fields are big-endian.
+ */
+public class ChallanSnapshot {
+    public static final String EXTENSION = ".echs";
+    // Rows per block: the unit of memory use on both sides
+    static final int BLOCK_ROWS = 65_536;
+
+    private static final int MAGIC = 0x45434853; // "ECHS"
+    private static final short VERSION = 1;
+    private static final short COLUMNS = 8;
+    private static final int HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 4 + 4 * COLUMNS;
+    // rowid order is a plain table scan; an index order would add a lookup per row
+    private static final String EXPORT_SQL = "SELECT challan_id, vehicle_number, violation, fine, status, issue_date, "
+            + "due_date, location FROM challans ORDER BY rowid";
+
+    // Column codes for dictionary and date columns; other values are offset past them
+    private static final int NULL_CODE = 0;
+    private static final int TEXT_CODE = 1;
+    private static final long NOT_A_DATE = Long.MIN_VALUE;
+    private static final int MINUTES_PER_DAY = 1440;
+
+    private final Database database;
+
+    public ChallanSnapshot(Database database) {
+        this.database = database;
+    }
+
+    /**
+     * Writes every challan to {@code file} from one consistent read snapshot and returns the row count.
+     * The file is written under a temporary name and moved into place when complete.
+     */
+    public long export(Path file) throws IOException {
+        long start = System.nanoTime();
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        long rows = 0;
+        long bytes;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             PooledConnection conn = database.reader()) {
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort(COLUMNS).flip());
+            BlockWriter block = new BlockWriter();
+            conn.begin();
+            try (ResultSet rs = conn.prepare(EXPORT_SQL).executeQuery()) {
+                while (rs.next()) {
+                    block.add(rs);
+                    rows++;
+                    if (block.rows == BLOCK_ROWS) {
+                        block.flush(channel);
+                    }
+                }
+                block.flush(channel);
+            } finally {
+                conn.rollback();
+            }
+            writeFully(channel, ByteBuffer.allocate(12).putInt(0).putLong(rows).flip());
+            channel.force(true);
+            bytes = channel.size();
+        } catch (IOException | SQLException e) {
+            Files.deleteIfExists(partial);
+            throw e instanceof IOException io ? io : new IOException("Error reading challans: " + e.getMessage(), e);
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        Log.info("Exported " + rows + " challans to " + file + " (" + bytes / 1024 + " KB) in " + millis
+                + " ms, " + rows * 1000 / millis + " rows/s");
+        return rows;
+    }
+
+    /**
+     * Loads a snapshot through the bulk insert path. Rows whose IDs already exist are reported as
+     * duplicates; row numbers in failures count from 1. A damaged file stops the import with an
+     * {@link IOException} after the rows before the damage have been committed.
+     */
+    public BulkInsertResult importSnapshot(Path file) throws IOException {
+        long start = System.nanoTime();
+        BulkInsertResult result = new BulkInsertResult();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BlockReader rows = new BlockReader(channel);
+            database.addChallans(rows, rows::rowNumber, result);
+            if (rows.error != null) {
+                throw rows.error;
+            }
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            Log.info("Snapshot import finished: " + result + ", " + rows.rowNumber * 1000 / millis + " rows/s");
+        }
+        return result;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Epoch minute of an issue date in Challan.ISSUE_DATE_FORMAT, or NOT_A_DATE for anything else
+    static long parseMinute(String value) {
+        if (value == null || value.length() != 16 || value.charAt(10) != ' ' || value.charAt(13) != ':') {
+            return NOT_A_DATE;
+        }
+        long day = parseDay(value, 0);
+        int hour = digits(value, 11, 13);
+        int minute = digits(value, 14, 16);
+        if (day == NOT_A_DATE || hour < 0 || hour > 23 || minute < 0 || minute > 59) return NOT_A_DATE;
+        return day * MINUTES_PER_DAY + hour * 60 + minute;
+    }
+
+    // Epoch day of a date in Challan.DUE_DATE_FORMAT, or NOT_A_DATE for anything else
+    static long parseDay(String value) {
+        return value != null && value.length() == 10 ? parseDay(value, 0) : NOT_A_DATE;
+    }
+
+    private static long parseDay(String value, int from) {
+        if (value.charAt(from + 4) != '-' || value.charAt(from + 7) != '-') {
+            return NOT_A_DATE;
+        }
+        int year = digits(value, from, from + 4);
+        int month = digits(value, from + 5, from + 7);
+        int day = digits(value, from + 8, from + 10);
+        if (year < 0 || month < 0 || day < 0) return NOT_A_DATE;
+        try {
+            return LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NOT_A_DATE;
+        }
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    static String formatMinute(long epochMinute) {
+        char[] text = new char[16];
+        formatDay(Math.floorDiv(epochMinute, MINUTES_PER_DAY), text);
+        int minuteOfDay = Math.floorMod(epochMinute, MINUTES_PER_DAY);
+        text[10] = ' ';
+        pad(text, 11, minuteOfDay / 60, 2);
+        text[13] = ':';
+        pad(text, 14, minuteOfDay % 60, 2);
+        return new String(text);
+    }
+
+    static String formatDay(long epochDay) {
+        char[] text = new char[10];
+        formatDay(epochDay, text);
+        return new String(text);
+    }
+
+    private static void formatDay(long epochDay, char[] text) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        pad(text, 0, date.getYear(), 4);
+        text[4] = '-';
+        pad(text, 5, date.getMonthValue(), 2);
+        text[7] = '-';
+        pad(text, 8, date.getDayOfMonth(), 2);
+    }
+
+    private static void pad(char[] text, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /** Growable byte array with the encodings the columns use; reused from block to block. */
+    private static final class ColumnBuffer {
+        private byte[] bytes = new byte[1 << 16];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeDouble(double value) {
+            ensure(8);
+            long raw = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (raw >>> shift);
+            }
+        }
+
+        // Length + 1, so 0 can stand for null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1L);
+            writeBytes(utf8, 0, utf8.length);
+        }
+
+        ByteBuffer buffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /** Per-block dictionary: codes are written as rows arrive, the entries ahead of them at flush. */
+    private static final class DictionaryColumn {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final ColumnBuffer entries = new ColumnBuffer();
+        private final ColumnBuffer values = new ColumnBuffer();
+        private final ColumnBuffer encoded = new ColumnBuffer();
+
+        void add(String value) {
+            if (value == null) {
+                values.writeVarint(NULL_CODE);
+                return;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = codes.size() + 1;
+                codes.put(value, code);
+                entries.writeString(value);
+            }
+            values.writeVarint(code);
+        }
+
+        ColumnBuffer encode() {
+            encoded.clear();
+            encoded.writeVarint(codes.size());
+            encoded.writeBytes(entries.bytes, 0, entries.size);
+            encoded.writeBytes(values.bytes, 0, values.size);
+            return encoded;
+        }
+
+        void clear() {
+            codes.clear();
+            entries.clear();
+            values.clear();
+        }
+    }
+
+    private static final class BlockWriter {
+        private final ColumnBuffer ids = new ColumnBuffer();
+        private final ColumnBuffer plates = new ColumnBuffer();
+        private final DictionaryColumn violations = new DictionaryColumn();
+        private final ColumnBuffer fines = new ColumnBuffer();
+        private final DictionaryColumn statuses = new DictionaryColumn();
+        private final ColumnBuffer issued = new ColumnBuffer();
+        private final ColumnBuffer due = new ColumnBuffer();
+        private final DictionaryColumn locations = new DictionaryColumn();
+        private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        private byte[] previousId = new byte[0];
+        private long previousMinute;
+        int rows;
+
+        void add(ResultSet rs) throws SQLException {
+            addId(rs.getString(1));
+            plates.writeString(rs.getString(2));
+            violations.add(rs.getString(3));
+            addFine(rs.getDouble(4));
+            statuses.add(rs.getString(5));
+            long issueMinute = addIssueDate(rs.getString(6));
+            addDueDate(rs.getString(7), issueMinute);
+            locations.add(rs.getString(8));
+            rows++;
+        }
+
+        // Shared prefix length + 1 (0 = null), then the rest of the ID
+        private void addId(String id) {
+            if (id == null) {
+                ids.writeVarint(0);
+                return;
+            }
+            byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+            int shared = Arrays.mismatch(previousId, utf8);
+            if (shared < 0) shared = utf8.length;
+            shared = Math.min(shared, Math.min(previousId.length, utf8.length));
+            ids.writeVarint(shared + 1L);
+            ids.writeVarint(utf8.length - shared);
+            ids.writeBytes(utf8, shared, utf8.length - shared);
+            previousId = utf8;
+        }
+
+        // Even codes are whole paise; 1 is followed by the raw double
+        private void addFine(double fine) {
+            long paise = Math.round(fine * 100);
+            if (Math.abs(fine) < 1e15 && paise / 100.0 == fine) {
+                fines.writeVarint(zigzag(paise) << 1);
+            } else {
+                fines.writeVarint(1);
+                fines.writeDouble(fine);
+            }
+        }
+
+        private long addIssueDate(String issueDate) {
+            long minute = parseMinute(issueDate);
+            if (minute != NOT_A_DATE) {
+                issued.writeVarint(zigzag(minute - previousMinute) + 2);
+                previousMinute = minute;
+            } else {
+                writeText(issued, issueDate);
+            }
+            return minute;
+        }
+
+        private void addDueDate(String dueDate, long issueMinute) {
+            long day = parseDay(dueDate);
+            if (day != NOT_A_DATE) {
+                long base = issueMinute != NOT_A_DATE ? Math.floorDiv(issueMinute, MINUTES_PER_DAY) : 0;
+                due.writeVarint(zigzag(day - base) + 2);
+            } else {
+                writeText(due, dueDate);
+            }
+        }
+
+        private static void writeText(ColumnBuffer column, String value) {
+            if (value == null) {
+                column.writeVarint(NULL_CODE);
+            } else {
+                column.writeVarint(TEXT_CODE);
+                column.writeString(value);
+            }
+        }
+
+        void flush(FileChannel channel) throws IOException {
+            if (rows == 0) return;
+            ColumnBuffer[] columns = {ids, plates, violations.encode(), fines, statuses.encode(), issued, due,
+                    locations.encode()};
+            ByteBuffer[] buffers = new ByteBuffer[columns.length + 1];
+            header.clear();
+            header.putInt(rows);
+            for (int i = 0; i < columns.length; i++) {
+                header.putInt(columns[i].size);
+                buffers[i + 1] = columns[i].buffer();
+            }
+            buffers[0] = header.flip();
+            writeFully(channel, buffers);
+
+            for (ColumnBuffer column : List.of(ids, plates, fines, issued, due)) {
+                column.clear();
+            }
+            violations.clear();
+            statuses.clear();
+            locations.clear();
+            previousId = new byte[0];
+            previousMinute = 0;
+            rows = 0;
+        }
+    }
+
+    /** Decodes one mapped block at a time; a damaged file ends the iteration and leaves {@link #error} set. */
+    private static final class BlockReader implements Iterator<Challan> {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        private final ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+        private String[] violations = new String[0];
+        private String[] statuses = new String[0];
+        private String[] locations = new String[0];
+        private byte[] id = new byte[64];
+        private int idLength;
+        private byte[] scratch = new byte[256];
+        private long previousMinute;
+        private long offset = HEADER_BYTES;
+        private int blockRows;
+        private int blockRow;
+        private long rowNumber;
+        private Challan next;
+        private boolean done;
+        private IOException error;
+
+        BlockReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.fileSize = channel.size();
+            ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(fileHeader, 0);
+            if (fileHeader.getInt() != MAGIC) {
+                throw new IOException("Not a challan snapshot file");
+            }
+            short version = fileHeader.getShort();
+            short columnCount = fileHeader.getShort();
+            if (version != VERSION || columnCount != COLUMNS) {
+                throw new IOException("Unsupported snapshot version " + version + " with " + columnCount + " columns");
+            }
+        }
+
+        long rowNumber() {
+            return rowNumber;
+        }
+
+        // Decodes ahead, so a damaged row ends the iteration instead of failing inside the bulk insert
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (blockRow < blockRows || nextBlock()) {
+                        next = decodeRow();
+                        blockRow++;
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                } catch (RuntimeException e) {
+                    fail(new IOException("Damaged snapshot at row " + (rowNumber + 1) + ": " + e, e));
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Challan next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Challan challan = next;
+            next = null;
+            rowNumber++;
+            return challan;
+        }
+
+        private void fail(IOException e) {
+            error = e;
+            done = true;
+        }
+
+        private boolean nextBlock() throws IOException {
+            header.clear();
+            header.limit(4);
+            readFully(header, offset);
+            int rows = header.getInt(0);
+            if (rows == 0) {
+                ByteBuffer count = ByteBuffer.allocate(8);
+                readFully(count, offset + 4);
+                long expected = count.getLong();
+                if (expected != rowNumber) {
+                    throw new IOException("Snapshot holds " + rowNumber + " rows but its trailer says " + expected);
+                }
+                done = true;
+                return false;
+            }
+            header.clear();
+            readFully(header, offset);
+            header.getInt();
+            int[] lengths = new int[COLUMNS];
+            long payload = 0;
+            for (int i = 0; i < COLUMNS; i++) {
+                lengths[i] = header.getInt();
+                if (lengths[i] < 0) throw new IOException("Damaged snapshot block at byte " + offset);
+                payload += lengths[i];
+            }
+            long payloadStart = offset + BLOCK_HEADER_BYTES;
+            if (rows < 0 || payloadStart + payload > fileSize || payload > Integer.MAX_VALUE) {
+                throw new IOException("Truncated snapshot block at byte " + offset);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, payloadStart, payload);
+            int position = 0;
+            for (int i = 0; i < COLUMNS; i++) {
+                columns[i] = mapped.slice(position, lengths[i]);
+                position += lengths[i];
+            }
+            violations = readDictionary(columns[2]);
+            statuses = readDictionary(columns[4]);
+            locations = readDictionary(columns[7]);
+            idLength = 0;
+            previousMinute = 0;
+            blockRows = rows;
+            blockRow = 0;
+            offset = payloadStart + payload;
+            return true;
+        }
+
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Truncated snapshot file at byte " + (position + buffer.position()));
+                }
+            }
+            buffer.flip();
+        }
+
+        private Challan decodeRow() {
+            String challanId = readId(columns[0]);
+            String vehicleNumber = readString(columns[1]);
+            String violation = lookup(violations, columns[2]);
+            long fineCode = readVarint(columns[3]);
+            double fine = (fineCode & 1) == 0 ? unzigzag(fineCode >>> 1) / 100.0 : columns[3].getDouble();
+            String status = lookup(statuses, columns[4]);
+
+            String issueDate;
+            long issueDay = 0;
+            long issueCode = readVarint(columns[5]);
+            if (issueCode == NULL_CODE) {
+                issueDate = null;
+            } else if (issueCode == TEXT_CODE) {
+                issueDate = readString(columns[5]);
+            } else {
+                previousMinute += unzigzag(issueCode - 2);
+                issueDate = formatMinute(previousMinute);
+                issueDay = Math.floorDiv(previousMinute, MINUTES_PER_DAY);
+            }
+
+            String dueDate;
+            long dueDay = Challan.NO_DUE_DAY;
+            long dueCode = readVarint(columns[6]);
+            if (dueCode == NULL_CODE) {
+                dueDate = null;
+            } else if (dueCode == TEXT_CODE) {
+                dueDate = readString(columns[6]);
+            } else {
+                dueDay = issueDay + unzigzag(dueCode - 2);
+                dueDate = formatDay(dueDay);
+            }
+
+            String location = lookup(locations, columns[7]);
+            return new Challan(challanId, vehicleNumber, violation, fine, status, issueDate, dueDate, location, dueDay);
+        }
+
+        private String[] readDictionary(ByteBuffer column) {
+            int size = (int) readVarint(column);
+            String[] entries = new String[size];
+            for (int i = 0; i < size; i++) {
+                entries[i] = readString(column);
+            }
+            return entries;
+        }
+
+        private String lookup(String[] dictionary, ByteBuffer column) {
+            int code = (int) readVarint(column);
+            return code == NULL_CODE ? null : dictionary[code - 1];
+        }
+
+        private String readId(ByteBuffer column) {
+            long code = readVarint(column);
+            if (code == 0) return null;
+            int shared = (int) (code - 1);
+            int suffix = (int) readVarint(column);
+            if (shared > idLength) throw new IllegalArgumentException("bad ID prefix length " + shared);
+            if (shared + suffix > id.length) {
+                id = Arrays.copyOf(id, Math.max(id.length * 2, shared + suffix));
+            }
+            column.get(id, shared, suffix);
+            idLength = shared + suffix;
+            return new String(id, 0, idLength, StandardCharsets.UTF_8);
+        }
+
+        private String readString(ByteBuffer column) {
+            long length = readVarint(column) - 1;
+            if (length < 0) return null;
+            if (length > column.remaining()) throw new IllegalArgumentException("bad string length " + length);
+            if (length > scratch.length) {
+                scratch = new byte[(int) Math.max(scratch.length * 2L, length)];
+            }
+            column.get(scratch, 0, (int) length);
+            return new String(scratch, 0, (int) length, StandardCharsets.UTF_8);
+        }
+
+        private static long readVarint(ByteBuffer column) {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = column.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+            throw new IllegalArgumentException("varint longer than 10 bytes");
+        }
+    }
+
+    /** {@code java com.echallan.ChallanSnapshot export|import <file.echs> [jdbc-url]} */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.err.println("Usage: ChallanSnapshot export|import <file" + EXTENSION + "> [jdbc-url]");
+            System.exit(1);
+        }
+        DatabaseConfig config = args.length > 2 ? new DatabaseConfig(args[2]) : new DatabaseConfig();
+        try (Database database = new Database(config.setOptimizeOnOpen(false))) {
+            ChallanSnapshot snapshot = new ChallanSnapshot(database);
+            if (args[0].equals("export")) {
+                snapshot.export(Path.of(args[1]));
+            } else {
+                BulkInsertResult result = snapshot.importSnapshot(Path.of(args[1]));
+                Log.flush();
+                for (BulkInsertResult.Failure failure : result.getFailures()) {
+                    System.err.println("Rejected " + failure);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.echallan;
+
+/**
+ * Listing order for {@link Database#getChallans(ChallanFilter, ChallanSort, int, int)}. Every order ends
+ * with {@code challan_id} in the same direction, so it is total and offsets are stable between calls.
+ */
+public record ChallanSort(Column column, boolean descending) {
+    /** Newest first, the order of {@link Database#getChallansPage} and the in-memory cache. */
+    public static final ChallanSort DEFAULT = new ChallanSort(Column.ISSUE_DATE, true);
+
+    public enum Column {
+        CHALLAN_ID("challan_id"),
+        // Plates sort by their normalized key, which is indexed and ignores spacing
+        VEHICLE("vehicle_key"),
+        VIOLATION("violation"),
+        FINE("fine"),
+        STATUS("status"),
+        ISSUE_DATE("issue_date"),
+        DUE_DATE("due_day"),
+        LOCATION("location");
+
+        private final String sqlColumn;
+
+        Column(String sqlColumn) {
+            this.sqlColumn = sqlColumn;
+        }
+    }
+
+    public ChallanSort {
+        if (column == null) throw new IllegalArgumentException("column is required");
+    }
+
+    /** The same column in the opposite direction. */
+    public ChallanSort reversed() {
+        return new ChallanSort(column, !descending);
+    }
+
+    String orderBy() {
+        String direction = descending ? " DESC" : " ASC";
+        if (column == Column.CHALLAN_ID) {
+            return " ORDER BY challan_id" + direction;
+        }
+        return " ORDER BY " + column.sqlColumn + direction + ", challan_id" + direction;
+    }
+}
@@ -0,0 +1,324 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Incrementally maintained aggregates over {@code challans}. Triggers on the base table keep one
+ * {@code challan_stats} row per (dimension, key) up to date inside the writing transaction, so reading
+ * statistics costs a primary-key lookup instead of a full scan. Dimensions are the global total
+ * ({@link #ALL}), violation type, location and issue day. Archived challans stay counted: the summary
+ * covers {@link ChallanArchive#HISTORY_VIEW}, not just the hot table. {@code pending_penalty} sums the
+ * materialized penalties of pending challans; the daily accrual adjusts it in bulk, like settlement does
+ * for the status counts.
+ */
+public class ChallanStatistics {
+    public static final String ALL = "all";
+    public static final String VIOLATION = "violation";
+    public static final String LOCATION = "location";
+    public static final String DAY = "day";
+
+    /** Aggregates for one key of one dimension. */
+    public record Row(String key, long total, long pending, long paid, double pendingAmount, double collectedAmount,
+                      double pendingPenalty) {
+    }
+
+    // Source expression for each dimension's key, written against a NEW/OLD row alias
+    private static final Map<String, String> DIMENSIONS = new LinkedHashMap<>();
+    static {
+        DIMENSIONS.put(ALL, "''");
+        DIMENSIONS.put(VIOLATION, "IFNULL(%s.violation, '')");
+        DIMENSIONS.put(LOCATION, "IFNULL(%s.location, '')");
+        DIMENSIONS.put(DAY, "IFNULL(substr(%s.issue_date, 1, 10), '')");
+    }
+
+    // Sums drift by floating-point rounding; anything beyond a paisa is a real mismatch
+    private static final double AMOUNT_TOLERANCE = 0.005;
+
+    private ChallanStatistics() {
+    }
+
+    /**
+     * Schema migration 5: creates the summary table and triggers, populating the table from challans the
+     * first time. Kept as shipped, without penalties, which {@link #addPenalties} brings in at migration 7.
+     */
+    static void install(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            boolean exists;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'challan_stats'")) {
+                exists = rs.next();
+            }
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS challan_stats (
+                    dimension TEXT NOT NULL,
+                    key TEXT NOT NULL,
+                    total INTEGER NOT NULL DEFAULT 0,
+                    pending INTEGER NOT NULL DEFAULT 0,
+                    paid INTEGER NOT NULL DEFAULT 0,
+                    pending_amount REAL NOT NULL DEFAULT 0,
+                    collected_amount REAL NOT NULL DEFAULT 0,
+                    PRIMARY KEY (dimension, key)
+                ) WITHOUT ROWID
+            """);
+            createTriggers(stmt, false);
+            if (!exists) {
+                // Installed before the archive exists, so the hot table is the whole history
+                rebuild(conn.getConnection(), "challans", false);
+                Log.info("Built statistics summary table");
+            }
+        }
+    }
+
+    private static void createTriggers(Statement stmt, boolean penalties) throws SQLException {
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS challan_stats_insert AFTER INSERT ON challans BEGIN "
+                + upsert("NEW", 1, penalties) + " END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS challan_stats_delete AFTER DELETE ON challans BEGIN "
+                + upsert("OLD", -1, penalties) + " END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS challan_stats_update "
+                + "AFTER UPDATE OF status, fine, violation, location, issue_date" + (penalties ? ", penalty_amount" : "")
+                + " ON challans BEGIN " + upsert("OLD", -1, penalties) + " " + upsert("NEW", 1, penalties) + " END");
+    }
+
+    /**
+     * Schema migration for files whose summary predates penalties: adds {@code pending_penalty} and
+     * recreates the triggers to maintain it. Every stored penalty is still zero, so nothing is recounted.
+     */
+    static void addPenalties(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            boolean exists;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM pragma_table_info('challan_stats') WHERE name = 'pending_penalty'")) {
+                exists = rs.next();
+            }
+            if (!exists) {
+                stmt.execute("ALTER TABLE challan_stats ADD COLUMN pending_penalty REAL NOT NULL DEFAULT 0");
+            }
+            for (String trigger : List.of("challan_stats_insert", "challan_stats_delete", "challan_stats_update")) {
+                stmt.execute("DROP TRIGGER IF EXISTS " + trigger);
+            }
+            createTriggers(stmt, true);
+        }
+    }
+
+    // Without penalties: the trigger body as migration 5 shipped it, before pending_penalty existed
+    private static String upsert(String row, int sign, boolean penalties) {
+        StringBuilder sql = new StringBuilder("INSERT INTO challan_stats (dimension, key, total, pending, paid, "
+                + "pending_amount, collected_amount" + (penalties ? ", pending_penalty" : "") + ") VALUES ");
+        String s = sign < 0 ? "-" : "";
+        boolean first = true;
+        for (Map.Entry<String, String> dimension : DIMENSIONS.entrySet()) {
+            if (!first) sql.append(", ");
+            first = false;
+            sql.append("('").append(dimension.getKey()).append("', ")
+                    .append(String.format(dimension.getValue(), row)).append(", ")
+                    .append(s).append("1, ")
+                    .append(s).append("(").append(row).append(".status IS 'PENDING'), ")
+                    .append(s).append("(").append(row).append(".status IS 'PAID'), ")
+                    .append(s).append("(CASE WHEN ").append(row).append(".status IS 'PENDING' THEN ").append(row).append(".fine ELSE 0 END), ")
+                    .append(s).append("(CASE WHEN ").append(row).append(".status IS 'PAID' THEN ").append(row).append(".fine ELSE 0 END)");
+            if (penalties) {
+                sql.append(", ").append(s).append("(CASE WHEN ").append(row).append(".status IS 'PENDING' THEN ")
+                        .append(row).append(".penalty_amount ELSE 0 END)");
+            }
+            sql.append(")");
+        }
+        sql.append(" ON CONFLICT (dimension, key) DO UPDATE SET ")
+                .append("total = total + excluded.total, ")
+                .append("pending = pending + excluded.pending, ")
+                .append("paid = paid + excluded.paid, ")
+                .append("pending_amount = pending_amount + excluded.pending_amount, ")
+                .append("collected_amount = collected_amount + excluded.collected_amount");
+        if (penalties) {
+            sql.append(", pending_penalty = pending_penalty + excluded.pending_penalty");
+        }
+        return sql.append(";").toString();
+    }
+
+    private static String baseAggregate(String dimension, String source, String where) {
+        return baseAggregate(dimension, source, where, true);
+    }
+
+    private static String baseAggregate(String dimension, String source, String where, boolean penalties) {
+        String key = String.format(DIMENSIONS.get(dimension), source);
+        return "SELECT '" + dimension + "' AS dimension, " + key + " AS key, COUNT(*) AS total, "
+                + "COUNT(CASE WHEN status = 'PENDING' THEN 1 END) AS pending, "
+                + "COUNT(CASE WHEN status = 'PAID' THEN 1 END) AS paid, "
+                + "TOTAL(CASE WHEN status = 'PENDING' THEN fine ELSE 0 END) AS pending_amount, "
+                + "TOTAL(CASE WHEN status = 'PAID' THEN fine ELSE 0 END) AS collected_amount"
+                + (penalties ? ", TOTAL(CASE WHEN status = 'PENDING' THEN penalty_amount ELSE 0 END) AS pending_penalty" : "")
+                + " FROM " + source + " " + where + " GROUP BY 2";
+    }
+
+    /** Recomputes every summary row from all challans, archived included. Run inside the caller's write connection. */
+    static void rebuild(Connection conn) throws SQLException {
+        rebuild(conn, ChallanArchive.HISTORY_VIEW, true);
+    }
+
+    private static void rebuild(Connection conn, String source, boolean penalties) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DELETE FROM challan_stats");
+            for (String dimension : DIMENSIONS.keySet()) {
+                stmt.execute("INSERT INTO challan_stats " + baseAggregate(dimension, source, "", penalties));
+            }
+            // The global row must exist even when challans is empty
+            stmt.execute("INSERT OR IGNORE INTO challan_stats (dimension, key) VALUES ('all', '')");
+        }
+    }
+
+    /** Folds rows with rowid above {@code afterRowid} into the summary; used by bulk inserts instead of the trigger. */
+    static void applyInserted(PooledConnection conn, long afterRowid) throws SQLException {
+        fold(conn, "WHERE rowid > ?", afterRowid);
+    }
+
+    /**
+     * Adds the hot rows whose rowids are in {@code temp.archive_batch} to the summary once more, so the
+     * delete trigger that fires when they move to the archive leaves their counts in place.
+     */
+    static void retainArchived(PooledConnection conn) throws SQLException {
+        fold(conn, "WHERE rowid IN (SELECT id FROM temp.archive_batch)");
+    }
+
+    /**
+     * Moves the rows in {@code temp.settlement_rows} that are not yet PAID from their current status to
+     * paid in the summary. Run just before the settlement UPDATE, in place of the per-row update trigger.
+     */
+    static void applySettled(PooledConnection conn) throws SQLException {
+        for (String dimension : DIMENSIONS.keySet()) {
+            conn.prepare("INSERT INTO challan_stats SELECT '" + dimension + "', "
+                    + String.format(DIMENSIONS.get(dimension), "settlement_rows") + ", 0, "
+                    + "-COUNT(CASE WHEN status = 'PENDING' THEN 1 END), COUNT(*), "
+                    + "-TOTAL(CASE WHEN status = 'PENDING' THEN fine ELSE 0 END), TOTAL(fine), "
+                    + "-TOTAL(CASE WHEN status = 'PENDING' THEN penalty_amount ELSE 0 END) "
+                    + "FROM temp.settlement_rows WHERE status IS NOT 'PAID' GROUP BY 2" + ACCUMULATE).executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the change from {@code old} to {@code new} penalty of the pending rows in {@code temp.penalty_rows}
+     * to the summary. Run just before the accrual UPDATE, in place of the per-row update trigger.
+     */
+    static void applyPenalties(PooledConnection conn) throws SQLException {
+        for (String dimension : DIMENSIONS.keySet()) {
+            conn.prepare("INSERT INTO challan_stats SELECT '" + dimension + "', "
+                    + String.format(DIMENSIONS.get(dimension), "penalty_rows") + ", 0, 0, 0, 0, 0, TOTAL(new - old) "
+                    + "FROM temp.penalty_rows GROUP BY 2" + ACCUMULATE).executeUpdate();
+        }
+    }
+
+    private static final String ACCUMULATE = " ON CONFLICT (dimension, key) DO UPDATE SET "
+            + "total = total + excluded.total, "
+            + "pending = pending + excluded.pending, "
+            + "paid = paid + excluded.paid, "
+            + "pending_amount = pending_amount + excluded.pending_amount, "
+            + "collected_amount = collected_amount + excluded.collected_amount, "
+            + "pending_penalty = pending_penalty + excluded.pending_penalty";
+
+    private static void fold(PooledConnection conn, String where, Object... params) throws SQLException {
+        for (String dimension : DIMENSIONS.keySet()) {
+            PreparedStatement pstmt = conn.prepare("INSERT INTO challan_stats " + baseAggregate(dimension, "challans", where)
+                    + ACCUMULATE);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    static Row readTotals(PooledConnection conn) throws SQLException {
+        List<Row> rows = readDimension(conn, ALL);
+        return rows.isEmpty() ? new Row("", 0, 0, 0, 0, 0, 0) : rows.get(0);
+    }
+
+    static List<Row> readDimension(PooledConnection conn, String dimension) throws SQLException {
+        if (!DIMENSIONS.containsKey(dimension)) {
+            throw new IllegalArgumentException("Unknown statistics dimension: " + dimension);
+        }
+        List<Row> rows = new ArrayList<>();
+        PreparedStatement pstmt = conn.prepare(
+                "SELECT key, total, pending, paid, pending_amount, collected_amount, pending_penalty FROM challan_stats "
+                        + "WHERE dimension = ? AND total > 0 ORDER BY key");
+        pstmt.setString(1, dimension);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(readRow(rs));
+            }
+        }
+        if (ALL.equals(dimension) && rows.isEmpty()) {
+            rows.add(new Row("", 0, 0, 0, 0, 0, 0));
+        }
+        return rows;
+    }
+
+    private static Row readRow(ResultSet rs) throws SQLException {
+        return new Row(rs.getString("key"), rs.getLong("total"), rs.getLong("pending"), rs.getLong("paid"),
+                rs.getDouble("pending_amount"), rs.getDouble("collected_amount"), rs.getDouble("pending_penalty"));
+    }
+
+    /**
+     * Compares every summary row with a fresh aggregate of all challans, archived included, and returns one
+     * message per difference; an empty list means the summary is consistent.
+     */
+    static List<String> verify(Connection conn) throws SQLException {
+        List<String> mismatches = new ArrayList<>();
+        for (String dimension : DIMENSIONS.keySet()) {
+            Map<String, Row> expected = new HashMap<>();
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(baseAggregate(dimension, ChallanArchive.HISTORY_VIEW, ""))) {
+                while (rs.next()) {
+                    Row row = readRow(rs);
+                    expected.put(row.key(), row);
+                }
+            }
+            Map<String, Row> actual = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM challan_stats WHERE dimension = ? AND total <> 0")) {
+                pstmt.setString(1, dimension);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Row row = readRow(rs);
+                        actual.put(row.key(), row);
+                    }
+                }
+            }
+            Set<String> keys = new TreeSet<>(expected.keySet());
+            keys.addAll(actual.keySet());
+            for (String key : keys) {
+                Row want = expected.get(key);
+                Row got = actual.get(key);
+                if (want == null || got == null || !matches(want, got)) {
+                    mismatches.add(dimension + "[" + key + "]: expected " + want + " but summary has " + got);
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static boolean matches(Row a, Row b) {
+        return a.total() == b.total() && a.pending() == b.pending() && a.paid() == b.paid()
+                && Math.abs(a.pendingAmount() - b.pendingAmount()) < AMOUNT_TOLERANCE
+                && Math.abs(a.collectedAmount() - b.collectedAmount()) < AMOUNT_TOLERANCE
+                && Math.abs(a.pendingPenalty() - b.pendingPenalty()) < AMOUNT_TOLERANCE;
+    }
+
+    /** Command-line check: {@code ChallanStatistics verify|rebuild [jdbc-url]}. */
+    public static void main(String[] args) {
+        if (args.length < 1 || !(args[0].equals("verify") || args[0].equals("rebuild"))) {
+            System.err.println("Usage: ChallanStatistics verify|rebuild [jdbc-url]");
+            System.exit(1);
+        }
+        DatabaseConfig config = args.length > 1 ? new DatabaseConfig(args[1]) : new DatabaseConfig();
+        try (Database database = new Database(config)) {
+            if (args[0].equals("rebuild")) {
+                boolean rebuilt = database.rebuildStatistics();
+                Log.flush();
+                System.out.println(rebuilt ? "Statistics rebuilt" : "Rebuild failed");
+                return;
+            }
+            List<String> mismatches = database.verifyStatistics();
+            Log.flush();
+            mismatches.forEach(System.out::println);
+            System.out.println(mismatches.isEmpty() ? "Statistics are consistent" : mismatches.size() + " mismatches found");
+            if (!mismatches.isEmpty()) {
+                System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.echallan;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The challan operations the desktop app needs, served either by a local {@link Database} or by a
+ * {@link RemoteChallanStore} talking to a shared {@link ChallanServer}. Failures are reported the way
+ * {@link Database} reports them: false, an empty result, or a zero summary.
+ */
+public interface ChallanStore extends AutoCloseable {
+    boolean addChallan(Challan challan);
+
+    boolean payChallan(String challanId);
+
+    boolean deleteChallan(String challanId);
+
+    /** Pays each challan; returns how many were marked paid. */
+    default int payChallans(List<String> challanIds) {
+        int paid = 0;
+        for (String challanId : challanIds) {
+            if (payChallan(challanId)) paid++;
+        }
+        return paid;
+    }
+
+    /** Deletes each challan; returns how many were deleted. */
+    default int deleteChallans(List<String> challanIds) {
+        int deleted = 0;
+        for (String challanId : challanIds) {
+            if (deleteChallan(challanId)) deleted++;
+        }
+        return deleted;
+    }
+
+    Map<String, Object> getStatistics();
+
+    ChallanSummary getSummary(ChallanFilter filter);
+
+    ChallanPage getChallansPage(ChallanFilter filter, ChallanPage.Cursor after, int limit);
+
+    List<Challan> getChallans(ChallanFilter filter, ChallanSort sort, int offset, int limit);
+
+    List<Challan> getOverdueChallans();
+
+    /** Challans moved to the archive for a plate, newest first; listings and summaries never include them. */
+    List<Challan> searchArchivedByVehicle(String vehicleNumber, SearchMode mode);
+
+    /** Pending count, fine total and earliest due date for a plate in any spelling. */
+    Outstanding getOutstanding(String vehicleNumber);
+
+    /** The plate's repeat-offender flag if it is still within the window, or null. */
+    RepeatOffender getRepeatOffender(String vehicleNumber);
+
+    /** Plates flagged as repeat offenders within the window, most recent first. */
+    List<RepeatOffender> getRepeatOffenders();
+
+    boolean testConnection();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,9 @@
+package com.echallan;
+
+/**
+ * Aggregate over the rows matched by a {@link ChallanFilter}. The overdue count is as of the day the
+ * summary was computed; {@code totalPenalty} sums the stored penalties of pending rows, as of the last
+ * accrual.
+ */
+public record ChallanSummary(long count, double totalFine, long overdueCount, double totalPenalty) {
+}
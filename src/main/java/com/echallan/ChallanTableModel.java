@@ -0,0 +1,162 @@
+package com.echallan;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lazy table model over one listing. The row count comes from the listing's {@link ChallanSummary}; rows are
+ * fetched in blocks of {@link #BLOCK_SIZE} the first time the table asks for them, and only the most recently
+ * used blocks are kept, so scrolling through 100k challans never holds more than a few thousand in memory.
+ * Cells of a block that is still loading read as null.
+ *
+ * <p>The model does no I/O itself: it asks its {@link BlockLoader} for missing blocks and the loader hands
+ * them back through {@link #putBlock}. All methods must be called on the event dispatch thread.
+ */
+public class ChallanTableModel extends AbstractTableModel {
+    public static final int BLOCK_SIZE = 200;
+    // 64 blocks is 12,800 rows, several screens in either direction of the viewport
+    private static final int MAX_BLOCKS = 64;
+
+    /** Fetches one block of the current listing; must eventually call {@link #putBlock} or {@link #blockFailed}. */
+    public interface BlockLoader {
+        void load(int generation, int block);
+    }
+
+    private static final String[] COLUMN_NAMES = {
+            "Challan ID", "Vehicle", "Violation", "Fine (₹)", "Penalty (₹)", "Status", "Issue Date", "Due Date", "Location"
+    };
+    // Sort key for each column; penalty is derived from the due date and has none
+    private static final ChallanSort.Column[] SORT_COLUMNS = {
+            ChallanSort.Column.CHALLAN_ID, ChallanSort.Column.VEHICLE, ChallanSort.Column.VIOLATION,
+            ChallanSort.Column.FINE, null, ChallanSort.Column.STATUS, ChallanSort.Column.ISSUE_DATE,
+            ChallanSort.Column.DUE_DATE, ChallanSort.Column.LOCATION
+    };
+
+    private final BlockLoader loader;
+    private final Map<Integer, List<Challan>> blocks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Challan>> eldest) {
+            return size() > MAX_BLOCKS;
+        }
+    };
+    private final Map<Integer, Boolean> loading = new LinkedHashMap<>();
+
+    private ChallanFilter filter = ChallanFilter.all();
+    private ChallanSort sort = ChallanSort.DEFAULT;
+    private ChallanSummary summary = new ChallanSummary(0, 0, 0, 0);
+    // Bumped on every reset so blocks requested for an earlier listing are ignored
+    private int generation;
+
+    public ChallanTableModel(BlockLoader loader) {
+        this.loader = loader;
+    }
+
+    /** Switches to a new listing whose summary and first block were fetched together. */
+    public void reset(ChallanFilter filter, ChallanSort sort, ChallanSummary summary, List<Challan> firstBlock) {
+        this.filter = filter;
+        this.sort = sort;
+        this.summary = summary;
+        generation++;
+        blocks.clear();
+        loading.clear();
+        blocks.put(0, firstBlock);
+        fireTableStructureChanged();
+    }
+
+    public ChallanFilter getFilter() { return filter; }
+    public ChallanSort getSort() { return sort; }
+    public ChallanSummary getSummary() { return summary; }
+    public int getGeneration() { return generation; }
+
+    public void putBlock(int generation, int block, List<Challan> rows) {
+        if (generation != this.generation) return;
+        loading.remove(block);
+        blocks.put(block, rows);
+        int first = block * BLOCK_SIZE;
+        int last = Math.min(first + BLOCK_SIZE, getRowCount()) - 1;
+        if (last >= first) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    /** Forgets a failed request so the block is asked for again the next time it is painted. */
+    public void blockFailed(int generation, int block) {
+        if (generation == this.generation) {
+            loading.remove(block);
+        }
+    }
+
+    /**
+     * Where block {@code block} starts in keyset terms: the position after the last row of the previous
+     * block when that block is loaded and full and the listing uses the default order, otherwise null.
+     */
+    public ChallanPage.Cursor cursorBefore(int block) {
+        if (block == 0 || !sort.equals(ChallanSort.DEFAULT)) return null;
+        List<Challan> previous = blocks.get(block - 1);
+        if (previous == null || previous.size() < BLOCK_SIZE) return null;
+        return ChallanPage.Cursor.after(previous.get(previous.size() - 1));
+    }
+
+    /** The challan shown in {@code row}, or null if its block has not been loaded yet (a load is then requested). */
+    public Challan getChallan(int row) {
+        int block = row / BLOCK_SIZE;
+        List<Challan> rows = blocks.get(block);
+        if (rows == null) {
+            if (loading.put(block, Boolean.TRUE) == null) {
+                loader.load(generation, block);
+            }
+            return null;
+        }
+        int index = row % BLOCK_SIZE;
+        // The table may have shrunk since the summary was taken
+        return index < rows.size() ? rows.get(index) : null;
+    }
+
+    /** Sort key of a model column, or null if the column cannot be sorted. */
+    public ChallanSort.Column sortColumn(int column) {
+        return SORT_COLUMNS[column];
+    }
+
+    @Override
+    public int getRowCount() {
+        return (int) Math.min(summary.count(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (SORT_COLUMNS[column] != null && SORT_COLUMNS[column] == sort.column()) {
+            return COLUMN_NAMES[column] + (sort.descending() ? " ▼" : " ▲");
+        }
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 3 || column == 4 ? Double.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Challan challan = getChallan(row);
+        if (challan == null) return null;
+        return switch (column) {
+            case 0 -> challan.getChallanId();
+            case 1 -> challan.getVehicleNumber();
+            case 2 -> challan.getViolation();
+            case 3 -> challan.getFine();
+            case 4 -> challan.getPenaltyAmount();
+            case 5 -> challan.getStatus();
+            case 6 -> challan.getIssueDate();
+            case 7 -> challan.getDueDate();
+            case 8 -> challan.getLocation();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of long-lived SQLite connections. SQLite allows a single writer at a time,
+ * so there is exactly one write connection guarded by a lock, plus a fixed number of
+ * read-only connections that can run concurrently with it under WAL. The writer is opened
+ * up front; readers are opened on first demand, so startup pays for a single connection.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final DatabaseConfig config;
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final BlockingQueue<PooledConnection> readers;
+    private final AtomicInteger readersOpened = new AtomicInteger();
+    private volatile boolean closed;
+
+    public ConnectionPool(DatabaseConfig config) throws SQLException {
+        this.config = config;
+        this.readers = new ArrayBlockingQueue<>(config.getReaderCount());
+        this.writer = open(true);
+    }
+
+    private PooledConnection open(boolean isWriter) throws SQLException {
+        Connection conn = DriverManager.getConnection(config.getUrl());
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + config.getBusyTimeoutMillis());
+            if (isWriter && config.isWalEnabled()) {
+                // journal_mode is persistent in the file, so setting it once on the writer is enough
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            stmt.execute("PRAGMA synchronous = " + config.getSynchronous());
+            stmt.execute("PRAGMA cache_size = " + config.getCacheSize());
+            stmt.execute("PRAGMA mmap_size = " + config.getMmapSize());
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            if (!isWriter) {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return new PooledConnection(conn, this, isWriter, config.getStatementCacheSize());
+    }
+
+    /** Returns the single write connection, waiting for the current writer to finish. */
+    public PooledConnection writer() throws SQLException {
+        checkOpen();
+        try {
+            if (!writerLock.tryLock(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for the write connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+        return writer;
+    }
+
+    /**
+     * Like {@link #writer()}, but waits without a deadline, however long a bulk import or maintenance job
+     * holds the writer. For the write pipeline, whose queued writes have nowhere else to go.
+     */
+    public PooledConnection awaitWriter() throws SQLException {
+        checkOpen();
+        try {
+            writerLock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+        if (closed) {
+            writerLock.unlock();
+            throw new SQLException("Connection pool is closed");
+        }
+        return writer;
+    }
+
+    /** Borrows a read-only connection; close it to hand it back. */
+    public PooledConnection reader() throws SQLException {
+        checkOpen();
+        PooledConnection idle = readers.poll();
+        if (idle != null) {
+            return idle;
+        }
+        for (int opened; (opened = readersOpened.get()) < config.getReaderCount(); ) {
+            if (readersOpened.compareAndSet(opened, opened + 1)) {
+                try {
+                    return open(false);
+                } catch (SQLException e) {
+                    readersOpened.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+        try {
+            PooledConnection reader = readers.poll(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+            if (reader == null) {
+                throw new SQLException("Timed out waiting for a read connection");
+            }
+            return reader;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", e);
+        }
+    }
+
+    void release(PooledConnection conn) {
+        try {
+            // A caller that failed mid-transaction must not leak its open transaction to the next borrower
+            if (!conn.getConnection().getAutoCommit()) {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            Log.error("Error resetting pooled connection: " + e.getMessage());
+        }
+        if (conn.isWriter()) {
+            writerLock.unlock();
+        } else if (closed) {
+            conn.closePhysical();
+        } else {
+            readers.offer(conn);
+        }
+    }
+
+    public DatabaseConfig getConfig() { return config; }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        writerLock.lock();
+        try {
+            writer.closePhysical();
+        } finally {
+            writerLock.unlock();
+        }
+        // Readers still borrowed are closed when they are released
+        PooledConnection reader;
+        while ((reader = readers.poll()) != null) {
+            reader.closePhysical();
+        }
+    }
+}
@@ -1,299 +1,1912 @@
 package com.echallan;
 
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class Database {
-    private static final String DB_URL = "jdbc:sqlite:echallan.db";
+public class Database implements ChallanStore {
+    private static final String INSERT_SQL = "INSERT INTO challans (challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location, vehicle_key, penalty_amount) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Duplicate IDs report an update count of 0 instead of failing the whole batch
+    private static final String BULK_INSERT_SQL = INSERT_SQL + " ON CONFLICT(challan_id) DO NOTHING";
+    // Column order is fixed so readChallan can read by index
+    private static final String SELECT_COLUMNS = "challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location, due_day, penalty_amount";
+    // Listings are newest first; challan_id breaks ties so the order is total and keyset cursors are exact
+    private static final String ORDER_BY = ChallanSort.DEFAULT.orderBy();
+    private static final String PAY_SQL = "UPDATE challans SET status = 'PAID' WHERE challan_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM challans WHERE challan_id = ?";
+    // What a pay or delete takes off the plate's dues, read before the row changes
+    private static final String PENDING_DUES_SQL = "SELECT vehicle_key, fine FROM challans WHERE challan_id = ? AND status = 'PENDING'";
+    // Unary + keeps the planner on idx_challans_vehicle_key: without statistics it prefers walking
+    // idx_challans_status_due, which visits every pending row before the plate's
+    private static final String EARLIEST_DUE_SQL = "SELECT MIN(due_day) FROM challans WHERE vehicle_key = ? AND +status = 'PENDING'";
+    // Rows moved per archive transaction: the longest a queued write waits behind the archive job
+    private static final int ARCHIVE_CHUNK_SIZE = 500;
+    // Rowids per transaction when every pending penalty is recomputed
+    private static final long PENALTY_CHUNK_ROWS = 100_000;
+    // Rowids per read when the plate filter is rebuilt
+    private static final long PLATE_FILTER_CHUNK_ROWS = 100_000;
+    // Change log events dropped per retention transaction, and how often retention runs
+    private static final long EVENT_RETENTION_CHUNK = 50_000;
+    private static final long EVENT_RETENTION_INTERVAL_MINUTES = 60;
+    private final DatabaseConfig config;
+    private ConnectionPool pool;
+    private boolean trigramSearch;
+    // Null unless DatabaseConfig.getMemoryCacheRows() is set; updated while the writer is held
+    private volatile ChallanCache cache;
+    // Null unless DatabaseConfig.isOutstandingIndex() is set and the startup build has finished
+    private volatile OutstandingIndex outstanding;
+    private volatile RepeatOffenderDetector repeatOffenders;
+    // Null unless DatabaseConfig.isPendingPlateFilter() is set and the first build has finished
+    private volatile PendingPlateFilter plateFilter;
+    // The filter a rebuild is filling, which inserted plates also go to until it replaces plateFilter
+    private volatile PendingPlateFilter plateFilterRebuild;
+    // challan_stats total and pending counts when the current filter was built; one rebuild at a time
+    private final Object plateFilterLock = new Object();
+    private long plateFilterTotal = -1;
+    private long plateFilterPending = -1;
+    // Set when an insert finds the filter past its capacity, until the rebuild it queued starts
+    private final AtomicBoolean plateFilterRebuildQueued = new AtomicBoolean();
+    // The rules in penalty_rules, for pricing new rows as they are inserted; replaced under the writer
+    private volatile PenaltySchedule penaltySchedule = PenaltySchedule.DEFAULT;
+    // One accrual or rule change at a time
+    private final Object penaltyLock = new Object();
+    // Reports hold the read lock for their whole scan and each archive chunk the write lock, so a report
+    // never sees a row both in challans and in its archive table, or in neither; fair, so a stream of
+    // reports cannot hold archiving off
+    private final ReentrantReadWriteLock reportLock = new ReentrantReadWriteLock(true);
+    // Bumped and signalled after every commit that can log events, to wake awaitEvents() callers
+    private final ReentrantLock eventLock = new ReentrantLock();
+    private final Condition eventsLogged = eventLock.newCondition();
+    private volatile long eventVersion;
+    private final Set<EventSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    // Group-commits addChallan, payChallan and deleteChallan
+    private final WritePipeline writes;
+    private final CompletableFuture<Void> warmup = new CompletableFuture<>();
+    // Runs archivePaid(), accruePenalties(), plate filter rebuilds and change log retention periodically;
+    // null when all are disabled
+    private final ScheduledExecutorService maintenance;
+    private final DatabaseMetrics metrics = new DatabaseMetrics();
+    // Set when the metrics are registered with JMX or served over HTTP, so close() can withdraw them
+    private ObjectName metricsName;
+    private HttpServer metricsServer;
 
     public Database() {
+        this(new DatabaseConfig());
+    }
+
+    public Database(DatabaseConfig config) {
+        long start = System.nanoTime();
+        this.config = config;
+        this.writes = new WritePipeline(this, config);
         try {
             Class.forName("org.sqlite.JDBC");
-            System.out.println("SQLite JDBC driver loaded successfully");
+            Log.info("SQLite JDBC driver loaded successfully");
         } catch (ClassNotFoundException e) {
-            System.err.println("SQLite JDBC driver not found! Make sure sqlite-jdbc is in your Maven dependencies.");
-            e.printStackTrace();
-        }
-        createTable();
-    }
-
-    private void createTable() {
-        // First, check if table exists and drop it if structure is wrong
-        if (tableNeedsUpdate()) {
-            dropTable();
-        }
-
-        String sql = """
-            CREATE TABLE IF NOT EXISTS challans (
-                challan_id TEXT PRIMARY KEY,
-                vehicle_number TEXT NOT NULL,
-                violation TEXT NOT NULL,
-                fine REAL NOT NULL,
-                status TEXT DEFAULT 'PENDING',
-                issue_date TEXT,
-                due_date TEXT,
-                location TEXT DEFAULT 'Not Specified'
-            )
-        """;
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
-            System.out.println("Database table created/verified successfully");
+            Log.error("SQLite JDBC driver not found! Make sure sqlite-jdbc is in your Maven dependencies.", e);
+        }
+        try {
+            pool = new ConnectionPool(config);
+            Log.info("Connection pool opened with 1 writer and up to " + config.getReaderCount() + " readers");
         } catch (SQLException e) {
-            System.err.println("Error creating database table:");
-            e.printStackTrace();
+            Log.error("Error opening connection pool", e);
+            warmup.complete(null);
+            maintenance = null;
+            return;
+        }
+        openSchema();
+        Log.info("Database ready in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        exposeMetrics();
+        if (config.getMemoryCacheRows() > 0 || config.isOutstandingIndex() || config.getRepeatOffenderThreshold() > 0
+                || config.isPendingPlateFilter() || config.isOptimizeOnOpen()) {
+            Thread.ofVirtual().name("challan-warmup").start(this::warmUp);
+        } else {
+            warmup.complete(null);
+        }
+        boolean eventRetention = config.getEventRetentionDays() > 0 || config.getEventRetentionRows() > 0;
+        if (config.getArchiveAfterDays() > 0 || config.getPenaltyIntervalMinutes() > 0 || config.isPendingPlateFilter()
+                || eventRetention) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("challan-maintenance").factory());
+            if (config.getArchiveAfterDays() > 0) {
+                maintenance.scheduleWithFixedDelay(this::runArchive, 0, config.getArchiveIntervalMinutes(), TimeUnit.MINUTES);
+            }
+            if (config.getPenaltyIntervalMinutes() > 0) {
+                maintenance.scheduleWithFixedDelay(this::runPenaltyAccrual, 0, config.getPenaltyIntervalMinutes(), TimeUnit.MINUTES);
+            }
+            if (config.isPendingPlateFilter()) {
+                long minutes = config.getPlateFilterRebuildMinutes();
+                maintenance.scheduleWithFixedDelay(this::runPlateFilterRebuild, minutes, minutes, TimeUnit.MINUTES);
+            }
+            if (eventRetention) {
+                maintenance.scheduleWithFixedDelay(this::runEventRetention, 0, EVENT_RETENTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+            }
+        } else {
+            maintenance = null;
+        }
+    }
+
+    // Off the startup path: queries use SQLite until the cache is in place
+    private void warmUp() {
+        try {
+            if (config.getMemoryCacheRows() > 0) {
+                loadCache();
+            }
+            if (config.isOutstandingIndex()) {
+                loadOutstanding();
+            }
+            if (config.getRepeatOffenderThreshold() > 0) {
+                loadRepeatOffenders();
+            }
+            if (config.isPendingPlateFilter()) {
+                rebuildPlateFilter();
+            }
+            if (config.isOptimizeOnOpen()) {
+                optimize();
+            }
+        } finally {
+            warmup.complete(null);
+        }
+    }
+
+    private void exposeMetrics() {
+        if (config.isJmxEnabled()) {
+            try {
+                ObjectName name = new ObjectName("com.echallan:type=Database,name=" + ObjectName.quote(config.getUrl()));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+                metricsName = name;
+            } catch (JMException e) {
+                Log.warn("Could not register database metrics with JMX: " + e.getMessage());
+            }
+        }
+        if (config.getMetricsPort() > 0) {
+            try {
+                metricsServer = metrics.serve(config.getMetricsPort());
+            } catch (IOException e) {
+                Log.warn("Could not serve metrics on port " + config.getMetricsPort() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Completes once the background cache load, dues index build, repeat-offender warm start, plate filter
+     * build and {@code PRAGMA optimize} that follow startup are done.
+     */
+    public CompletableFuture<Void> warmup() { return warmup; }
+
+    private void runArchive() {
+        // Let the cache load first; archiving then keeps it in step row by row
+        warmup.join();
+        try {
+            archivePaid();
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log it and try again next run
+            Log.error("Archive job failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void runPlateFilterRebuild() {
+        try {
+            rebuildPlateFilter();
+        } catch (RuntimeException e) {
+            Log.error("Plate filter rebuild failed: " + e.getMessage(), e);
         }
     }
 
-    private boolean tableNeedsUpdate() {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
+    private void runEventRetention() {
+        try {
+            compactEvents();
+        } catch (RuntimeException e) {
+            Log.error("Change log retention failed: " + e.getMessage(), e);
+        }
+    }
 
-            // Check if the table exists and has the right columns
-            DatabaseMetaData metaData = conn.getMetaData();
-            ResultSet columns = metaData.getColumns(null, null, "challans", null);
+    private void runPenaltyAccrual() {
+        // Like archiving: the cache must be loaded before accrual updates it
+        warmup.join();
+        try {
+            accruePenalties();
+        } catch (RuntimeException e) {
+            Log.error("Penalty accrual failed: " + e.getMessage(), e);
+        }
+    }
 
-            boolean hasIssueDate = false;
-            while (columns.next()) {
-                String columnName = columns.getString("COLUMN_NAME");
-                if ("issue_date".equals(columnName)) {
-                    hasIssueDate = true;
-                    break;
+    /**
+     * Moves PAID challans issued more than {@link DatabaseConfig#getArchiveAfterDays()} days ago into the
+     * monthly archive tables and returns how many moved. Does nothing when archiving is disabled.
+     */
+    public long archivePaid() {
+        int days = config.getArchiveAfterDays();
+        return days > 0 ? archivePaid(Challan.today().minusDays(days)) : 0;
+    }
+
+    /**
+     * Moves PAID challans issued before {@code issuedBefore} into the monthly archive tables. Each chunk of
+     * {@value #ARCHIVE_CHUNK_SIZE} rows is its own short transaction and the writer is released between
+     * chunks; the writer lock is fair, so queued interactive writes go ahead of the next chunk. A chunk
+     * waits, without the writer, for any {@link #getReport()} in progress to finish, and reports wait for
+     * the chunk. Statistics keep counting archived challans; listings, summaries and the memory cache drop
+     * them.
+     */
+    public long archivePaid(LocalDate issuedBefore) {
+        long start = System.nanoTime();
+        String cutoff = issuedBefore.toString();
+        long moved = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<String> ids = List.of();
+            boolean reportRunning;
+            try (PooledConnection conn = writer()) {
+                // Never wait for a report while holding the writer; step back below instead
+                reportRunning = !reportLock.writeLock().tryLock();
+                if (!reportRunning) {
+                    try {
+                        conn.begin();
+                        try {
+                            ids = ChallanArchive.archiveChunk(conn, cutoff, ARCHIVE_CHUNK_SIZE);
+                            conn.commit();
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            throw e;
+                        }
+                    } finally {
+                        reportLock.writeLock().unlock();
+                    }
+                    // Only PAID rows move, so dues are unchanged
+                    for (String challanId : ids) {
+                        cacheRemoved(challanId, OutstandingIndex.Change.NONE);
+                    }
+                    if (!ids.isEmpty()) eventsCommitted();
                 }
+            } catch (SQLException e) {
+                Log.error("Error archiving challans: " + e.getMessage());
+                metrics.recordError(DatabaseMetrics.Operation.ARCHIVE_PAID);
+                break;
             }
-
-            if (!hasIssueDate) {
-                System.out.println("Table needs update - missing issue_date column");
-                return true;
+            if (reportRunning) {
+                // The lock is fair: this returns once the reports already running have finished
+                try {
+                    reportLock.writeLock().lockInterruptibly();
+                    reportLock.writeLock().unlock();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                continue;
             }
+            if (ids.isEmpty()) break;
+            moved += ids.size();
+        }
+        metrics.record(DatabaseMetrics.Operation.ARCHIVE_PAID, start, moved);
+        if (moved > 0) {
+            Log.info("Archived " + moved + " paid challans issued before " + cutoff + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return moved;
+    }
 
-            return false;
+    /**
+     * Refreshes query planner statistics where SQLite judges them stale. {@code analysis_limit} keeps each
+     * ANALYZE to a sample of every index, so this stays cheap on large tables.
+     */
+    public boolean optimize() {
+        long start = System.nanoTime();
+        try (PooledConnection conn = writer();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("PRAGMA analysis_limit = 1000");
+            stmt.execute("PRAGMA optimize");
+            Log.info("Optimized query planner statistics in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
         } catch (SQLException e) {
-            System.out.println("Could not check table structure, will recreate");
+            Log.error("Error optimizing database: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Rewrites the file to reclaim pages freed by deletes and archiving. Blocks all writes while it runs
+     * and needs free disk space about the size of the file, so it is never run automatically.
+     */
+    public boolean vacuum() {
+        long start = System.nanoTime();
+        try (PooledConnection conn = writer();
+             Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("VACUUM");
+            Log.info("Vacuumed database in " + (System.nanoTime() - start) / 1_000_000 + " ms");
             return true;
+        } catch (SQLException e) {
+            Log.error("Error vacuuming database: " + e.getMessage());
+            return false;
         }
     }
 
-    private void dropTable() {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement()) {
-            stmt.execute("DROP TABLE IF EXISTS challans");
-            System.out.println("Old table dropped - will recreate with correct structure");
+    public DatabaseConfig getConfig() { return config; }
+
+    /** Per-operation latency histograms and row and error counts since this database was opened. */
+    public DatabaseMetrics getMetrics() { return metrics; }
+
+    /** Queue behind the single-row write methods, for callers that want a future instead of blocking. */
+    public WritePipeline getWritePipeline() { return writes; }
+
+    /** The in-memory cache, or null when it is disabled or the table outgrew it. */
+    public ChallanCache getCache() {
+        ChallanCache current = cache;
+        return current != null && current.isActive() ? current : null;
+    }
+
+    PooledConnection writer() throws SQLException {
+        if (pool == null) throw new SQLException("Connection pool is not open");
+        return pool.writer();
+    }
+
+    PooledConnection awaitWriter() throws SQLException {
+        if (pool == null) throw new SQLException("Connection pool is not open");
+        return pool.awaitWriter();
+    }
+
+    PooledConnection reader() throws SQLException {
+        if (pool == null) throw new SQLException("Connection pool is not open");
+        return pool.reader();
+    }
+
+    // The only schema work at startup: one user_version read on the writer when the file is current
+    private void openSchema() {
+        try (PooledConnection conn = writer()) {
+            int from = SchemaMigrations.migrate(conn);
+            trigramSearch = SchemaMigrations.hasTrigramIndex(conn);
+            penaltySchedule = ChallanPenalties.readSchedule(conn);
+            if (from < SchemaMigrations.CURRENT_VERSION) {
+                Log.info("Database schema upgraded from version " + from + " to " + SchemaMigrations.CURRENT_VERSION);
+            }
         } catch (SQLException e) {
-            System.err.println("Error dropping table: " + e.getMessage());
+            Log.error("Error preparing database schema", e);
         }
     }
 
-    public boolean addChallan(Challan challan) {
-        String sql = "INSERT INTO challans (challan_id, vehicle_number, violation, fine, status, issue_date, due_date, location) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    // Reads the table oldest first under the writer, so no write can slip in between the load and the first update
+    private void loadCache() {
+        long start = System.nanoTime();
+        ChallanCache loaded = new ChallanCache(config.getMemoryCacheRows());
+        try (PooledConnection conn = writer()) {
+            // The summary row makes the size check free, so a table too big to cache is never scanned.
+            // It counts archived challans too, which the cache does not hold.
+            long rows = ChallanStatistics.readTotals(conn).total() - ChallanArchive.archivedRows(conn);
+            if (rows > config.getMemoryCacheRows()) {
+                Log.info(rows + " challans exceed the memory cache; serving views from SQLite");
+                return;
+            }
+            readIntoCache(conn, loaded, start);
+        } catch (SQLException e) {
+            Log.error("Error loading challan cache: " + e.getMessage());
+        }
+    }
 
-        System.out.println("Attempting to add challan: " + challan.getChallanId());
+    private void readIntoCache(PooledConnection conn, ChallanCache loaded, long start) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT " + SELECT_COLUMNS + " FROM challans ORDER BY issue_date, challan_id").executeQuery()) {
+            List<Challan> batch = new ArrayList<>(1024);
+            while (rs.next()) {
+                batch.add(readChallan(rs));
+                if (batch.size() == 1024) {
+                    loaded.addAll(batch);
+                    batch.clear();
+                    // Backstop in case the summary row undercounts: stop instead of reading on
+                    if (!loaded.isActive()) break;
+                }
+            }
+            loaded.addAll(batch);
+            if (loaded.isActive()) {
+                cache = loaded;
+                Log.info("Loaded " + loaded.size() + " challans into memory in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } else {
+                Log.info("More than " + config.getMemoryCacheRows() + " challans; serving views from SQLite");
+            }
+        }
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Scans the pending rows under the writer, like loadCache, so the index misses no commit
+    private void loadOutstanding() {
+        long start = System.nanoTime();
+        OutstandingIndex loaded = new OutstandingIndex();
+        try (PooledConnection conn = writer();
+             ResultSet rs = conn.prepare("SELECT vehicle_key, fine, due_day FROM challans WHERE status = 'PENDING'").executeQuery()) {
+            while (rs.next()) {
+                String vehicleKey = rs.getString(1);
+                if (vehicleKey == null) continue;
+                long dueDay = rs.getLong(3);
+                if (rs.wasNull()) dueDay = Challan.NO_DUE_DAY;
+                loaded.apply(new OutstandingIndex.Change(vehicleKey, 1, Math.round(rs.getDouble(2) * 100), dueDay));
+            }
+            outstanding = loaded;
+            Log.info("Indexed dues for " + loaded.size() + " vehicles (" + loaded.estimatedBytes() / 1024
+                    + " KB) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (SQLException e) {
+            Log.error("Error building outstanding dues index: " + e.getMessage());
+        }
+    }
 
-            pstmt.setString(1, challan.getChallanId());
-            pstmt.setString(2, challan.getVehicleNumber());
-            pstmt.setString(3, challan.getViolation());
-            pstmt.setDouble(4, challan.getFine());
-            pstmt.setString(5, challan.getStatus());
-            pstmt.setString(6, challan.getIssueDate());
-            pstmt.setString(7, challan.getDueDate());
-            pstmt.setString(8, challan.getLocation());
+    // Replays the rows issued within the window in issue order, under the writer so no insert is missed
+    private void loadRepeatOffenders() {
+        long start = System.nanoTime();
+        RepeatOffenderDetector loaded = newRepeatOffenderDetector(config.getRepeatOffenderMaxPlates());
+        try (PooledConnection conn = writer()) {
+            PreparedStatement pstmt = conn.prepare(
+                    "SELECT vehicle_key, issue_date FROM challans WHERE issue_date > ? ORDER BY issue_date");
+            pstmt.setString(1, repeatOffenderCutoff());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    loaded.record(rs.getString(1), rs.getString(2));
+                }
+            }
+            repeatOffenders = loaded;
+            Log.info("Tracking " + loaded.size() + " vehicles for repeat offences, " + loaded.offenders().size()
+                    + " flagged, in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (SQLException e) {
+            Log.error("Error warming up repeat offender detection: " + e.getMessage());
+        }
+    }
 
-            int rowsAffected = pstmt.executeUpdate();
+    /**
+     * Builds a new plate filter from the pending rows and swaps it in for the current one, dropping plates
+     * cleared since the last build. Skipped while the summary's total and pending counts are unchanged and
+     * the filter is within its capacity. The new filter starts taking inserted plates while the writer is
+     * held, so it misses no later commit; the scan then reads rowid chunks on pooled readers, each of
+     * which sees everything committed before it, without holding up writes.
+     */
+    void rebuildPlateFilter() {
+        synchronized (plateFilterLock) {
+            plateFilterRebuildQueued.set(false);
+            long start = System.nanoTime();
+            try {
+                PendingPlateFilter next;
+                long lastRowid;
+                try (PooledConnection conn = writer()) {
+                    ChallanStatistics.Row totals = ChallanStatistics.readTotals(conn);
+                    PendingPlateFilter current = plateFilter;
+                    if (current != null && !current.isOverCapacity() && totals.total() == plateFilterTotal
+                            && totals.pending() == plateFilterPending) {
+                        return;
+                    }
+                    // Sized as if every pending row were a different plate, plus room for the plates added
+                    // before the next rebuild
+                    next = new PendingPlateFilter(totals.pending() + totals.pending() / 4,
+                            config.getPlateFilterFalsePositiveRate());
+                    plateFilterRebuild = next;
+                    plateFilterTotal = totals.total();
+                    plateFilterPending = totals.pending();
+                    try (ResultSet rs = conn.prepare("SELECT IFNULL(MAX(rowid), 0) FROM challans").executeQuery()) {
+                        lastRowid = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+                for (long from = 0; from < lastRowid; from += PLATE_FILTER_CHUNK_ROWS) {
+                    try (PooledConnection conn = reader()) {
+                        // +status keeps the planner on the rowid range rather than the status indexes
+                        PreparedStatement pstmt = conn.prepare(
+                                "SELECT vehicle_key FROM challans WHERE rowid > ? AND rowid <= ? AND +status = 'PENDING'");
+                        pstmt.setLong(1, from);
+                        pstmt.setLong(2, Math.min(from + PLATE_FILTER_CHUNK_ROWS, lastRowid));
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            while (rs.next()) {
+                                next.add(rs.getString(1));
+                            }
+                        }
+                    }
+                }
+                plateFilter = next;
+                Log.info("Built pending plate filter: " + next + ", in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (SQLException e) {
+                Log.error("Error building pending plate filter: " + e.getMessage());
+                // Retry at the next scheduled rebuild whatever the counts say
+                plateFilterTotal = -1;
+            } finally {
+                plateFilterRebuild = null;
+            }
+        }
+    }
 
-            if (rowsAffected > 0) {
-                System.out.println("Challan added successfully to database");
-                return true;
+    private void addPendingPlate(String vehicleKey) {
+        PendingPlateFilter current = plateFilter;
+        if (current != null) {
+            current.add(vehicleKey);
+            // A filter filled past its capacity loses accuracy fast; resize it now rather than at the next rebuild
+            if (current.isOverCapacity() && maintenance != null && plateFilterRebuildQueued.compareAndSet(false, true)) {
+                maintenance.execute(this::runPlateFilterRebuild);
             }
+        }
+        PendingPlateFilter next = plateFilterRebuild;
+        if (next != null) next.add(vehicleKey);
+    }
+
+    // True when the filter proves that the filter's exact plate has no pending challans, so a query limited
+    // to its pending rows is empty without running it
+    private boolean knownClear(ChallanFilter filter) {
+        PendingPlateFilter current = plateFilter;
+        if (current == null || filter.vehicleNumber() == null || filter.searchMode() != SearchMode.EXACT
+                || (!"PENDING".equals(filter.status()) && filter.overdueAsOf() == null)) {
             return false;
+        }
+        return !current.mightHavePending(filter.vehicleNumber());
+    }
+
+    private RepeatOffenderDetector newRepeatOffenderDetector(int maxPlates) {
+        return new RepeatOffenderDetector(config.getRepeatOffenderThreshold(),
+                config.getRepeatOffenderWindowMinutes() * 60, maxPlates);
+    }
+
+    // Issue dates are compared as text; the minute format sorts like the times it names
+    private String repeatOffenderCutoff() {
+        return Challan.now().minusMinutes(config.getRepeatOffenderWindowMinutes()).format(Challan.ISSUE_DATE_FORMAT);
+    }
+
+    private void recordIssued(Challan challan) {
+        RepeatOffender flag = repeatOffenders.record(PlateNumbers.normalize(challan.getVehicleNumber()), challan.getIssueDate());
+        if (flag != null && flag.violations() == repeatOffenders.getThreshold()) {
+            Log.info("Repeat offender " + flag.vehicleKey() + ": " + flag.violations() + " challans since "
+                    + flag.firstIssuedAt().format(Challan.ISSUE_DATE_FORMAT));
+        }
+    }
+
+    @Override
+    public boolean addChallan(Challan challan) {
+        if (await(writes.addChallan(challan))) {
+            if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("Challan " + challan.getChallanId() + " added");
+            return true;
+        }
+        return false;
+    }
+
+    // Single-row write statements, run by WritePipeline many to a transaction. They leave the in-memory
+    // cache and dues index alone; the pipeline updates them once the change has committed. markPaid and
+    // remove return null if no row changed, otherwise what the change took off the plate's dues.
+
+    boolean insert(PooledConnection conn, Challan challan) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(INSERT_SQL);
+        bindChallan(pstmt, challan, Challan.today().toEpochDay());
+        return pstmt.executeUpdate() > 0;
+    }
+
+    OutstandingIndex.Change markPaid(PooledConnection conn, String challanId) throws SQLException {
+        return change(conn, PAY_SQL, challanId);
+    }
+
+    OutstandingIndex.Change remove(PooledConnection conn, String challanId) throws SQLException {
+        return change(conn, DELETE_SQL, challanId);
+    }
+
+    private OutstandingIndex.Change change(PooledConnection conn, String sql, String challanId) throws SQLException {
+        String vehicleKey = null;
+        double fine = 0;
+        if (config.isOutstandingIndex()) {
+            PreparedStatement select = conn.prepare(PENDING_DUES_SQL);
+            select.setString(1, challanId);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    vehicleKey = rs.getString(1);
+                    fine = rs.getDouble(2);
+                }
+            }
+        }
+        PreparedStatement pstmt = conn.prepare(sql);
+        pstmt.setString(1, challanId);
+        if (pstmt.executeUpdate() == 0) return null;
+        if (vehicleKey == null) return OutstandingIndex.Change.NONE;
+        return OutstandingIndex.Change.removed(vehicleKey, fine, earliestDueDay(conn, vehicleKey));
+    }
+
+    // The plate's earliest pending due day after the change, from idx_challans_vehicle_key
+    private static long earliestDueDay(PooledConnection conn, String vehicleKey) throws SQLException {
+        PreparedStatement pstmt = conn.prepare(EARLIEST_DUE_SQL);
+        pstmt.setString(1, vehicleKey);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) return Challan.NO_DUE_DAY;
+            long dueDay = rs.getLong(1);
+            return rs.wasNull() ? Challan.NO_DUE_DAY : dueDay;
+        }
+    }
+
+    void cacheAdded(Challan challan, OutstandingIndex.Change change) {
+        if (cache != null) cache.add(challan);
+        if (outstanding != null) outstanding.apply(change);
+        if (repeatOffenders != null) recordIssued(challan);
+    }
+
+    void cachePaid(String challanId, OutstandingIndex.Change change) {
+        if (cache != null) cache.markPaid(challanId);
+        if (outstanding != null) outstanding.apply(change);
+    }
+
+    void cacheRemoved(String challanId, OutstandingIndex.Change change) {
+        if (cache != null) cache.remove(challanId);
+        if (outstanding != null) outstanding.apply(change);
+    }
+
+    public BulkInsertResult addChallans(Iterable<Challan> challans) {
+        BulkInsertResult result = new BulkInsertResult();
+        addChallans(challans.iterator(), result);
+        Log.info("Bulk insert: " + result);
+        return result;
+    }
+
+    /**
+     * Streams challans into the table in batched transactions of {@link DatabaseConfig#getBulkCommitSize()}
+     * rows. Rejected rows (duplicates, missing fields) are recorded in {@code result} and the rest of the
+     * batch still commits. The writer is only held while a chunk is being written, so interactive writes
+     * can interleave with a long-running ingest.
+     */
+    public void addChallans(Iterator<Challan> challans, BulkInsertResult result) {
+        long[] counter = new long[1];
+        addChallans(new Iterator<>() {
+            @Override
+            public boolean hasNext() { return challans.hasNext(); }
+
+            @Override
+            public Challan next() {
+                counter[0]++;
+                return challans.next();
+            }
+        }, () -> counter[0], result);
+    }
+
+    /** Variant used by file imports, where {@code position} reports the source line of the last item returned. */
+    void addChallans(Iterator<Challan> challans, LongSupplier position, BulkInsertResult result) {
+        long start = System.nanoTime();
+        long insertedBefore = result.getInserted();
+        int commitSize = config.getBulkCommitSize();
+        List<Challan> chunk = new ArrayList<>(commitSize);
+        long[] positions = new long[commitSize];
+
+        while (challans.hasNext()) {
+            Challan challan = challans.next();
+            String problem = validate(challan);
+            if (problem != null) {
+                result.addFailure(position.getAsLong(), challan != null ? challan.getChallanId() : null, problem);
+                continue;
+            }
+            positions[chunk.size()] = position.getAsLong();
+            chunk.add(challan);
+            if (chunk.size() == commitSize) {
+                insertChunk(chunk, positions, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, positions, result);
+        }
+        result.addElapsedNanos(System.nanoTime() - start);
+        metrics.record(DatabaseMetrics.Operation.ADD_CHALLANS, start, result.getInserted() - insertedBefore);
+    }
+
+    // Why a challan cannot be stored, or null; applied to bulk inserts and to WritePipeline.addChallan
+    static String validate(Challan challan) {
+        if (challan == null) return "null challan";
+        if (challan.getChallanId() == null || challan.getChallanId().isBlank()) return "missing challan_id";
+        if (challan.getVehicleNumber() == null || challan.getVehicleNumber().isBlank()) return "missing vehicle_number";
+        if (challan.getViolation() == null) return "missing violation";
+        if (Double.isNaN(challan.getFine()) || challan.getFine() < 0) return "invalid fine: " + challan.getFine();
+        return null;
+    }
+
+    private void insertChunk(List<Challan> chunk, long[] positions, BulkInsertResult result) {
+        BulkInsertResult chunkResult = new BulkInsertResult();
+        List<Challan> inserted = cache != null || config.isOutstandingIndex() || config.getRepeatOffenderThreshold() > 0
+                ? new ArrayList<>(chunk.size()) : null;
+
+        long today = Challan.today().toEpochDay();
+        try (PooledConnection conn = writer()) {
+            PreparedStatement pstmt = conn.prepare(BULK_INSERT_SQL);
+            conn.begin();
+            BulkState bulk = beginBulk(conn);
+            try {
+                for (Challan challan : chunk) {
+                    bindChallan(pstmt, challan, today);
+                    pstmt.addBatch();
+                }
+                int[] counts = pstmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (recordRow(chunkResult, counts[i], positions[i], chunk.get(i).getChallanId()) && inserted != null) {
+                        inserted.add(chunk.get(i));
+                    }
+                }
+            } catch (BatchUpdateException e) {
+                // Rare: a constraint other than the primary key failed. Replay the chunk one row at a
+                // time so only the offending rows are rejected.
+                pstmt.clearBatch();
+                conn.rollback();
+                conn.begin();
+                bulk = beginBulk(conn);
+                chunkResult = new BulkInsertResult();
+                if (inserted != null) inserted.clear();
+                for (int i = 0; i < chunk.size(); i++) {
+                    Challan challan = chunk.get(i);
+                    try {
+                        bindChallan(pstmt, challan, today);
+                        if (recordRow(chunkResult, pstmt.executeUpdate(), positions[i], challan.getChallanId()) && inserted != null) {
+                            inserted.add(challan);
+                        }
+                    } catch (SQLException rowError) {
+                        chunkResult.addFailure(positions[i], challan.getChallanId(), rowError.getMessage());
+                    }
+                }
+            }
+            endBulk(conn, bulk);
+            conn.commit();
+            eventsCommitted();
+            if (inserted != null) {
+                if (cache != null) cache.addAll(inserted);
+                if (outstanding != null) {
+                    for (Challan challan : inserted) {
+                        outstanding.apply(OutstandingIndex.Change.added(challan));
+                    }
+                }
+                if (repeatOffenders != null) {
+                    for (Challan challan : inserted) {
+                        recordIssued(challan);
+                    }
+                }
+            }
+            result.merge(chunkResult);
         } catch (SQLException e) {
-            System.err.println("SQL Error while adding challan: " + e.getMessage());
-            return false;
+            Log.error("Error committing bulk insert chunk: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.ADD_CHALLANS);
+            for (int i = 0; i < chunk.size(); i++) {
+                result.addFailure(positions[i], chunk.get(i).getChallanId(), e.getMessage());
+            }
         }
     }
 
+    /**
+     * Suspends the per-row insert triggers for the current transaction ({@link TriggerGates#BULK_INSERT})
+     * and returns what endBulk needs: the highest rowid before the chunk, since the chunk's rows are exactly
+     * those above it.
+     */
+    private BulkState beginBulk(PooledConnection conn) throws SQLException {
+        TriggerGates.suspend(conn, TriggerGates.BULK_INSERT);
+        try (Statement stmt = conn.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT IFNULL(MAX(rowid), 0) FROM challans")) {
+            return new BulkState(rs.next() ? rs.getLong(1) : 0);
+        }
+    }
+
+    private record BulkState(long lastRowid) {
+    }
+
+    /**
+     * Brings the trigram index, statistics and change log up to date for the chunk's rows, then resumes
+     * the triggers.
+     */
+    private void endBulk(PooledConnection conn, BulkState state) throws SQLException {
+        if (trigramSearch) {
+            PreparedStatement pstmt = conn.prepare(
+                    "INSERT INTO challans_plate_fts(rowid, vehicle_key) SELECT rowid, vehicle_key FROM challans WHERE rowid > ?");
+            pstmt.setLong(1, state.lastRowid());
+            pstmt.executeUpdate();
+        }
+        ChallanStatistics.applyInserted(conn, state.lastRowid());
+        ChallanEvents.recordInserted(conn, state.lastRowid());
+        TriggerGates.resume(conn, TriggerGates.BULK_INSERT);
+    }
+
+    // Returns true if the row was inserted
+    private static boolean recordRow(BulkInsertResult result, int updateCount, long position, String challanId) {
+        if (updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO) {
+            result.addInserted(1);
+            return true;
+        }
+        result.addFailure(position, challanId, "duplicate challan_id");
+        return false;
+    }
+
+    /**
+     * Binds a row for INSERT_SQL. A pending challan is priced under the current penalty schedule as of
+     * {@code today}, so rows imported already overdue carry their penalty before the next accrual; other
+     * challans keep the penalty they come with. Its plate goes into the plate filter now, before the row
+     * commits, so no reader sees the row while the filter still reports the plate clear; a rolled-back
+     * insert only leaves a false positive.
+     */
+    private void bindChallan(PreparedStatement pstmt, Challan challan, long today) throws SQLException {
+        String vehicleKey = PlateNumbers.normalize(challan.getVehicleNumber());
+        if ("PENDING".equals(challan.getStatus())) {
+            long dueDay = challan.getDueDay();
+            challan.setPenaltyAmount(dueDay == Challan.NO_DUE_DAY ? 0
+                    : penaltySchedule.penalty(challan.getViolation(), challan.getFine(), today - dueDay));
+            addPendingPlate(vehicleKey);
+        }
+        pstmt.setString(1, challan.getChallanId());
+        pstmt.setString(2, challan.getVehicleNumber());
+        pstmt.setString(3, challan.getViolation());
+        pstmt.setDouble(4, challan.getFine());
+        pstmt.setString(5, challan.getStatus());
+        pstmt.setString(6, challan.getIssueDate());
+        pstmt.setString(7, challan.getDueDate());
+        pstmt.setString(8, challan.getLocation());
+        pstmt.setString(9, vehicleKey);
+        pstmt.setDouble(10, challan.getPenaltyAmount());
+    }
+
     public List<Challan> getAllChallans() {
-        List<Challan> challans = new ArrayList<>();
-        String sql = "SELECT * FROM challans ORDER BY issue_date DESC";
+        return list(ChallanFilter.all());
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    /**
+     * Returns up to {@code limit} challans after {@code after} (null for the first page). Each page is a
+     * bounded index range scan, so deep pages cost the same as the first one, unlike OFFSET.
+     */
+    @Override
+    public ChallanPage getChallansPage(ChallanFilter filter, ChallanPage.Cursor after, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        long start = System.nanoTime();
+        ChallanPage page = readPage(filter, after, limit);
+        metrics.record(DatabaseMetrics.Operation.GET_CHALLANS_PAGE, start, page.challans().size());
+        return page;
+    }
 
+    private ChallanPage readPage(ChallanFilter filter, ChallanPage.Cursor after, int limit) {
+        if (knownClear(filter)) return new ChallanPage(new ArrayList<>(), null);
+        ChallanCache current = cache;
+        if (current != null) {
+            ChallanPage page = current.page(filter, after, limit);
+            if (page != null) return page;
+        }
+        List<Challan> challans = new ArrayList<>(Math.min(limit, 1000));
+        List<Object> params = new ArrayList<>();
+        // Fetch one extra row to learn whether another page exists without a COUNT
+        String sql = buildQuery(SELECT_COLUMNS, filter, after, params) + ORDER_BY + " LIMIT " + (limit + 1);
+
+        try (PooledConnection conn = reader();
+             ResultSet rs = bind(conn.prepare(sql), params).executeQuery()) {
+            while (rs.next() && challans.size() <= limit) {
+                challans.add(readChallan(rs));
+            }
+        } catch (SQLException e) {
+            Log.error("Error retrieving challan page: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_CHALLANS_PAGE);
+            return new ChallanPage(challans, null);
+        }
+
+        if (challans.size() > limit) {
+            challans.remove(limit);
+            return new ChallanPage(challans, ChallanPage.Cursor.after(challans.get(limit - 1)));
+        }
+        return new ChallanPage(challans, null);
+    }
+
+    /**
+     * Returns up to {@code limit} challans starting at row {@code offset} of the listing in {@code sort}
+     * order, for views that jump to arbitrary rows. SQLite still walks the skipped rows, so sequential
+     * reads in the default order should prefer the keyset cursor of {@link #getChallansPage}.
+     */
+    @Override
+    public List<Challan> getChallans(ChallanFilter filter, ChallanSort sort, int offset, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        if (offset < 0) throw new IllegalArgumentException("offset must not be negative");
+        long start = System.nanoTime();
+        List<Challan> challans = readChallans(filter, sort, offset, limit);
+        metrics.record(DatabaseMetrics.Operation.GET_CHALLANS, start, challans.size());
+        return challans;
+    }
+
+    private List<Challan> readChallans(ChallanFilter filter, ChallanSort sort, int offset, int limit) {
+        if (knownClear(filter)) return new ArrayList<>();
+        ChallanCache current = cache;
+        if (current != null && sort.equals(ChallanSort.DEFAULT)) {
+            List<Challan> rows = current.rows(filter, offset, limit);
+            if (rows != null) return rows;
+        }
+        List<Challan> challans = new ArrayList<>(Math.min(limit, 1000));
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(SELECT_COLUMNS, filter, null, params) + sort.orderBy() + " LIMIT ? OFFSET ?";
+        params.add(limit);
+        params.add(offset);
+
+        try (PooledConnection conn = reader();
+             ResultSet rs = bind(conn.prepare(sql), params).executeQuery()) {
             while (rs.next()) {
-                Challan challan = new Challan(
-                        rs.getString("challan_id"),
-                        rs.getString("vehicle_number"),
-                        rs.getString("violation"),
-                        rs.getDouble("fine"),
-                        rs.getString("location")
-                );
-                challan.setStatus(rs.getString("status"));
-                challan.setIssueDate(rs.getString("issue_date"));
-                challan.setDueDate(rs.getString("due_date"));
-                challans.add(challan);
-            }
-            System.out.println("Retrieved " + challans.size() + " challans from database");
+                challans.add(readChallan(rs));
+            }
         } catch (SQLException e) {
-            System.err.println("Error retrieving challans: " + e.getMessage());
+            Log.error("Error retrieving challans: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_CHALLANS);
         }
         return challans;
     }
 
-    public boolean payChallan(String challanId) {
-        String sql = "UPDATE challans SET status = 'PAID' WHERE challan_id = ?";
+    /**
+     * Hands every matching challan to {@code consumer} while the result set is open, so callers that
+     * aggregate or export never hold the whole listing in memory. Returns false if the query failed.
+     * When the in-memory cache answers, {@code consumer} runs under its read lock and must not write.
+     */
+    public boolean forEachChallan(ChallanFilter filter, Consumer<Challan> consumer) {
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+        boolean read = scan(DatabaseMetrics.Operation.LIST_CHALLANS, filter, challan -> {
+            rows[0]++;
+            consumer.accept(challan);
+        });
+        metrics.record(DatabaseMetrics.Operation.LIST_CHALLANS, start, rows[0]);
+        return read;
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private List<Challan> list(ChallanFilter filter) {
+        long start = System.nanoTime();
+        List<Challan> challans = new ArrayList<>();
+        scan(DatabaseMetrics.Operation.LIST_CHALLANS, filter, challans::add);
+        metrics.record(DatabaseMetrics.Operation.LIST_CHALLANS, start, challans.size());
+        return challans;
+    }
 
-            pstmt.setString(1, challanId);
-            int rowsAffected = pstmt.executeUpdate();
+    // forEachChallan without the timing; a failure is counted against the caller's operation
+    private boolean scan(DatabaseMetrics.Operation operation, ChallanFilter filter, Consumer<Challan> consumer) {
+        if (knownClear(filter)) return true;
+        ChallanCache current = cache;
+        if (current != null && current.forEach(filter, consumer)) {
+            return true;
+        }
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(SELECT_COLUMNS, filter, null, params) + ORDER_BY;
 
-            if (rowsAffected > 0) {
-                System.out.println("Challan " + challanId + " marked as paid");
-                return true;
-            } else {
-                System.err.println("Challan " + challanId + " not found for payment");
-                return false;
+        try (PooledConnection conn = reader();
+             ResultSet rs = bind(conn.prepare(sql), params).executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(readChallan(rs));
             }
+            return true;
         } catch (SQLException e) {
-            System.err.println("Error paying challan: " + e.getMessage());
+            Log.error("Error retrieving challans: " + e.getMessage());
+            metrics.recordError(operation);
             return false;
         }
     }
 
-    public List<Challan> searchByVehicle(String vehicleNumber) {
-        List<Challan> challans = new ArrayList<>();
-        String sql = "SELECT * FROM challans WHERE vehicle_number LIKE ? ORDER BY issue_date DESC";
+    /**
+     * Lazily streams matching challans. The stream holds a read connection until it is closed,
+     * so always use it in a try-with-resources block.
+     */
+    public Stream<Challan> streamChallans(ChallanFilter filter) {
+        if (knownClear(filter)) return Stream.empty();
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(SELECT_COLUMNS, filter, null, params) + ORDER_BY;
+        PooledConnection conn;
+        ResultSet rs;
+        try {
+            conn = reader();
+        } catch (SQLException e) {
+            Log.error("Error streaming challans: " + e.getMessage());
+            return Stream.empty();
+        }
+        try {
+            rs = bind(conn.prepare(sql), params).executeQuery();
+        } catch (SQLException e) {
+            conn.close();
+            Log.error("Error streaming challans: " + e.getMessage());
+            return Stream.empty();
+        }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        Spliterator<Challan> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Challan> action) {
+                try {
+                    if (!rs.next()) return false;
+                    action.accept(readChallan(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error streaming challans", e);
+                }
+            }
+        };
+        return StreamSupport.stream(rows, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                Log.error("Error closing challan stream: " + e.getMessage());
+            } finally {
+                conn.close();
+            }
+        });
+    }
 
-            pstmt.setString(1, "%" + vehicleNumber + "%");
-            ResultSet rs = pstmt.executeQuery();
+    /** Row count, fine total, overdue count and stored penalties of pending rows for a filter, computed by one aggregate query. */
+    @Override
+    public ChallanSummary getSummary(ChallanFilter filter) {
+        long start = System.nanoTime();
+        ChallanSummary summary = summarize(filter);
+        metrics.record(DatabaseMetrics.Operation.GET_SUMMARY, start, 0);
+        return summary;
+    }
 
-            while (rs.next()) {
-                Challan challan = new Challan(
-                        rs.getString("challan_id"),
-                        rs.getString("vehicle_number"),
-                        rs.getString("violation"),
-                        rs.getDouble("fine"),
-                        rs.getString("location")
-                );
-                challan.setStatus(rs.getString("status"));
-                challan.setIssueDate(rs.getString("issue_date"));
-                challan.setDueDate(rs.getString("due_date"));
-                challans.add(challan);
-            }
-            System.out.println("Search for '" + vehicleNumber + "' returned " + challans.size() + " results");
+    private ChallanSummary summarize(ChallanFilter filter) {
+        if (knownClear(filter)) return new ChallanSummary(0, 0, 0, 0);
+        ChallanCache current = cache;
+        if (current != null) {
+            ChallanSummary summary = current.summarize(filter);
+            if (summary != null) return summary;
+        }
+        List<Object> params = new ArrayList<>();
+        long today = Challan.today().toEpochDay();
+        params.add(today);
+        String sql = buildQuery("COUNT(*), TOTAL(fine), "
+                + "COUNT(CASE WHEN status = 'PENDING' AND due_day < ? THEN 1 END), "
+                + "TOTAL(CASE WHEN status = 'PENDING' THEN penalty_amount END)", filter, null, params);
+
+        try (PooledConnection conn = reader();
+             ResultSet rs = bind(conn.prepare(sql), params).executeQuery()) {
+            if (rs.next()) {
+                return new ChallanSummary(rs.getLong(1), rs.getDouble(2), rs.getLong(3), rs.getDouble(4));
+            }
         } catch (SQLException e) {
-            System.err.println("Error searching challans: " + e.getMessage());
+            Log.error("Error summarizing challans: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_SUMMARY);
         }
-        return challans;
+        return new ChallanSummary(0, 0, 0, 0);
     }
 
-    // NEW: Get pending challans only
-    public List<Challan> getPendingChallans() {
+    private String buildQuery(String columns, ChallanFilter filter, ChallanPage.Cursor after, List<Object> params) {
+        return buildQuery(columns, "challans", filter, after, params);
+    }
+
+    private String buildQuery(String columns, String source, ChallanFilter filter, ChallanPage.Cursor after,
+                              List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(source).append(" WHERE 1 = 1");
+        if (filter.status() != null) {
+            sql.append(" AND status = ?");
+            params.add(filter.status());
+        }
+        if (filter.vehicleNumber() != null) {
+            String key = PlateNumbers.normalize(filter.vehicleNumber());
+            SearchMode mode = filter.searchMode() != null ? filter.searchMode() : SearchMode.SUBSTRING;
+            if (key.isEmpty()) {
+                sql.append(" AND 0");
+            } else if (mode == SearchMode.EXACT) {
+                sql.append(" AND vehicle_key = ?");
+                params.add(key);
+            } else if (mode == SearchMode.PREFIX) {
+                sql.append(" AND vehicle_key >= ? AND vehicle_key < ?");
+                params.add(key);
+                params.add(PlateNumbers.prefixUpperBound(key));
+            } else if (trigramSearch && key.length() >= 3 && source.equals("challans")) {
+                sql.append(" AND rowid IN (SELECT rowid FROM challans_plate_fts WHERE challans_plate_fts MATCH ?)");
+                // Keys are alphanumeric, so quoting them as an FTS phrase needs no escaping
+                params.add("\"" + key + "\"");
+            } else {
+                // Shorter than a trigram, or archived: no FTS index to use, so scan the key column
+                sql.append(" AND vehicle_key LIKE ?");
+                params.add("%" + key + "%");
+            }
+        }
+        if (filter.violation() != null) {
+            sql.append(" AND violation = ?");
+            params.add(filter.violation());
+        }
+        if (filter.overdueAsOf() != null) {
+            // Overdue means the due day has fully passed, matching Challan.isOverdue()
+            sql.append(" AND status = 'PENDING' AND due_day < ?");
+            params.add(filter.overdueAsOf().toEpochDay());
+        }
+        if (after != null) {
+            sql.append(" AND (issue_date, challan_id) < (?, ?)");
+            params.add(after.issueDate());
+            params.add(after.challanId());
+        }
+        return sql.toString();
+    }
+
+    private static PreparedStatement bind(PreparedStatement pstmt, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            pstmt.setObject(i + 1, params.get(i));
+        }
+        return pstmt;
+    }
+
+    private Challan readChallan(ResultSet rs) throws SQLException {
+        long dueDay = rs.getLong(9);
+        if (rs.wasNull()) {
+            dueDay = Challan.NO_DUE_DAY;
+        }
+        return new Challan(rs.getString(1), rs.getString(2), rs.getString(3), rs.getDouble(4),
+                rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8), dueDay, rs.getDouble(10));
+    }
+
+    @Override
+    public boolean payChallan(String challanId) {
+        if (await(writes.payChallan(challanId))) {
+            if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("Challan " + challanId + " marked as paid");
+            return true;
+        }
+        if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("Challan " + challanId + " not found for payment");
+        return false;
+    }
+
+    /** Queues every payment before waiting, so they share group commits instead of one transaction each. */
+    @Override
+    public int payChallans(List<String> challanIds) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(challanIds.size());
+        for (String challanId : challanIds) {
+            results.add(writes.payChallan(challanId));
+        }
+        return countApplied(results);
+    }
+
+    public SettlementResult settlePayments(Iterable<String> challanIds) {
+        SettlementResult result = new SettlementResult();
+        settlePayments(challanIds.iterator(), result);
+        Log.info("Settlement: " + result);
+        return result;
+    }
+
+    /**
+     * Marks every listed challan PAID, for bank reconciliation files of any size. IDs are settled in
+     * transactions of {@link DatabaseConfig#getSettlementChunkSize()}: each chunk is loaded into a temporary
+     * table and paid with one set-based UPDATE, and the statistics and dues index get one set-based
+     * adjustment per chunk instead of one per row. Settling is idempotent: IDs that are already PAID
+     * (including archived challans and repeats within the file) and IDs with no challan are recorded in
+     * {@code result} and otherwise left alone, so a file can safely be replayed after a partial run.
+     */
+    public void settlePayments(Iterator<String> challanIds, SettlementResult result) {
+        long start = System.nanoTime();
+        long settledBefore = result.getSettled();
+        int commitSize = config.getSettlementChunkSize();
+        List<String> chunk = new ArrayList<>(commitSize);
+
+        while (challanIds.hasNext()) {
+            String challanId = challanIds.next();
+            if (challanId == null || challanId.isBlank()) continue;
+            chunk.add(challanId.strip());
+            if (chunk.size() == commitSize) {
+                settleChunk(chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            settleChunk(chunk, result);
+        }
+        result.addElapsedNanos(System.nanoTime() - start);
+        metrics.record(DatabaseMetrics.Operation.SETTLE_PAYMENTS, start, result.getSettled() - settledBefore);
+    }
+
+    /**
+     * Settles one chunk in one transaction. The IDs go into {@code temp.settlement_batch}, and one join
+     * copies the matching rows into {@code temp.settlement_rows}; the hot table is probed once per ID, and
+     * classification, statistics and dues are all worked out from the copy before a single UPDATE by rowid.
+     */
+    private void settleChunk(List<String> chunk, SettlementResult result) {
+        SettlementResult chunkResult = new SettlementResult();
+        List<String> paid = cache != null ? new ArrayList<>(chunk.size()) : null;
+        List<OutstandingIndex.Change> changes = outstanding != null ? new ArrayList<>() : null;
+
+        try (PooledConnection conn = writer()) {
+            try (Statement stmt = conn.getConnection().createStatement()) {
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS settlement_batch (challan_id TEXT PRIMARY KEY) WITHOUT ROWID");
+                stmt.execute("CREATE TEMP TABLE IF NOT EXISTS settlement_rows (id INTEGER PRIMARY KEY, challan_id TEXT, "
+                        + "status TEXT, fine REAL, violation TEXT, location TEXT, issue_date TEXT, vehicle_key TEXT, due_day INTEGER, "
+                        + "penalty_amount REAL)");
+            }
+            conn.begin();
+            conn.prepare("DELETE FROM temp.settlement_batch").executeUpdate();
+            conn.prepare("DELETE FROM temp.settlement_rows").executeUpdate();
+
+            PreparedStatement load = conn.prepare("INSERT OR IGNORE INTO temp.settlement_batch VALUES (?)");
+            for (String challanId : chunk) {
+                load.setString(1, challanId);
+                load.addBatch();
+            }
+            int[] counts = load.executeBatch();
+            List<String> repeats = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) repeats.add(chunk.get(i));
+            }
+            // CROSS JOIN keeps the batch as the outer loop, whatever the planner thinks of status
+            int matched = conn.prepare("INSERT INTO temp.settlement_rows SELECT c.rowid, c.challan_id, c.status, c.fine, "
+                    + "c.violation, c.location, c.issue_date, c.vehicle_key, c.due_day, c.penalty_amount "
+                    + "FROM temp.settlement_batch b CROSS JOIN challans c ON c.challan_id = b.challan_id").executeUpdate();
+
+            // Not in the hot table: archived challans were paid before they were archived
+            Set<String> unmatched = new HashSet<>();
+            if (matched < chunk.size() - repeats.size()) {
+                try (ResultSet rs = conn.prepare("SELECT b.challan_id, EXISTS (SELECT 1 FROM " + ChallanArchive.ARCHIVED_VIEW
+                        + " a WHERE a.challan_id = b.challan_id) FROM temp.settlement_batch b "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM challans c WHERE c.challan_id = b.challan_id)").executeQuery()) {
+                    while (rs.next()) {
+                        if (rs.getBoolean(2)) {
+                            chunkResult.addAlreadyPaid(rs.getString(1));
+                        } else {
+                            unmatched.add(rs.getString(1));
+                            chunkResult.addUnmatched(rs.getString(1));
+                        }
+                    }
+                }
+            }
+            try (ResultSet rs = conn.prepare("SELECT challan_id, status IS 'PAID' FROM temp.settlement_rows").executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean(2)) {
+                        chunkResult.addAlreadyPaid(rs.getString(1));
+                    } else if (paid != null) {
+                        paid.add(rs.getString(1));
+                    }
+                }
+            }
+            // A repeat was settled by its first occurrence, unless there was nothing to settle
+            for (String challanId : repeats) {
+                if (unmatched.contains(challanId)) {
+                    chunkResult.addUnmatched(challanId);
+                } else {
+                    chunkResult.addAlreadyPaid(challanId);
+                }
+            }
+
+            TriggerGates.suspend(conn, TriggerGates.STATS_UPDATE);
+            ChallanStatistics.applySettled(conn);
+            chunkResult.addSettled(conn.prepare("UPDATE challans SET status = 'PAID' "
+                    + "WHERE rowid IN (SELECT id FROM temp.settlement_rows WHERE status IS NOT 'PAID')").executeUpdate());
+            TriggerGates.resume(conn, TriggerGates.STATS_UPDATE);
+
+            if (changes != null) {
+                try (ResultSet rs = conn.prepare("SELECT vehicle_key, COUNT(*), SUM(CAST(round(fine * 100) AS INTEGER)), "
+                        + "MIN(due_day) FROM temp.settlement_rows WHERE status = 'PENDING' GROUP BY vehicle_key").executeQuery()) {
+                    while (rs.next()) {
+                        String vehicleKey = rs.getString(1);
+                        int count = rs.getInt(2);
+                        long settledDueDay = rs.getObject(4) != null ? rs.getLong(4) : Challan.NO_DUE_DAY;
+                        changes.add(OutstandingIndex.Change.removed(vehicleKey, count, rs.getLong(3),
+                                remainingDueDay(conn, vehicleKey, count, settledDueDay)));
+                    }
+                }
+            }
+            conn.commit();
+            eventsCommitted();
+            if (paid != null) {
+                for (String challanId : paid) {
+                    cache.markPaid(challanId);
+                }
+            }
+            if (changes != null) {
+                for (OutstandingIndex.Change change : changes) {
+                    outstanding.apply(change);
+                }
+            }
+            result.merge(chunkResult);
+        } catch (SQLException e) {
+            Log.error("Error committing settlement chunk: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.SETTLE_PAYMENTS);
+            result.addFailed(chunk.size());
+        }
+    }
+
+    /**
+     * A plate's earliest pending due day once {@code count} of its challans, the earliest of them due on
+     * {@code settledDueDay}, are paid. The dues index still holds the state before the chunk, so the table
+     * is only asked when the settled rows may have held the minimum and others remain.
+     */
+    private long remainingDueDay(PooledConnection conn, String vehicleKey, int count, long settledDueDay) throws SQLException {
+        Outstanding before = outstanding.get(vehicleKey);
+        if (before.pendingCount() <= count) return Challan.NO_DUE_DAY;
+        // Rows without a due day never held the minimum
+        if (settledDueDay == Challan.NO_DUE_DAY || before.earliestDueDay() == Challan.NO_DUE_DAY
+                || settledDueDay > before.earliestDueDay()) {
+            return before.earliestDueDay();
+        }
+        return earliestDueDay(conn, vehicleKey);
+    }
+
+    public List<Challan> searchByVehicle(String vehicleNumber) {
+        return searchByVehicle(vehicleNumber, SearchMode.SUBSTRING);
+    }
+
+    public List<Challan> searchByVehicle(String vehicleNumber, SearchMode mode) {
+        long start = System.nanoTime();
         List<Challan> challans = new ArrayList<>();
-        String sql = "SELECT * FROM challans WHERE status = 'PENDING' ORDER BY issue_date DESC";
+        boolean read = scan(DatabaseMetrics.Operation.SEARCH_BY_VEHICLE, ChallanFilter.vehicle(vehicleNumber, mode), challans::add);
+        metrics.record(DatabaseMetrics.Operation.SEARCH_BY_VEHICLE, start, challans.size());
+        if (read) {
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                Log.debug("Search for '" + vehicleNumber + "' (" + mode + ") returned " + challans.size() + " results");
+            }
+        }
+        return challans;
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+    /** As {@link #searchByVehicle(String, SearchMode)}, followed by archived matches when {@code includeArchive} is set. */
+    public List<Challan> searchByVehicle(String vehicleNumber, SearchMode mode, boolean includeArchive) {
+        List<Challan> challans = searchByVehicle(vehicleNumber, mode);
+        if (includeArchive) {
+            challans.addAll(searchArchivedByVehicle(vehicleNumber, mode));
+        }
+        return challans;
+    }
 
+    /**
+     * Archived challans for a plate, newest first. Read on demand from the month tables through
+     * {@link ChallanArchive#ARCHIVED_VIEW}; each table's vehicle_key index serves exact and prefix search,
+     * substring search scans the key column.
+     */
+    @Override
+    public List<Challan> searchArchivedByVehicle(String vehicleNumber, SearchMode mode) {
+        long start = System.nanoTime();
+        List<Challan> challans = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        String sql = buildQuery(SELECT_COLUMNS, ChallanArchive.ARCHIVED_VIEW, ChallanFilter.vehicle(vehicleNumber, mode),
+                null, params) + ORDER_BY;
+        try (PooledConnection conn = reader();
+             ResultSet rs = bind(conn.prepare(sql), params).executeQuery()) {
             while (rs.next()) {
-                Challan challan = new Challan(
-                        rs.getString("challan_id"),
-                        rs.getString("vehicle_number"),
-                        rs.getString("violation"),
-                        rs.getDouble("fine"),
-                        rs.getString("location")
-                );
-                challan.setStatus(rs.getString("status"));
-                challan.setIssueDate(rs.getString("issue_date"));
-                challan.setDueDate(rs.getString("due_date"));
-                challans.add(challan);
+                challans.add(readChallan(rs));
+            }
+            if (Log.isEnabled(Log.Level.DEBUG)) {
+                Log.debug("Archive search for '" + vehicleNumber + "' (" + mode + ") returned " + challans.size() + " results");
             }
         } catch (SQLException e) {
-            System.err.println("Error retrieving pending challans: " + e.getMessage());
+            Log.error("Error searching archived challans: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.SEARCH_ARCHIVE);
         }
+        metrics.record(DatabaseMetrics.Operation.SEARCH_ARCHIVE, start, challans.size());
         return challans;
     }
 
-    // NEW: Get overdue challans
-    public List<Challan> getOverdueChallans() {
-        List<Challan> allChallans = getPendingChallans();
-        List<Challan> overdueChallans = new ArrayList<>();
+    /**
+     * What a plate owes: pending challan count, pending fine total and earliest due date. Answered from the
+     * {@link OutstandingIndex} when {@link DatabaseConfig#isOutstandingIndex()} is set and the index has been
+     * built; otherwise a plate the {@link PendingPlateFilter} reports clear is answered at once, and any other
+     * by aggregating the plate's rows through idx_challans_vehicle_key.
+     */
+    @Override
+    public Outstanding getOutstanding(String vehicleNumber) {
+        long start = System.nanoTime();
+        Outstanding dues = lookUpOutstanding(vehicleNumber);
+        metrics.record(DatabaseMetrics.Operation.GET_OUTSTANDING, start, dues.pendingCount());
+        return dues;
+    }
+
+    private Outstanding lookUpOutstanding(String vehicleNumber) {
+        OutstandingIndex index = outstanding;
+        if (index != null) return index.get(vehicleNumber);
+        String vehicleKey = PlateNumbers.normalize(vehicleNumber);
+        PendingPlateFilter filter = plateFilter;
+        if (filter != null && !filter.mightHavePending(vehicleKey)) return Outstanding.none(vehicleKey);
+        try (PooledConnection conn = reader()) {
+            PreparedStatement pstmt = conn.prepare("SELECT COUNT(*), TOTAL(fine), MIN(due_day) FROM challans "
+                    + "WHERE vehicle_key = ? AND status = 'PENDING'");
+            pstmt.setString(1, vehicleKey);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return Outstanding.none(vehicleKey);
+                long dueDay = rs.getLong(3);
+                if (rs.wasNull()) dueDay = Challan.NO_DUE_DAY;
+                return new Outstanding(vehicleKey, rs.getLong(1), rs.getDouble(2), dueDay);
+            }
+        } catch (SQLException e) {
+            Log.error("Error reading outstanding dues: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_OUTSTANDING);
+            return Outstanding.none(vehicleKey);
+        }
+    }
+
+    /** The dues index, or null when it is disabled or still being built. */
+    public OutstandingIndex getOutstandingIndex() { return outstanding; }
+
+    /**
+     * The filter of plates with pending challans, for its size and false-positive figures; null when it is
+     * disabled or still being built.
+     */
+    public PendingPlateFilter getPendingPlateFilter() { return plateFilter; }
 
-        for (Challan challan : allChallans) {
-            if (challan.isOverdue()) {
-                overdueChallans.add(challan);
+    /**
+     * The plate's repeat-offender flag, or null if it has none or detection is off
+     * ({@link DatabaseConfig#setRepeatOffenderThreshold}). Until the detector has warmed up, the plate's
+     * rows within the window are replayed from {@code idx_challans_vehicle_key}.
+     */
+    @Override
+    public RepeatOffender getRepeatOffender(String vehicleNumber) {
+        if (config.getRepeatOffenderThreshold() == 0) return null;
+        long start = System.nanoTime();
+        RepeatOffender flag = lookUpRepeatOffender(vehicleNumber);
+        metrics.record(DatabaseMetrics.Operation.GET_REPEAT_OFFENDERS, start, flag != null ? 1 : 0);
+        return flag;
+    }
+
+    private RepeatOffender lookUpRepeatOffender(String vehicleNumber) {
+        RepeatOffenderDetector detector = repeatOffenders;
+        if (detector != null) return detector.get(vehicleNumber);
+        String vehicleKey = PlateNumbers.normalize(vehicleNumber);
+        RepeatOffenderDetector replay = newRepeatOffenderDetector(1);
+        try (PooledConnection conn = reader()) {
+            PreparedStatement pstmt = conn.prepare(
+                    "SELECT issue_date FROM challans WHERE vehicle_key = ? AND issue_date > ? ORDER BY issue_date");
+            pstmt.setString(1, vehicleKey);
+            pstmt.setString(2, repeatOffenderCutoff());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    replay.record(vehicleKey, rs.getString(1));
+                }
             }
+            return replay.get(vehicleKey);
+        } catch (SQLException e) {
+            Log.error("Error checking repeat offences: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_REPEAT_OFFENDERS);
+            return null;
         }
-        return overdueChallans;
+    }
+
+    /** Plates flagged within the window, most recent first; empty while detection is off or warming up. */
+    @Override
+    public List<RepeatOffender> getRepeatOffenders() {
+        RepeatOffenderDetector detector = repeatOffenders;
+        if (detector == null) return new ArrayList<>();
+        long start = System.nanoTime();
+        List<RepeatOffender> flags = detector.offenders();
+        metrics.record(DatabaseMetrics.Operation.GET_REPEAT_OFFENDERS, start, flags.size());
+        return flags;
+    }
+
+    public RepeatOffenderDetector getRepeatOffenderDetector() { return repeatOffenders; }
+
+    // NEW: Get pending challans only
+    public List<Challan> getPendingChallans() {
+        return list(ChallanFilter.pending());
+    }
+
+    // NEW: Get overdue challans
+    @Override
+    public List<Challan> getOverdueChallans() {
+        return list(ChallanFilter.overdue(Challan.today()));
     }
 
     // NEW: Get statistics
+    @Override
     public Map<String, Object> getStatistics() {
+        long start = System.nanoTime();
         Map<String, Object> stats = new HashMap<>();
-        String sql = """
-            SELECT 
-                COUNT(*) as total,
-                COUNT(CASE WHEN status = 'PENDING' THEN 1 END) as pending,
-                COUNT(CASE WHEN status = 'PAID' THEN 1 END) as paid,
-                SUM(CASE WHEN status = 'PENDING' THEN fine ELSE 0 END) as pending_amount,
-                SUM(CASE WHEN status = 'PAID' THEN fine ELSE 0 END) as collected_amount
-            FROM challans
-        """;
-
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
 
-            if (rs.next()) {
-                stats.put("total", rs.getInt("total"));
-                stats.put("pending", rs.getInt("pending"));
-                stats.put("paid", rs.getInt("paid"));
-                stats.put("pending_amount", rs.getDouble("pending_amount"));
-                stats.put("collected_amount", rs.getDouble("collected_amount"));
-            }
+        // Served from the trigger-maintained summary row rather than scanning challans
+        try (PooledConnection conn = reader()) {
+            ChallanStatistics.Row totals = ChallanStatistics.readTotals(conn);
+            stats.put("total", (int) totals.total());
+            stats.put("pending", (int) totals.pending());
+            stats.put("paid", (int) totals.paid());
+            stats.put("pending_amount", totals.pendingAmount());
+            stats.put("collected_amount", totals.collectedAmount());
+            stats.put("pending_penalty_amount", totals.pendingPenalty());
         } catch (SQLException e) {
-            System.err.println("Error getting statistics: " + e.getMessage());
+            Log.error("Error getting statistics: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_STATISTICS);
         }
+        metrics.record(DatabaseMetrics.Operation.GET_STATISTICS, start, 0);
         return stats;
     }
 
+    /**
+     * Hotspot and revenue report by location, violation, hour of day and issue month, archived challans
+     * included. Scans {@code challans} in parallel chunks, one read connection each, on as many workers as
+     * there are cores and pooled readers; raise {@link DatabaseConfig#setReaderCount(int)} to use more cores.
+     * Archiving waits while the scan runs, so each challan is counted once. Returns an empty report if the
+     * scan failed.
+     */
+    public ChallanReport getReport() {
+        long start = System.nanoTime();
+        LocalDate asOf = Challan.today();
+        int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), config.getReaderCount());
+        reportLock.readLock().lock();
+        try {
+            ChallanReport report = new ReportEngine(this, parallelism, asOf).run();
+            metrics.record(DatabaseMetrics.Operation.GET_REPORT, start, report.totals().issued());
+            Log.info("Report over " + report.totals().issued() + " challans on " + parallelism + " workers in "
+                    + report.getElapsedMillis() + " ms");
+            return report;
+        } catch (SQLException e) {
+            Log.error("Error building report: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.GET_REPORT);
+            metrics.record(DatabaseMetrics.Operation.GET_REPORT, start, 0);
+            return ChallanReport.empty(asOf);
+        } finally {
+            reportLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Per-key statistics for one of the {@link ChallanStatistics} dimensions
+     * ({@code violation}, {@code location} or {@code day}).
+     */
+    public List<ChallanStatistics.Row> getStatisticsBreakdown(String dimension) {
+        try (PooledConnection conn = reader()) {
+            return ChallanStatistics.readDimension(conn, dimension);
+        } catch (SQLException e) {
+            Log.error("Error getting " + dimension + " statistics: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /** Checks the summary table against every challan, archived included, within one read snapshot; returns the differences. */
+    public List<String> verifyStatistics() {
+        try (PooledConnection conn = reader()) {
+            conn.begin();
+            try {
+                return ChallanStatistics.verify(conn.getConnection());
+            } finally {
+                conn.rollback();
+            }
+        } catch (SQLException e) {
+            Log.error("Error verifying statistics: " + e.getMessage());
+            return List.of("verification failed: " + e.getMessage());
+        }
+    }
+
+    public boolean rebuildStatistics() {
+        try (PooledConnection conn = writer()) {
+            conn.begin();
+            ChallanStatistics.rebuild(conn.getConnection());
+            conn.commit();
+            Log.info("Statistics summary rebuilt");
+            return true;
+        } catch (SQLException e) {
+            Log.error("Error rebuilding statistics: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** The penalty rules in force, as stored in {@code penalty_rules}. */
+    public PenaltySchedule getPenaltySchedule() {
+        return penaltySchedule;
+    }
+
+    /**
+     * Replaces the penalty rules and recomputes every pending challan's penalty under them. The rules are
+     * committed first; if the recomputation fails, the next accrual retries it. Returns false on failure.
+     */
+    public boolean setPenaltySchedule(PenaltySchedule schedule) {
+        synchronized (penaltyLock) {
+            try (PooledConnection conn = writer()) {
+                conn.begin();
+                try {
+                    ChallanPenalties.writeSchedule(conn, schedule);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+                penaltySchedule = schedule;
+            } catch (SQLException e) {
+                Log.error("Error saving penalty rules: " + e.getMessage());
+                return false;
+            }
+            Log.info("Penalty rules set: " + schedule);
+            return accrue(true) != null;
+        }
+    }
+
+    /**
+     * Brings stored penalties up to today, as the background job does every
+     * {@link DatabaseConfig#getPenaltyIntervalMinutes()} minutes. Returns the run, or null if penalties were
+     * already accrued today or the run failed.
+     */
+    public PenaltyRun accruePenalties() {
+        return accrue(false);
+    }
+
+    /** Recomputes the penalty of every pending challan, whatever was accrued before; null if it failed. */
+    public PenaltyRun recomputePenalties() {
+        return accrue(true);
+    }
+
+    /** The last {@code limit} accrual runs with their timings, newest first. */
+    public List<PenaltyRun> getPenaltyRuns(int limit) {
+        try (PooledConnection conn = reader()) {
+            return ChallanPenalties.readRuns(conn, limit);
+        } catch (SQLException e) {
+            Log.error("Error reading penalty runs: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Catches up day by day when the last accrual is recent, through the due days that reach a threshold
+     * in between, all in one transaction. Otherwise every pending row is recomputed in rowid chunks of
+     * {@value #PENALTY_CHUNK_ROWS}, releasing the writer between chunks like archiving does; the accrued
+     * day is only recorded once the last chunk commits, so an interrupted run starts over.
+     */
+    private PenaltyRun accrue(boolean recompute) {
+        synchronized (penaltyLock) {
+            long start = System.nanoTime();
+            LocalDate today = Challan.today();
+            long day = today.toEpochDay();
+            try {
+                long accruedDay;
+                long lastRowid;
+                try (PooledConnection conn = writer()) {
+                    accruedDay = ChallanPenalties.accruedDay(conn);
+                    // Picks up rules stored by another process
+                    penaltySchedule = ChallanPenalties.readSchedule(conn);
+                    try (ResultSet rs = conn.prepare("SELECT IFNULL(MAX(rowid), 0) FROM challans").executeQuery()) {
+                        lastRowid = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+                if (!recompute && accruedDay == day) return null;
+                boolean full = recompute || accruedDay == ChallanPenalties.NOT_ACCRUED || accruedDay > day
+                        || day - accruedDay > ChallanPenalties.MAX_CATCH_UP_DAYS;
+
+                long changed = 0;
+                for (long from = 0; full && from < lastRowid; from += PENALTY_CHUNK_ROWS) {
+                    if (Thread.currentThread().isInterrupted()) return null;
+                    try (PooledConnection conn = writer()) {
+                        conn.begin();
+                        try {
+                            int collected = ChallanPenalties.collectRange(conn, day, from, Math.min(from + PENALTY_CHUNK_ROWS, lastRowid));
+                            Map<String, Double> changes = applyPenalties(conn, collected);
+                            conn.commit();
+                            cachePenalties(changes);
+                            changed += collected;
+                        } catch (SQLException e) {
+                            conn.rollback();
+                            throw e;
+                        }
+                    }
+                }
+
+                PenaltyRun run;
+                try (PooledConnection conn = writer()) {
+                    conn.begin();
+                    try {
+                        Map<String, Double> changes = null;
+                        if (!full) {
+                            int collected = ChallanPenalties.collectDueOn(conn, day,
+                                    ChallanPenalties.crossingDueDays(penaltySchedule, accruedDay, day));
+                            changes = applyPenalties(conn, collected);
+                            changed += collected;
+                        }
+                        run = new PenaltyRun(today, full, changed, (System.nanoTime() - start) / 1_000_000, Challan.now());
+                        ChallanPenalties.setAccruedDay(conn, day);
+                        ChallanPenalties.recordRun(conn, run);
+                        conn.commit();
+                        cachePenalties(changes);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+                metrics.record(DatabaseMetrics.Operation.ACCRUE_PENALTIES, start, changed);
+                Log.info(run.toString());
+                return run;
+            } catch (SQLException e) {
+                Log.error("Error accruing penalties: " + e.getMessage());
+                metrics.recordError(DatabaseMetrics.Operation.ACCRUE_PENALTIES);
+                return null;
+            }
+        }
+    }
+
+    // Writes what the last collect left in temp.penalty_rows, in the caller's transaction; returns the
+    // changes for the memory cache, or null if there is none or nothing changed
+    private Map<String, Double> applyPenalties(PooledConnection conn, int collected) throws SQLException {
+        if (collected == 0) return null;
+        TriggerGates.suspend(conn, TriggerGates.STATS_UPDATE);
+        ChallanPenalties.apply(conn);
+        TriggerGates.resume(conn, TriggerGates.STATS_UPDATE);
+        return cache != null ? ChallanPenalties.collected(conn) : null;
+    }
+
+    private void cachePenalties(Map<String, Double> changes) {
+        ChallanCache current = cache;
+        if (current != null && changes != null) current.setPenalties(changes);
+    }
+
+    /**
+     * Up to {@code limit} change log events after sequence number {@code seq}, oldest first; pass the
+     * last one's {@link ChallanEvent#seq()} to get the next page. Empty when there is nothing newer.
+     */
+    public List<ChallanEvent> readEventsSince(long seq, int limit) {
+        long start = System.nanoTime();
+        try (PooledConnection conn = reader()) {
+            List<ChallanEvent> events = ChallanEvents.read(conn, seq, limit);
+            metrics.record(DatabaseMetrics.Operation.READ_EVENTS, start, events.size());
+            return events;
+        } catch (SQLException e) {
+            Log.error("Error reading change log: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.READ_EVENTS);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Like {@link #readEventsSince} but waits up to {@code timeoutMillis} for an event when there is none
+     * yet. Commits through this instance wake the wait at once; commits by other processes on the same
+     * file are found by polling every {@link DatabaseConfig#getEventPollMillis()}.
+     */
+    public List<ChallanEvent> awaitEvents(long seq, int limit, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long poll = TimeUnit.MILLISECONDS.toNanos(config.getEventPollMillis());
+        while (true) {
+            // Read before querying, so a commit landing in between is not waited out
+            long version = eventVersion;
+            List<ChallanEvent> events = readEventsSince(seq, limit);
+            long remaining = deadline - System.nanoTime();
+            if (!events.isEmpty() || remaining <= 0) return events;
+            eventLock.lock();
+            try {
+                if (eventVersion == version) {
+                    eventsLogged.awaitNanos(Math.min(remaining, poll));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return events;
+            } finally {
+                eventLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Follows the change log from after {@code afterSeq} on a virtual thread, handing each batch of new
+     * events to {@code consumer} in order until the subscription or this database is closed.
+     */
+    public EventSubscription subscribe(long afterSeq, Consumer<List<ChallanEvent>> consumer) {
+        EventSubscription subscription = new EventSubscription(this, afterSeq, consumer);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    void unsubscribe(EventSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    /** The newest change log sequence number, where a consumer starting from now should begin; 0 on error. */
+    public long getLatestEventSeq() {
+        try (PooledConnection conn = reader()) {
+            return ChallanEvents.latestSeq(conn);
+        } catch (SQLException e) {
+            Log.error("Error reading change log position: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // After a commit that may have logged events; called with the writer still held
+    void eventsCommitted() {
+        eventLock.lock();
+        try {
+            eventVersion++;
+            eventsLogged.signalAll();
+        } finally {
+            eventLock.unlock();
+        }
+    }
+
+    /**
+     * Drops change log events older than {@link DatabaseConfig#getEventRetentionDays()} and beyond the
+     * newest {@link DatabaseConfig#getEventRetentionRows()}, oldest first in transactions of
+     * {@value #EVENT_RETENTION_CHUNK} events with the writer released between them, and returns how many
+     * were dropped. SQLite reuses the freed pages for new events, so the log's share of the file stays
+     * about the size of what is retained.
+     */
+    public long compactEvents() {
+        int days = config.getEventRetentionDays();
+        long keepRows = config.getEventRetentionRows();
+        if (days == 0 && keepRows == 0) return 0;
+        long start = System.nanoTime();
+        long cutoff = days > 0 ? System.currentTimeMillis() - days * 86_400_000L : 0;
+        long dropped = 0;
+        try {
+            long oldest;
+            long bound;
+            try (PooledConnection conn = reader()) {
+                oldest = ChallanEvents.oldestSeq(conn);
+                bound = ChallanEvents.retentionBound(conn, cutoff, keepRows);
+            }
+            while (oldest > 0 && oldest <= bound && !Thread.currentThread().isInterrupted()) {
+                long through = Math.min(bound, oldest + EVENT_RETENTION_CHUNK - 1);
+                try (PooledConnection conn = writer()) {
+                    conn.begin();
+                    try {
+                        dropped += ChallanEvents.deleteThrough(conn, through);
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+                oldest = through + 1;
+            }
+        } catch (SQLException e) {
+            Log.error("Error applying change log retention: " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.COMPACT_EVENTS);
+        }
+        metrics.record(DatabaseMetrics.Operation.COMPACT_EVENTS, start, dropped);
+        if (dropped > 0) {
+            Log.info("Dropped " + dropped + " change log events in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return dropped;
+    }
+
     // NEW: Delete a challan (for admin use)
+    @Override
     public boolean deleteChallan(String challanId) {
-        String sql = "DELETE FROM challans WHERE challan_id = ?";
+        if (await(writes.deleteChallan(challanId))) {
+            if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("Challan " + challanId + " deleted");
+            return true;
+        }
+        return false;
+    }
 
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    @Override
+    public int deleteChallans(List<String> challanIds) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(challanIds.size());
+        for (String challanId : challanIds) {
+            results.add(writes.deleteChallan(challanId));
+        }
+        return countApplied(results);
+    }
 
-            pstmt.setString(1, challanId);
-            int rowsAffected = pstmt.executeUpdate();
+    // Waits for a queued write to commit; the pipeline has already logged any SQL error
+    private static boolean await(CompletableFuture<Boolean> write) {
+        try {
+            return write.join();
+        } catch (CompletionException | CancellationException e) {
+            Log.warn("Write not applied: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            return false;
+        }
+    }
+
+    private static int countApplied(List<CompletableFuture<Boolean>> results) {
+        int applied = 0;
+        for (CompletableFuture<Boolean> result : results) {
+            if (await(result)) applied++;
+        }
+        return applied;
+    }
 
-            if (rowsAffected > 0) {
-                System.out.println("Challan " + challanId + " deleted successfully");
+    @Override
+    public boolean testConnection() {
+        if (pool == null) {
+            Log.error("Database connection test: FAILED (connection pool not open)");
+            return false;
+        }
+        try (PooledConnection conn = reader()) {
+            if (conn.getConnection().isValid(1)) {
+                Log.debug("Database connection test: SUCCESS");
                 return true;
             }
+            Log.error("Database connection test: FAILED");
             return false;
         } catch (SQLException e) {
-            System.err.println("Error deleting challan: " + e.getMessage());
+            Log.error("Database connection test: FAILED", e);
             return false;
         }
     }
 
-    public boolean testConnection() {
-        try (Connection conn = DriverManager.getConnection(DB_URL)) {
-            System.out.println("Database connection test: SUCCESS");
-            return true;
-        } catch (SQLException e) {
-            System.err.println("Database connection test: FAILED");
-            e.printStackTrace();
-            return false;
+    @Override
+    public void close() {
+        for (EventSubscription subscription : List.copyOf(subscriptions)) {
+            subscription.close();
+        }
+        if (maintenance != null) {
+            // Interrupts a run in progress; the chunk it was writing rolls back
+            maintenance.shutdownNow();
+        }
+        // Commits whatever is still queued before the pool goes away
+        writes.close();
+        if (metricsServer != null) {
+            metricsServer.stop(0);
+        }
+        if (metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (JMException e) {
+                Log.warn("Could not unregister database metrics: " + e.getMessage());
+            }
+        }
+        if (pool != null) {
+            pool.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,219 @@
+package com.echallan;
+
+/**
+ * Connection settings for {@link Database}: the JDBC URL, pool sizing and the
+ * SQLite pragmas applied to every pooled connection.
+ */
+public class DatabaseConfig {
+    public static final String DEFAULT_URL = "jdbc:sqlite:echallan.db";
+
+    private String url = DEFAULT_URL;
+    private int readerCount = 4;
+    private long acquireTimeoutMillis = 5000;
+    private int statementCacheSize = 64;
+    private boolean walEnabled = true;
+    // NORMAL is durable across application crashes in WAL mode; only a power loss can drop the last commits
+    private String synchronous = "NORMAL";
+    // Negative values are KiB, positive values are pages (SQLite semantics)
+    private int cacheSize = -16000;
+    private long mmapSize = 256L * 1024 * 1024;
+    private int busyTimeoutMillis = 5000;
+    private int bulkCommitSize = 5000;
+    // IDs per settlement transaction. Larger than bulkCommitSize because every chunk rewrites most pages
+    // of the status indexes, whatever its size, so fewer chunks write far less
+    private int settlementChunkSize = 50_000;
+    // Rows kept in the in-memory ChallanCache; 0 disables it
+    private int memoryCacheRows = 0;
+    // Group commit for single-row writes: at most this many per transaction, and at most this long
+    // waiting for a batch to fill while other writers are active
+    private int writeBatchSize = 256;
+    private long writeBatchDelayMillis = 2;
+    // Commit those batches with synchronous=FULL, so a completed write survives a power loss
+    private boolean durableWrites = true;
+    // Keep per-plate pending dues in an OutstandingIndex, built in the background after opening
+    private boolean outstandingIndex = false;
+    // Keep a PendingPlateFilter of plates with pending challans, so clear plates skip the database;
+    // rebuilt this often to forget plates that have been cleared since
+    private boolean pendingPlateFilter = false;
+    private double plateFilterFalsePositiveRate = 0.01;
+    private long plateFilterRebuildMinutes = 60;
+    // Flag plates issued this many challans within the window (RepeatOffenderDetector); 0 disables
+    private int repeatOffenderThreshold = 0;
+    private long repeatOffenderWindowMinutes = 24 * 60;
+    // Plates tracked at most; past it the least recently issued plate is forgotten
+    private int repeatOffenderMaxPlates = 1_000_000;
+    // Run PRAGMA optimize in the background after opening
+    private boolean optimizeOnOpen = true;
+    // Move PAID challans issued more than this many days ago to the monthly archive tables; 0 disables
+    private int archiveAfterDays = 0;
+    // How often the background archive job runs while the database is open
+    private long archiveIntervalMinutes = 360;
+    // How often a background job checks whether today's penalties have been accrued; 0 leaves
+    // Database.accruePenalties() to the caller
+    private long penaltyIntervalMinutes = 60;
+    // Change log retention, applied hourly: events older than this many days, and all but this many of
+    // the newest events, are dropped; 0 lifts either limit
+    private int eventRetentionDays = 30;
+    private long eventRetentionRows = 10_000_000;
+    // How often event subscribers look for changes committed by other processes; local commits wake them at once
+    private long eventPollMillis = 500;
+    // Register DatabaseMetrics with the platform MBean server
+    private boolean jmxEnabled = false;
+    // Serve DatabaseMetrics in Prometheus text format on this loopback port; 0 disables
+    private int metricsPort = 0;
+
+    public DatabaseConfig() {
+    }
+
+    public DatabaseConfig(String url) {
+        this.url = url;
+    }
+
+    // Getters
+    public String getUrl() { return url; }
+    public int getReaderCount() { return readerCount; }
+    public long getAcquireTimeoutMillis() { return acquireTimeoutMillis; }
+    public int getStatementCacheSize() { return statementCacheSize; }
+    public boolean isWalEnabled() { return walEnabled; }
+    public String getSynchronous() { return synchronous; }
+    public int getCacheSize() { return cacheSize; }
+    public long getMmapSize() { return mmapSize; }
+    public int getBusyTimeoutMillis() { return busyTimeoutMillis; }
+    public int getBulkCommitSize() { return bulkCommitSize; }
+    public int getSettlementChunkSize() { return settlementChunkSize; }
+    public int getMemoryCacheRows() { return memoryCacheRows; }
+    public int getWriteBatchSize() { return writeBatchSize; }
+    public long getWriteBatchDelayMillis() { return writeBatchDelayMillis; }
+    public boolean isDurableWrites() { return durableWrites; }
+    public boolean isOutstandingIndex() { return outstandingIndex; }
+    public boolean isPendingPlateFilter() { return pendingPlateFilter; }
+    public double getPlateFilterFalsePositiveRate() { return plateFilterFalsePositiveRate; }
+    public long getPlateFilterRebuildMinutes() { return plateFilterRebuildMinutes; }
+    public int getRepeatOffenderThreshold() { return repeatOffenderThreshold; }
+    public long getRepeatOffenderWindowMinutes() { return repeatOffenderWindowMinutes; }
+    public int getRepeatOffenderMaxPlates() { return repeatOffenderMaxPlates; }
+    public boolean isOptimizeOnOpen() { return optimizeOnOpen; }
+    public int getArchiveAfterDays() { return archiveAfterDays; }
+    public long getArchiveIntervalMinutes() { return archiveIntervalMinutes; }
+    public long getPenaltyIntervalMinutes() { return penaltyIntervalMinutes; }
+    public int getEventRetentionDays() { return eventRetentionDays; }
+    public long getEventRetentionRows() { return eventRetentionRows; }
+    public long getEventPollMillis() { return eventPollMillis; }
+    public boolean isJmxEnabled() { return jmxEnabled; }
+    public int getMetricsPort() { return metricsPort; }
+
+    // Setters
+    public DatabaseConfig setUrl(String url) { this.url = url; return this; }
+    public DatabaseConfig setReaderCount(int readerCount) {
+        if (readerCount < 1) throw new IllegalArgumentException("readerCount must be at least 1");
+        this.readerCount = readerCount;
+        return this;
+    }
+    public DatabaseConfig setAcquireTimeoutMillis(long acquireTimeoutMillis) { this.acquireTimeoutMillis = acquireTimeoutMillis; return this; }
+    public DatabaseConfig setStatementCacheSize(int statementCacheSize) { this.statementCacheSize = statementCacheSize; return this; }
+    public DatabaseConfig setWalEnabled(boolean walEnabled) { this.walEnabled = walEnabled; return this; }
+    public DatabaseConfig setSynchronous(String synchronous) {
+        switch (synchronous.toUpperCase()) {
+            case "OFF", "NORMAL", "FULL", "EXTRA" -> this.synchronous = synchronous.toUpperCase();
+            default -> throw new IllegalArgumentException("Unknown synchronous mode: " + synchronous);
+        }
+        return this;
+    }
+    public DatabaseConfig setCacheSize(int cacheSize) { this.cacheSize = cacheSize; return this; }
+    public DatabaseConfig setMmapSize(long mmapSize) { this.mmapSize = mmapSize; return this; }
+    public DatabaseConfig setBusyTimeoutMillis(int busyTimeoutMillis) { this.busyTimeoutMillis = busyTimeoutMillis; return this; }
+    public DatabaseConfig setBulkCommitSize(int bulkCommitSize) {
+        if (bulkCommitSize < 1) throw new IllegalArgumentException("bulkCommitSize must be at least 1");
+        this.bulkCommitSize = bulkCommitSize;
+        return this;
+    }
+    public DatabaseConfig setSettlementChunkSize(int settlementChunkSize) {
+        if (settlementChunkSize < 1) throw new IllegalArgumentException("settlementChunkSize must be at least 1");
+        this.settlementChunkSize = settlementChunkSize;
+        return this;
+    }
+    public DatabaseConfig setMemoryCacheRows(int memoryCacheRows) {
+        if (memoryCacheRows < 0) throw new IllegalArgumentException("memoryCacheRows must not be negative");
+        this.memoryCacheRows = memoryCacheRows;
+        return this;
+    }
+    public DatabaseConfig setWriteBatchSize(int writeBatchSize) {
+        if (writeBatchSize < 1) throw new IllegalArgumentException("writeBatchSize must be at least 1");
+        this.writeBatchSize = writeBatchSize;
+        return this;
+    }
+    public DatabaseConfig setWriteBatchDelayMillis(long writeBatchDelayMillis) {
+        if (writeBatchDelayMillis < 0) throw new IllegalArgumentException("writeBatchDelayMillis must not be negative");
+        this.writeBatchDelayMillis = writeBatchDelayMillis;
+        return this;
+    }
+    public DatabaseConfig setDurableWrites(boolean durableWrites) { this.durableWrites = durableWrites; return this; }
+    public DatabaseConfig setOutstandingIndex(boolean outstandingIndex) { this.outstandingIndex = outstandingIndex; return this; }
+    public DatabaseConfig setPendingPlateFilter(boolean pendingPlateFilter) { this.pendingPlateFilter = pendingPlateFilter; return this; }
+    public DatabaseConfig setPlateFilterFalsePositiveRate(double plateFilterFalsePositiveRate) {
+        if (!(plateFilterFalsePositiveRate > 0 && plateFilterFalsePositiveRate < 1)) {
+            throw new IllegalArgumentException("plateFilterFalsePositiveRate must be between 0 and 1");
+        }
+        this.plateFilterFalsePositiveRate = plateFilterFalsePositiveRate;
+        return this;
+    }
+    public DatabaseConfig setPlateFilterRebuildMinutes(long plateFilterRebuildMinutes) {
+        if (plateFilterRebuildMinutes < 1) throw new IllegalArgumentException("plateFilterRebuildMinutes must be at least 1");
+        this.plateFilterRebuildMinutes = plateFilterRebuildMinutes;
+        return this;
+    }
+    public DatabaseConfig setRepeatOffenderThreshold(int repeatOffenderThreshold) {
+        if (repeatOffenderThreshold < 0 || repeatOffenderThreshold == 1) {
+            throw new IllegalArgumentException("repeatOffenderThreshold must be 0 or at least 2");
+        }
+        this.repeatOffenderThreshold = repeatOffenderThreshold;
+        return this;
+    }
+    public DatabaseConfig setRepeatOffenderWindowMinutes(long repeatOffenderWindowMinutes) {
+        if (repeatOffenderWindowMinutes < 1) throw new IllegalArgumentException("repeatOffenderWindowMinutes must be at least 1");
+        this.repeatOffenderWindowMinutes = repeatOffenderWindowMinutes;
+        return this;
+    }
+    public DatabaseConfig setRepeatOffenderMaxPlates(int repeatOffenderMaxPlates) {
+        if (repeatOffenderMaxPlates < 1) throw new IllegalArgumentException("repeatOffenderMaxPlates must be at least 1");
+        this.repeatOffenderMaxPlates = repeatOffenderMaxPlates;
+        return this;
+    }
+    public DatabaseConfig setOptimizeOnOpen(boolean optimizeOnOpen) { this.optimizeOnOpen = optimizeOnOpen; return this; }
+    public DatabaseConfig setArchiveAfterDays(int archiveAfterDays) {
+        if (archiveAfterDays < 0) throw new IllegalArgumentException("archiveAfterDays must not be negative");
+        this.archiveAfterDays = archiveAfterDays;
+        return this;
+    }
+    public DatabaseConfig setArchiveIntervalMinutes(long archiveIntervalMinutes) {
+        if (archiveIntervalMinutes < 1) throw new IllegalArgumentException("archiveIntervalMinutes must be at least 1");
+        this.archiveIntervalMinutes = archiveIntervalMinutes;
+        return this;
+    }
+    public DatabaseConfig setPenaltyIntervalMinutes(long penaltyIntervalMinutes) {
+        if (penaltyIntervalMinutes < 0) throw new IllegalArgumentException("penaltyIntervalMinutes must not be negative");
+        this.penaltyIntervalMinutes = penaltyIntervalMinutes;
+        return this;
+    }
+    public DatabaseConfig setEventRetentionDays(int eventRetentionDays) {
+        if (eventRetentionDays < 0) throw new IllegalArgumentException("eventRetentionDays must not be negative");
+        this.eventRetentionDays = eventRetentionDays;
+        return this;
+    }
+    public DatabaseConfig setEventRetentionRows(long eventRetentionRows) {
+        if (eventRetentionRows < 0) throw new IllegalArgumentException("eventRetentionRows must not be negative");
+        this.eventRetentionRows = eventRetentionRows;
+        return this;
+    }
+    public DatabaseConfig setEventPollMillis(long eventPollMillis) {
+        if (eventPollMillis < 1) throw new IllegalArgumentException("eventPollMillis must be at least 1");
+        this.eventPollMillis = eventPollMillis;
+        return this;
+    }
+    public DatabaseConfig setJmxEnabled(boolean jmxEnabled) { this.jmxEnabled = jmxEnabled; return this; }
+    public DatabaseConfig setMetricsPort(int metricsPort) {
+        if (metricsPort < 0 || metricsPort > 65535) throw new IllegalArgumentException("metricsPort must be between 0 and 65535");
+        this.metricsPort = metricsPort;
+        return this;
+    }
+}
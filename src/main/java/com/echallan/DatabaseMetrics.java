@@ -0,0 +1,226 @@
+package com.echallan;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-operation latency, row and error counts for one {@link Database}. Every public read and write path
+ * records into a fixed {@link LatencyHistogram} and two {@link LongAdder}s per {@link Operation}, so
+ * recording allocates nothing and takes no lock. Single-row writes are timed from submission to commit,
+ * which includes the time spent queued for a group commit.
+ *
+ * <p>Read it through {@link #stats()}, JMX ({@link DatabaseMetricsMXBean}) or the Prometheus text format
+ * of {@link #toPrometheus()}, which {@link ChallanServer} serves at {@code /metrics} and
+ * {@link DatabaseConfig#setMetricsPort(int)} serves for a local database.
+ */
+public final class DatabaseMetrics implements DatabaseMetricsMXBean {
+    public enum Operation {
+        ADD_CHALLAN, PAY_CHALLAN, DELETE_CHALLAN,
+        // One group commit of single-row writes; rows is the batch size
+        WRITE_BATCH,
+        ADD_CHALLANS, ARCHIVE_PAID,
+        // rows is the number of challans newly marked PAID
+        SETTLE_PAYMENTS,
+        // rows is the number of challans whose stored penalty changed
+        ACCRUE_PENALTIES,
+        SEARCH_BY_VEHICLE, SEARCH_ARCHIVE, GET_OUTSTANDING,
+        // Plate lookups and the full list; rows is the number of flags returned
+        GET_REPEAT_OFFENDERS,
+        // getAllChallans, getPendingChallans, getOverdueChallans and forEachChallan
+        LIST_CHALLANS,
+        GET_CHALLANS_PAGE, GET_CHALLANS, GET_SUMMARY, GET_STATISTICS,
+        // rows is the number of challans the report covered
+        GET_REPORT,
+        // Change log pages, including each poll of a waiting subscriber; rows is the number of events
+        READ_EVENTS,
+        // rows is the number of events retention dropped
+        COMPACT_EVENTS;
+
+        private final String metricName = name().toLowerCase();
+
+        public String metricName() { return metricName; }
+    }
+
+    /** One operation's figures at the time of {@link #stats()}; latencies in nanoseconds. */
+    public record OperationStats(Operation operation, long count, long errors, long rows, double meanNanos,
+                                 long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] rows = new LongAdder[OPERATIONS.length];
+    private final LongAdder[] errors = new LongAdder[OPERATIONS.length];
+
+    DatabaseMetrics() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latency[i] = new LatencyHistogram();
+            rows[i] = new LongAdder();
+            errors[i] = new LongAdder();
+        }
+    }
+
+    /** Records one call that started at {@code startNanos} ({@link System#nanoTime()}) and returned {@code rowCount} rows. */
+    void record(Operation operation, long startNanos, long rowCount) {
+        int i = operation.ordinal();
+        latency[i].record(System.nanoTime() - startNanos);
+        if (rowCount != 0) rows[i].add(rowCount);
+    }
+
+    /** Counts a failed call; its latency is recorded separately by {@link #record}. */
+    void recordError(Operation operation) {
+        errors[operation.ordinal()].increment();
+    }
+
+    public OperationStats stats(Operation operation) {
+        int i = operation.ordinal();
+        LatencyHistogram.Snapshot s = latency[i].snapshot();
+        return new OperationStats(operation, s.count(), errors[i].sum(), rows[i].sum(), s.meanNanos(),
+                s.valueAtPercentile(50), s.valueAtPercentile(90), s.valueAtPercentile(99),
+                s.valueAtPercentile(99.9), s.maxNanos());
+    }
+
+    /** Figures for every operation that has been called at least once, in {@link Operation} order. */
+    public List<OperationStats> stats() {
+        List<OperationStats> result = new ArrayList<>();
+        for (Operation operation : OPERATIONS) {
+            OperationStats stats = stats(operation);
+            if (stats.count() > 0 || stats.errors() > 0) {
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Prometheus text exposition format: a latency summary (p50, p90, p99, p99.9 in seconds) plus row and
+     * error counters, labelled by operation.
+     */
+    public String toPrometheus() {
+        List<OperationStats> all = stats();
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("# HELP echallan_operation_duration_seconds Latency of Database operations.\n")
+                .append("# TYPE echallan_operation_duration_seconds summary\n");
+        for (OperationStats s : all) {
+            String label = "operation=\"" + s.operation().metricName() + "\"";
+            quantile(sb, label, "0.5", s.p50Nanos());
+            quantile(sb, label, "0.9", s.p90Nanos());
+            quantile(sb, label, "0.99", s.p99Nanos());
+            quantile(sb, label, "0.999", s.p999Nanos());
+            sb.append("echallan_operation_duration_seconds_sum{").append(label).append("} ")
+                    .append(s.meanNanos() * s.count() / 1e9).append('\n');
+            sb.append("echallan_operation_duration_seconds_count{").append(label).append("} ").append(s.count()).append('\n');
+        }
+        counter(sb, all, "echallan_operation_rows_total", "Rows returned or written by Database operations.", OperationStats::rows);
+        counter(sb, all, "echallan_operation_errors_total", "Database operations that failed.", OperationStats::errors);
+        sb.append("# HELP echallan_log_dropped_total Log messages dropped because the log queue was full.\n")
+                .append("# TYPE echallan_log_dropped_total counter\n")
+                .append("echallan_log_dropped_total ").append(Log.getDroppedCount()).append('\n');
+        return sb.toString();
+    }
+
+    private static void quantile(StringBuilder sb, String label, String quantile, long nanos) {
+        sb.append("echallan_operation_duration_seconds{").append(label).append(",quantile=\"").append(quantile)
+                .append("\"} ").append(nanos / 1e9).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, List<OperationStats> all, String name, String help,
+                                ToLongFunction<OperationStats> value) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(" counter\n");
+        for (OperationStats s : all) {
+            sb.append(name).append("{operation=\"").append(s.operation().metricName()).append("\"} ")
+                    .append(value.applyAsLong(s)).append('\n');
+        }
+    }
+
+    /**
+     * Serves {@link #toPrometheus()} at {@code /metrics} on the loopback interface. The caller stops the
+     * returned server.
+     */
+    HttpServer serve(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", handler());
+        server.start();
+        Log.info("Serving metrics on http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort() + "/metrics");
+        return server;
+    }
+
+    /** Answers any request with {@link #toPrometheus()}. */
+    HttpHandler handler() {
+        return exchange -> {
+            byte[] body = toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        };
+    }
+
+    // DatabaseMetricsMXBean
+
+    @Override
+    public Map<String, Long> getCounts() { return longs(OperationStats::count); }
+
+    @Override
+    public Map<String, Long> getErrors() { return longs(OperationStats::errors); }
+
+    @Override
+    public Map<String, Long> getRows() { return longs(OperationStats::rows); }
+
+    @Override
+    public Map<String, Double> getMeanMillis() { return millis(OperationStats::meanNanos); }
+
+    @Override
+    public Map<String, Double> getP50Millis() { return millis(s -> s.p50Nanos()); }
+
+    @Override
+    public Map<String, Double> getP99Millis() { return millis(s -> s.p99Nanos()); }
+
+    @Override
+    public Map<String, Double> getMaxMillis() { return millis(s -> s.maxNanos()); }
+
+    @Override
+    public long getDroppedLogMessages() { return Log.getDroppedCount(); }
+
+    /** Clears every histogram and counter. */
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latency[i].reset();
+            rows[i].reset();
+            errors[i].reset();
+        }
+    }
+
+    private Map<String, Long> longs(ToLongFunction<OperationStats> value) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (OperationStats s : stats()) {
+            result.put(s.operation().metricName(), value.applyAsLong(s));
+        }
+        return result;
+    }
+
+    private Map<String, Double> millis(ToDoubleFunction<OperationStats> nanos) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (OperationStats s : stats()) {
+            result.put(s.operation().metricName(), nanos.applyAsDouble(s) / 1e6);
+        }
+        return result;
+    }
+}
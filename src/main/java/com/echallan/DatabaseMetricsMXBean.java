@@ -0,0 +1,28 @@
+package com.echallan;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link DatabaseMetrics}, registered as {@code com.echallan:type=Database,name=<url>} when
+ * {@link DatabaseConfig#isJmxEnabled()} is set. Each map is keyed by operation name; latencies are in
+ * milliseconds.
+ */
+public interface DatabaseMetricsMXBean {
+    Map<String, Long> getCounts();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Long> getRows();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP50Millis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    long getDroppedLogMessages();
+
+    void reset();
+}
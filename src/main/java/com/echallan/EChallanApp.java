@@ -1,40 +1,70 @@
 package com.echallan;
 
 import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class EChallanApp extends JFrame {
-    private Database database;
+    private static final Color OVERDUE_ROW = new Color(255, 228, 228);
+    private static final String ANY_VIOLATION = "All Violations";
+
+    // A local Database, or a RemoteChallanStore when -Dechallan.server=http://host:port is set
+    private ChallanStore store;
+    private ChallanService service;
+    // Unique across terminals as long as each uses its own node ID (see SnowflakeIdGenerator.nodeIdFromEnvironment)
+    private final IdGenerator idGenerator = new SnowflakeIdGenerator(SnowflakeIdGenerator.nodeIdFromEnvironment());
     private JTextField vehicleField, violationField, fineField, searchField, locationField;
-    private JTextArea displayArea;
-    private JLabel statsLabel;
+    private JTable challanTable;
+    private ChallanTableModel tableModel;
+    private JPanel displayPanel;
+    private String currentTitle = "All Challans";
+    private JLabel statsLabel, footerLabel;
+    private JProgressBar progressBar;
+    private int runningTasks;
     private String[] commonViolations = {
             "Over Speeding", "Signal Jump", "Wrong Lane", "No Helmet", "Mobile Usage",
             "No Seat Belt", "Parking Violation", "Document Missing"
     };
     private double[] fineAmounts = {1500, 1000, 500, 1000, 1000, 500, 300, 200};
-    private JComboBox<String> violationCombo;
-    private JButton issueButton, searchButton, viewAllButton, payButton,
+    private JComboBox<String> violationCombo, violationFilterCombo;
+    private JButton issueButton, searchButton, archiveButton, duesButton, offendersButton, viewAllButton, payButton,
             pendingButton, overdueButton, statsButton, deleteButton;
-    private List<Challan> currentChallans;
+
+    private record Listing(ChallanSummary summary, List<Challan> firstBlock) {
+    }
 
     public EChallanApp() {
         try {
-            database = new Database();
-            if (database.testConnection()) {
-                System.out.println("Database initialized successfully");
+            String serverUrl = System.getProperty("echallan.server");
+            if (serverUrl != null && !serverUrl.isBlank()) {
+                store = new RemoteChallanStore(serverUrl.trim());
+            } else {
+                // The desk keeps the app open all day, so serve its views from memory; settled challans
+                // older than a year move to the archive, reachable through Search Archive. Check Dues reads
+                // the in-memory dues index, and issuing warns about plates with 3 challans in 24 hours.
+                store = new Database(new DatabaseConfig().setMemoryCacheRows(2_000_000).setArchiveAfterDays(365)
+                        .setOutstandingIndex(true).setRepeatOffenderThreshold(3).setJmxEnabled(true));
+            }
+            service = new ChallanService(store);
+            if (store.testConnection()) {
+                Log.info("Database initialized successfully");
             } else {
-                System.err.println("Database connection failed");
+                Log.error("Database connection failed");
                 JOptionPane.showMessageDialog(null,
                         "Database connection failed! Please check your SQLite setup.",
                         "Database Error", JOptionPane.ERROR_MESSAGE);
             }
         } catch (Exception e) {
-            System.err.println("Error initializing database:");
-            e.printStackTrace();
+            Log.error("Error initializing database", e);
             JOptionPane.showMessageDialog(null,
                     "Failed to initialize database: " + e.getMessage(),
                     "Database Error", JOptionPane.ERROR_MESSAGE);
@@ -47,6 +77,17 @@ public class EChallanApp extends JFrame {
     private void setupGUI() {
         setTitle("Enhanced E-Challan System v2.0");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (service != null) {
+                    service.close();
+                }
+                if (store != null) {
+                    store.close();
+                }
+            }
+        });
         setSize(1000, 600);
         setLocationRelativeTo(null);
 
@@ -135,10 +176,30 @@ public class EChallanApp extends JFrame {
         searchButton.addActionListener(this::searchChallans);
         searchPanel.add(searchButton);
 
+        archiveButton = new JButton("Search Archive");
+        archiveButton.addActionListener(this::searchArchive);
+        searchPanel.add(archiveButton);
+
+        duesButton = new JButton("Check Dues");
+        duesButton.addActionListener(this::checkDues);
+        searchPanel.add(duesButton);
+
+        offendersButton = new JButton("Repeat Offenders");
+        offendersButton.addActionListener(this::showRepeatOffenders);
+        searchPanel.add(offendersButton);
+
         viewAllButton = new JButton("View All");
         viewAllButton.addActionListener(this::viewAllChallans);
         searchPanel.add(viewAllButton);
 
+        // Narrows whichever listing is shown; applied in SQL like the other filters
+        String[] violationChoices = new String[commonViolations.length + 1];
+        violationChoices[0] = ANY_VIOLATION;
+        System.arraycopy(commonViolations, 0, violationChoices, 1, commonViolations.length);
+        violationFilterCombo = new JComboBox<>(violationChoices);
+        violationFilterCombo.addActionListener(e -> showListing(tableModel.getFilter(), tableModel.getSort(), currentTitle));
+        searchPanel.add(violationFilterCombo);
+
         // Action panel
         JPanel actionPanel = new JPanel(new FlowLayout());
         actionPanel.setBorder(BorderFactory.createTitledBorder("Actions"));
@@ -195,26 +256,75 @@ public class EChallanApp extends JFrame {
         statsLabel.setFont(new Font("Arial", Font.BOLD, 12));
         panel.add(statsLabel);
 
+        // Shown while any database call is in flight
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        panel.add(progressBar);
+
         return panel;
     }
 
     private JPanel createDisplayPanel() {
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.setBorder(BorderFactory.createTitledBorder("Challan Details"));
+        displayPanel = new JPanel(new BorderLayout());
+        displayPanel.setBorder(BorderFactory.createTitledBorder("Challan Details"));
+
+        // Only the rows being painted are fetched, a block at a time
+        tableModel = new ChallanTableModel(this::loadBlock);
+        challanTable = new JTable(tableModel);
+        challanTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        challanTable.setFillsViewportHeight(true);
+        challanTable.setPreferredScrollableViewportSize(new Dimension(960, 15 * challanTable.getRowHeight()));
+        ChallanCellRenderer renderer = new ChallanCellRenderer();
+        challanTable.setDefaultRenderer(Object.class, renderer);
+        challanTable.setDefaultRenderer(Double.class, renderer);
+        challanTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                updateFooter();
+            }
+        });
+        // Clicking a header re-sorts in SQL; clicking it again reverses the direction
+        challanTable.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = challanTable.convertColumnIndexToModel(challanTable.columnAtPoint(e.getPoint()));
+                ChallanSort.Column key = column >= 0 ? tableModel.sortColumn(column) : null;
+                if (key == null) {
+                    return;
+                }
+                ChallanSort current = tableModel.getSort();
+                ChallanSort sort = current.column() == key ? current.reversed()
+                        : new ChallanSort(key, key == ChallanSort.Column.ISSUE_DATE);
+                showListing(tableModel.getFilter(), sort, currentTitle);
+            }
+        });
+        displayPanel.add(new JScrollPane(challanTable), BorderLayout.CENTER);
 
-        displayArea = new JTextArea(15, 60);
-        displayArea.setFont(new Font("Monospaced", Font.PLAIN, 11));
-        displayArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(displayArea);
-        panel.add(scrollPane, BorderLayout.CENTER);
+        footerLabel = new JLabel(" ");
+        displayPanel.add(footerLabel, BorderLayout.SOUTH);
 
-        return panel;
+        return displayPanel;
+    }
+
+    /** Placeholder text for rows still loading, two-decimal amounts, and a tint for overdue challans. */
+    private class ChallanCellRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            Challan challan = tableModel.getChallan(row);
+            Object text = challan == null ? "…" : value instanceof Double amount ? Challan.formatAmount(amount) : value;
+            super.getTableCellRendererComponent(table, text, isSelected, hasFocus, row, column);
+            setHorizontalAlignment(value instanceof Double ? RIGHT : LEFT);
+            if (!isSelected) {
+                setBackground(challan != null && challan.isOverdue() ? OVERDUE_ROW : table.getBackground());
+                setForeground(challan == null ? Color.GRAY : table.getForeground());
+            }
+            return this;
+        }
     }
 
     // Event handlers
     private void issueChallan(ActionEvent e) {
-        System.out.println("=== Issue Challan Button Clicked ===");
-
         String vehicle = vehicleField.getText().trim().toUpperCase();
         String violation = (String) violationCombo.getSelectedItem();
         String fineText = fineField.getText().trim();
@@ -227,25 +337,37 @@ public class EChallanApp extends JFrame {
 
         try {
             double fine = Double.parseDouble(fineText);
-            String challanId = "CH" + System.currentTimeMillis();
+            String challanId = idGenerator.nextId();
 
             Challan challan = new Challan(challanId, vehicle, violation, fine, location);
 
-            boolean success = database.addChallan(challan);
-
-            if (success) {
-                JOptionPane.showMessageDialog(this,
-                        "Challan issued successfully!\nChallan ID: " + challanId +
-                                "\nDue Date: " + challan.getDueDate(),
-                        "Success", JOptionPane.INFORMATION_MESSAGE);
-                clearIssueFields();
-                updateStatistics();
-                viewAllChallans(e);
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "Failed to issue challan! Check console for details.",
-                        "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            // Prevent a double click from issuing the same challan twice while the insert runs
+            issueButton.setEnabled(false);
+            runAsync(service.addChallan(challan), success -> {
+                issueButton.setEnabled(true);
+                if (success) {
+                    // The flag already counts this challan: detection runs as the insert commits
+                    runAsync(service.getRepeatOffender(vehicle), offender -> {
+                        String message = "Challan issued successfully!\nChallan ID: " + challanId +
+                                "\nDue Date: " + challan.getDueDate();
+                        if (offender != null) {
+                            JOptionPane.showMessageDialog(this, message + "\n\nREPEAT OFFENDER: " +
+                                            offender.violations() + " challans since " +
+                                            offender.firstIssuedAt().format(Challan.ISSUE_DATE_FORMAT),
+                                    "Repeat Offender", JOptionPane.WARNING_MESSAGE);
+                        } else {
+                            JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    });
+                    clearIssueFields();
+                    updateStatistics();
+                    viewAllChallans(e);
+                } else {
+                    JOptionPane.showMessageDialog(this,
+                            "Failed to issue challan! Check console for details.",
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }, () -> issueButton.setEnabled(true));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid fine amount!");
         }
@@ -258,177 +380,340 @@ public class EChallanApp extends JFrame {
             return;
         }
 
-        currentChallans = database.searchByVehicle(vehicle);
-        displayChallans(currentChallans, "Search Results for: " + vehicle);
+        showListing(ChallanFilter.vehicle(vehicle), "Search Results for: " + vehicle);
+    }
+
+    // Archived challans are settled and read-only, so they open in their own window rather than the listing
+    private void searchArchive(ActionEvent e) {
+        String vehicle = searchField.getText().trim().toUpperCase();
+        if (vehicle.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter vehicle number!");
+            return;
+        }
+
+        archiveButton.setEnabled(false);
+        runAsync(service.searchArchivedByVehicle(vehicle, SearchMode.SUBSTRING), challans -> {
+            archiveButton.setEnabled(true);
+            if (challans.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No archived challans for: " + vehicle);
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new Object[]{
+                    "Challan ID", "Vehicle", "Violation", "Fine (₹)", "Status", "Issue Date", "Due Date", "Location"}, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            for (Challan c : challans) {
+                model.addRow(new Object[]{c.getChallanId(), c.getVehicleNumber(), c.getViolation(), c.getFine(),
+                        c.getStatus(), c.getIssueDate(), c.getDueDate(), c.getLocation()});
+            }
+            JScrollPane scrollPane = new JScrollPane(new JTable(model));
+            scrollPane.setPreferredSize(new Dimension(900, 300));
+            JOptionPane.showMessageDialog(this, scrollPane,
+                    "Archived Challans for: " + vehicle + " (" + challans.size() + ")", JOptionPane.PLAIN_MESSAGE);
+        }, () -> archiveButton.setEnabled(true));
+    }
+
+    private void checkDues(ActionEvent e) {
+        String vehicle = searchField.getText().trim().toUpperCase();
+        if (vehicle.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please enter vehicle number!");
+            return;
+        }
+
+        duesButton.setEnabled(false);
+        runAsync(service.getOutstanding(vehicle), dues -> {
+            duesButton.setEnabled(true);
+            if (dues.isClear()) {
+                JOptionPane.showMessageDialog(this, "No pending challans for: " + vehicle);
+                return;
+            }
+            LocalDate due = dues.earliestDueDate();
+            JOptionPane.showMessageDialog(this,
+                    "Vehicle: " + vehicle + "\n" +
+                    "Pending Challans: " + dues.pendingCount() + "\n" +
+                    "Pending Fines: ₹" + Challan.formatAmount(dues.pendingFine()) + "\n" +
+                    "Earliest Due Date: " + (due != null ? due.format(Challan.DUE_DATE_FORMAT) : "-") +
+                    (dues.isOverdue(Challan.today()) ? " (OVERDUE)" : ""),
+                    "Outstanding Dues", dues.isOverdue(Challan.today())
+                            ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+        }, () -> duesButton.setEnabled(true));
+    }
+
+    private void showRepeatOffenders(ActionEvent e) {
+        offendersButton.setEnabled(false);
+        runAsync(service.getRepeatOffenders(), offenders -> {
+            offendersButton.setEnabled(true);
+            if (offenders.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "No repeat offenders right now.");
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new Object[]{
+                    "Vehicle", "Challans", "First Issued", "Last Issued"}, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            for (RepeatOffender offender : offenders) {
+                model.addRow(new Object[]{offender.vehicleKey(), offender.violations(),
+                        offender.firstIssuedAt().format(Challan.ISSUE_DATE_FORMAT),
+                        offender.lastIssuedAt().format(Challan.ISSUE_DATE_FORMAT)});
+            }
+            JScrollPane scrollPane = new JScrollPane(new JTable(model));
+            scrollPane.setPreferredSize(new Dimension(600, 300));
+            JOptionPane.showMessageDialog(this, scrollPane,
+                    "Repeat Offenders (" + offenders.size() + ")", JOptionPane.PLAIN_MESSAGE);
+        }, () -> offendersButton.setEnabled(true));
     }
 
     private void viewAllChallans(ActionEvent e) {
-        currentChallans = database.getAllChallans();
-        displayChallans(currentChallans, "All Challans");
+        showListing(ChallanFilter.all(), "All Challans");
     }
 
     private void viewPendingChallans(ActionEvent e) {
-        currentChallans = database.getPendingChallans();
-        displayChallans(currentChallans, "Pending Challans");
+        showListing(ChallanFilter.pending(), "Pending Challans");
     }
 
     private void viewOverdueChallans(ActionEvent e) {
-        currentChallans = database.getOverdueChallans();
-        displayChallans(currentChallans, "Overdue Challans (with Penalty)");
+        showListing(ChallanFilter.overdue(Challan.today()), "Overdue Challans (with Penalty)");
     }
 
     private void payChallan(ActionEvent e) {
-        if (currentChallans == null || currentChallans.isEmpty()) {
-            JOptionPane.showMessageDialog(this,
-                    "No challans loaded! Please use 'View All' or 'Search' to load challans first.",
-                    "No Challans", JOptionPane.INFORMATION_MESSAGE);
+        List<Challan> selected = selectedChallans();
+        if (selected == null) {
             return;
         }
-
-        // Show available challans for payment
-        StringBuilder availableChallans = new StringBuilder();
-        availableChallans.append("Available Challans for Payment:\n\n");
-        boolean hasPendingChallans = false;
-
-        for (Challan c : currentChallans) {
+        List<Challan> pending = new ArrayList<>();
+        for (Challan c : selected) {
             if ("PENDING".equals(c.getStatus())) {
-                availableChallans.append("ID: ").append(c.getChallanId())
-                        .append(" | Vehicle: ").append(c.getVehicleNumber())
-                        .append(" | Amount: ₹").append(String.format("%.2f", c.getTotalAmount()))
-                        .append("\n");
-                hasPendingChallans = true;
+                pending.add(c);
             }
         }
-
-        if (!hasPendingChallans) {
-            JOptionPane.showMessageDialog(this, "No pending challans available for payment!");
+        if (pending.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "None of the selected challans are pending payment!");
             return;
         }
 
-        String challanId = JOptionPane.showInputDialog(this,
-                availableChallans.toString() + "\nEnter Challan ID to pay:");
-
-        if (challanId != null && !challanId.trim().isEmpty()) {
-            // Find the challan to show payment details
-            Challan challanToPay = null;
-            for (Challan c : currentChallans) {
-                if (c.getChallanId().equals(challanId.trim())) {
-                    challanToPay = c;
-                    break;
-                }
-            }
+        double fine = 0;
+        double penalty = 0;
+        List<String> challanIds = new ArrayList<>(pending.size());
+        for (Challan c : pending) {
+            fine += c.getFine();
+            penalty += c.getPenaltyAmount();
+            challanIds.add(c.getChallanId());
+        }
+        double totalAmount = fine + penalty;
 
-            if (challanToPay != null && "PENDING".equals(challanToPay.getStatus())) {
-                double totalAmount = challanToPay.getTotalAmount();
-                int confirm = JOptionPane.showConfirmDialog(this,
-                        "Payment Details:\n" +
-                                "Challan ID: " + challanToPay.getChallanId() + "\n" +
-                                "Vehicle: " + challanToPay.getVehicleNumber() + "\n" +
-                                "Fine: ₹" + challanToPay.getFine() + "\n" +
-                                "Penalty: ₹" + String.format("%.2f", challanToPay.getPenaltyAmount()) + "\n" +
-                                "Total Amount: ₹" + String.format("%.2f", totalAmount) + "\n\n" +
-                                "Proceed with payment?",
-                        "Confirm Payment", JOptionPane.YES_NO_OPTION);
-
-                if (confirm == JOptionPane.YES_OPTION) {
-                    if (database.payChallan(challanId.trim())) {
-                        JOptionPane.showMessageDialog(this,
-                                "Payment successful!\nAmount Paid: ₹" + String.format("%.2f", totalAmount));
-                        updateStatistics();
-                        viewAllChallans(e);
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Payment failed!");
-                    }
+        String details;
+        if (pending.size() == 1) {
+            Challan challanToPay = pending.get(0);
+            details = "Challan ID: " + challanToPay.getChallanId() + "\n" +
+                    "Vehicle: " + challanToPay.getVehicleNumber() + "\n";
+        } else {
+            details = "Challans: " + pending.size() +
+                    (pending.size() < selected.size() ? " (" + (selected.size() - pending.size()) + " already paid skipped)" : "") + "\n";
+        }
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Payment Details:\n" + details +
+                        "Fine: ₹" + Challan.formatAmount(fine) + "\n" +
+                        "Penalty: ₹" + Challan.formatAmount(penalty) + "\n" +
+                        "Total Amount: ₹" + Challan.formatAmount(totalAmount) + "\n\n" +
+                        "Proceed with payment?",
+                "Confirm Payment", JOptionPane.YES_NO_OPTION);
+
+        if (confirm == JOptionPane.YES_OPTION) {
+            runAsync(service.payChallans(challanIds), paid -> {
+                if (paid == challanIds.size()) {
+                    JOptionPane.showMessageDialog(this,
+                            "Payment successful!\nAmount Paid: ₹" + Challan.formatAmount(totalAmount));
+                } else if (paid > 0) {
+                    JOptionPane.showMessageDialog(this, "Paid " + paid + " of " + challanIds.size()
+                            + " challans. Check console for details.");
+                } else {
+                    JOptionPane.showMessageDialog(this, "Payment failed!");
                 }
-            } else {
-                JOptionPane.showMessageDialog(this, "Challan not found or already paid!");
-            }
+                updateStatistics();
+                refreshListing();
+            });
         }
     }
 
     private void deleteChallan(ActionEvent e) {
-        if (currentChallans == null || currentChallans.isEmpty()) {
-            JOptionPane.showMessageDialog(this,
-                    "No challans loaded! Please use 'View All' or 'Search' to load challans first.",
-                    "No Challans", JOptionPane.INFORMATION_MESSAGE);
+        List<Challan> selected = selectedChallans();
+        if (selected == null) {
             return;
         }
 
-        // Show available challans for deletion
-        StringBuilder availableChallans = new StringBuilder();
-        availableChallans.append("Available Challans:\n\n");
-
-        for (Challan c : currentChallans) {
-            availableChallans.append("ID: ").append(c.getChallanId())
-                    .append(" | Vehicle: ").append(c.getVehicleNumber())
-                    .append(" | Status: ").append(c.getStatus())
-                    .append("\n");
+        StringBuilder summary = new StringBuilder();
+        List<String> challanIds = new ArrayList<>(selected.size());
+        for (Challan c : selected) {
+            if (challanIds.size() < 10) {
+                summary.append("ID: ").append(c.getChallanId())
+                        .append(" | Vehicle: ").append(c.getVehicleNumber())
+                        .append(" | Status: ").append(c.getStatus())
+                        .append("\n");
+            }
+            challanIds.add(c.getChallanId());
+        }
+        if (challanIds.size() > 10) {
+            summary.append("... and ").append(challanIds.size() - 10).append(" more\n");
         }
 
-        String challanId = JOptionPane.showInputDialog(this,
-                availableChallans.toString() + "\nEnter Challan ID to delete:\n(Warning: This action cannot be undone!)");
-
-        if (challanId != null && !challanId.trim().isEmpty()) {
-            int confirm = JOptionPane.showConfirmDialog(this,
-                    "Are you sure you want to delete challan: " + challanId.trim() + "?",
-                    "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Are you sure you want to delete " + (challanIds.size() == 1 ? "this challan" : "these " + challanIds.size() + " challans")
+                        + "?\n\n" + summary + "\n(Warning: This action cannot be undone!)",
+                "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
-            if (confirm == JOptionPane.YES_OPTION) {
-                if (database.deleteChallan(challanId.trim())) {
-                    JOptionPane.showMessageDialog(this, "Challan deleted successfully!");
-                    updateStatistics();
-                    viewAllChallans(e);
+        if (confirm == JOptionPane.YES_OPTION) {
+            runAsync(service.deleteChallans(challanIds), deleted -> {
+                if (deleted > 0) {
+                    JOptionPane.showMessageDialog(this, deleted == 1 ? "Challan deleted successfully!" : deleted + " challans deleted successfully!");
                 } else {
                     JOptionPane.showMessageDialog(this, "Challan not found!");
                 }
-            }
+                updateStatistics();
+                refreshListing();
+            });
         }
     }
 
-    private void displayChallans(List<Challan> challans, String title) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(title).append("\n");
-        sb.append("=".repeat(80)).append("\n\n");
-
-        if (challans.isEmpty()) {
-            sb.append("No challans found.\n");
-        } else {
-            for (Challan challan : challans) {
-                sb.append(challan.toString()).append("\n");
-                sb.append("-".repeat(80)).append("\n");
+    /** The selected challans, or null after telling the user why there are none to act on. */
+    private List<Challan> selectedChallans() {
+        int[] rows = challanTable.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(this,
+                    "No challans selected! Select one or more rows in the table first.",
+                    "No Challans", JOptionPane.INFORMATION_MESSAGE);
+            return null;
+        }
+        List<Challan> selected = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            Challan challan = tableModel.getChallan(challanTable.convertRowIndexToModel(row));
+            if (challan == null) {
+                JOptionPane.showMessageDialog(this, "Some selected rows are still loading. Please try again in a moment.");
+                return null;
             }
+            selected.add(challan);
         }
-        sb.append("\nTotal Challans: ").append(challans.size());
+        return selected;
+    }
 
-        // Calculate totals for current view
-        double totalFines = challans.stream().mapToDouble(Challan::getFine).sum();
-        double totalPenalties = challans.stream().mapToDouble(Challan::getPenaltyAmount).sum();
-        long overdueCount = challans.stream().filter(Challan::isOverdue).count();
+    private void showListing(ChallanFilter filter, String title) {
+        showListing(filter, tableModel.getSort(), title);
+    }
+
+    /**
+     * Replaces the table with a new listing. The summary behind the row count and footer and the first
+     * block are fetched together; further blocks load as they scroll into view.
+     */
+    private void showListing(ChallanFilter filter, ChallanSort sort, String title) {
+        String violation = (String) violationFilterCombo.getSelectedItem();
+        ChallanFilter narrowed = filter.withViolation(ANY_VIOLATION.equals(violation) ? null : violation);
+        // Replaces any listing still in flight
+        runAsync(service.submitLatest("listing", () -> new Listing(store.getSummary(narrowed),
+                        store.getChallans(narrowed, sort, 0, ChallanTableModel.BLOCK_SIZE))),
+                listing -> {
+                    currentTitle = title;
+                    ((TitledBorder) displayPanel.getBorder()).setTitle(title);
+                    displayPanel.repaint();
+                    challanTable.clearSelection();
+                    tableModel.reset(narrowed, sort, listing.summary(), listing.firstBlock());
+                    for (int i = 0; i < challanTable.getColumnCount(); i++) {
+                        challanTable.getColumnModel().getColumn(i)
+                                .setHeaderValue(tableModel.getColumnName(challanTable.convertColumnIndexToModel(i)));
+                    }
+                    challanTable.getTableHeader().repaint();
+                    challanTable.scrollRectToVisible(new Rectangle(0, 0, 1, 1));
+                    updateFooter();
+                });
+    }
 
-        sb.append(" | Total Fine Amount: ₹").append(String.format("%.2f", totalFines));
-        if (totalPenalties > 0) {
-            sb.append(" | Total Penalties: ₹").append(String.format("%.2f", totalPenalties));
+    private void refreshListing() {
+        showListing(tableModel.getFilter(), tableModel.getSort(), currentTitle);
+    }
+
+    // Called by the table model while painting rows whose block is not loaded
+    private void loadBlock(int generation, int block) {
+        ChallanFilter filter = tableModel.getFilter();
+        ChallanSort sort = tableModel.getSort();
+        // Scrolling on from a loaded block continues its keyset cursor instead of skipping rows with OFFSET
+        ChallanPage.Cursor cursor = tableModel.cursorBefore(block);
+        CompletableFuture<List<Challan>> rows = cursor != null
+                ? service.getChallansPage(filter, cursor, ChallanTableModel.BLOCK_SIZE).thenApply(ChallanPage::challans)
+                : service.getChallans(filter, sort, block * ChallanTableModel.BLOCK_SIZE, ChallanTableModel.BLOCK_SIZE);
+        runAsync(rows, loaded -> tableModel.putBlock(generation, block, loaded),
+                () -> tableModel.blockFailed(generation, block));
+    }
+
+    private void updateFooter() {
+        // Totals come from the listing's aggregate query, not from the rows that happen to be loaded
+        ChallanSummary summary = tableModel.getSummary();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Total Challans: ").append(summary.count());
+        sb.append(" | Total Fine Amount: ₹").append(Challan.formatAmount(summary.totalFine()));
+        if (summary.totalPenalty() > 0) {
+            sb.append(" | Total Penalties: ₹").append(Challan.formatAmount(summary.totalPenalty()));
         }
-        if (overdueCount > 0) {
-            sb.append(" | Overdue: ").append(overdueCount);
+        if (summary.overdueCount() > 0) {
+            sb.append(" | Overdue: ").append(summary.overdueCount());
+        }
+        int[] selected = challanTable.getSelectedRows();
+        if (selected.length > 0) {
+            double amount = 0;
+            for (int row : selected) {
+                Challan challan = tableModel.getChallan(challanTable.convertRowIndexToModel(row));
+                if (challan != null) {
+                    amount += challan.getTotalAmount();
+                }
+            }
+            sb.append(" | Selected: ").append(selected.length).append(" (₹").append(Challan.formatAmount(amount)).append(")");
         }
 
-        displayArea.setText(sb.toString());
+        footerLabel.setText(sb.toString());
     }
 
     private void updateStatistics() {
-        Map<String, Object> stats = database.getStatistics();
+        runAsync(service.getStatistics(), this::showStatistics);
+    }
 
+    private void showStatistics(Map<String, Object> stats) {
         StringBuilder sb = new StringBuilder();
         sb.append("Total: ").append(stats.get("total"))
                 .append(" | Pending: ").append(stats.get("pending"))
                 .append(" | Paid: ").append(stats.get("paid"))
                 .append(" | Pending Amount: ₹").append(String.format("%.2f", (Double)stats.get("pending_amount")))
                 .append(" | Collected: ₹").append(String.format("%.2f", (Double)stats.get("collected_amount")));
+        if (stats.get("pending_penalty_amount") instanceof Number penalties && penalties.doubleValue() > 0) {
+            sb.append(" | Pending Penalties: ₹").append(String.format("%.2f", penalties.doubleValue()));
+        }
 
         statsLabel.setText(sb.toString());
     }
 
+    /** Runs {@code onSuccess} on the EDT when the task finishes, showing the progress bar meanwhile. */
+    private <T> void runAsync(CompletableFuture<T> future, Consumer<T> onSuccess) {
+        runAsync(future, onSuccess, () -> { });
+    }
+
+    private <T> void runAsync(CompletableFuture<T> future, Consumer<T> onSuccess, Runnable onFailure) {
+        runningTasks++;
+        progressBar.setVisible(true);
+        future.whenCompleteAsync((value, error) -> {
+            if (--runningTasks == 0) {
+                progressBar.setVisible(false);
+            }
+        }, SwingUtilities::invokeLater);
+        ChallanService.onEdt(future, onSuccess, error -> {
+            Log.error("Background database task failed", error);
+            onFailure.run();
+            JOptionPane.showMessageDialog(this, "Database operation failed: " + error.getMessage(),
+                    "Database Error", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
     private void clearIssueFields() {
         vehicleField.setText("");
         locationField.setText("");
@@ -437,13 +722,16 @@ public class EChallanApp extends JFrame {
     }
 
     public static void main(String[] args) {
+        long launched = System.nanoTime();
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.warn("Could not use the system look and feel: " + e.getMessage());
             }
             new EChallanApp().setVisible(true);
+            // Listings and statistics are still loading in the background; the window already takes input
+            Log.info("Window ready in " + (System.nanoTime() - launched) / 1_000_000 + " ms");
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.echallan;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A follower of the change log, from {@link Database#subscribe}. A virtual thread hands the consumer each
+ * batch of new events in sequence order, as soon as the commit that wrote them is signalled or, for
+ * commits by other processes, within {@link DatabaseConfig#getEventPollMillis()}. Delivery is at least
+ * once per subscription: a consumer that throws ends it, and a new subscription from
+ * {@link #getPosition()} resumes with the batch that failed.
+ */
+public final class EventSubscription implements AutoCloseable {
+    // Events handed to the consumer at most per call
+    static final int BATCH_SIZE = 1000;
+    // Longest single wait before the thread checks whether it was closed
+    private static final long WAIT_MILLIS = 1000;
+
+    private final Database database;
+    private final Consumer<List<ChallanEvent>> consumer;
+    private final Thread thread;
+    private volatile long position;
+    private volatile boolean closed;
+
+    EventSubscription(Database database, long afterSeq, Consumer<List<ChallanEvent>> consumer) {
+        this.database = database;
+        this.consumer = consumer;
+        this.position = afterSeq;
+        this.thread = Thread.ofVirtual().name("challan-events-" + afterSeq).unstarted(this::run);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    private void run() {
+        while (!closed) {
+            List<ChallanEvent> events = database.awaitEvents(position, BATCH_SIZE, WAIT_MILLIS);
+            if (closed || events.isEmpty()) continue;
+            try {
+                consumer.accept(events);
+            } catch (RuntimeException e) {
+                Log.error("Event subscriber failed after seq " + position + ", unsubscribing: " + e.getMessage(), e);
+                close();
+                return;
+            }
+            position = events.get(events.size() - 1).seq();
+        }
+    }
+
+    /** Sequence number of the last event the consumer accepted, or the starting point before the first. */
+    public long getPosition() { return position; }
+
+    public boolean isClosed() { return closed; }
+
+    /**
+     * Stops delivery: a batch already handed to the consumer is allowed to finish, and the thread exits
+     * within a second.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        database.unsubscribe(this);
+    }
+}
@@ -0,0 +1,6 @@
+package com.echallan;
+
+/** Source of new challan IDs. Implementations must be thread-safe and never return the same ID twice. */
+public interface IdGenerator {
+    String nextId();
+}
@@ -0,0 +1,95 @@
+package com.echallan;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram in the style of HdrHistogram: log-linear buckets, exact below 32 ns and then 32 buckets
+ * per power of two, so every recorded value is kept to within about 3% up to 2^44 ns (about 4.9 hours;
+ * longer values land in the last bucket). The counts are one fixed {@link AtomicLongArray}, so
+ * {@link #record} is a few atomic increments with no allocation and no lock, safe from any number of threads.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 44;
+    private static final long MAX_TRACKED = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** A point-in-time copy; reading it needs no synchronization. */
+    public record Snapshot(long count, long totalNanos, long maxNanos, long[] counts) {
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * The value at or below which {@code percentile} percent of recordings fall, reported as the upper
+         * end of its bucket (never above the recorded maximum). 0 when nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalent(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // lost a race with a larger or concurrent update; re-read
+        }
+    }
+
+    /** Copies the counts. Recordings that race the copy may be partly included. */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(count, totalNanos.sum(), maxNanos.get(), copy);
+    }
+
+    /** Clears all recordings. Not atomic with respect to concurrent {@link #record} calls. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        if (value > MAX_TRACKED) value = MAX_TRACKED;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowestEquivalent(int bucket) {
+        int region = bucket >>> SUB_BUCKET_BITS;
+        if (region == 0) return bucket;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << (region - 1);
+    }
+
+    static long highestEquivalent(int bucket) {
+        int region = bucket >>> SUB_BUCKET_BITS;
+        return region == 0 ? bucket : lowestEquivalent(bucket) + (1L << (region - 1)) - 1;
+    }
+}
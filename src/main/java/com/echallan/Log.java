@@ -0,0 +1,136 @@
+package com.echallan;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Leveled logging for the library. Callers only enqueue the message; a daemon thread does the formatting
+ * and the console write, so a slow or redirected terminal never holds up a query or the writer. INFO and
+ * DEBUG go to standard output, WARN and ERROR to standard error. When the queue is full messages are
+ * dropped and counted rather than blocking the caller.
+ *
+ * <p>The level comes from the {@code echallan.log.level} system property ({@code OFF}, {@code ERROR},
+ * {@code WARN}, {@code INFO} or {@code DEBUG}, default {@code INFO}) and can be changed with
+ * {@link #setLevel}. Per-call messages on hot paths are DEBUG and guarded by {@link #isEnabled}, so at the
+ * default level they are not even built.
+ */
+public final class Log {
+    public enum Level { OFF, ERROR, WARN, INFO, DEBUG }
+
+    private static final int QUEUE_SIZE = 8192;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    // level == null marks a flush request
+    private record Entry(long millis, Level level, String message, Throwable error, CountDownLatch flushed) {
+    }
+
+    private static volatile Level level = parse(System.getProperty("echallan.log.level"), Level.INFO);
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private static final LongAdder dropped = new LongAdder();
+
+    static {
+        Thread.ofPlatform().name("challan-log").daemon().start(Log::run);
+        // Daemon threads die with the JVM; print what is still queued on the way out
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1, TimeUnit.SECONDS), "challan-log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static Level getLevel() { return level; }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /** True if messages at {@code messageLevel} are currently written. */
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+    }
+
+    public static void error(String message) { log(Level.ERROR, message, null); }
+    public static void error(String message, Throwable error) { log(Level.ERROR, message, error); }
+    public static void warn(String message) { log(Level.WARN, message, null); }
+    public static void info(String message) { log(Level.INFO, message, null); }
+    public static void debug(String message) { log(Level.DEBUG, message, null); }
+
+    public static void log(Level messageLevel, String message, Throwable error) {
+        if (!isEnabled(messageLevel)) return;
+        if (!queue.offer(new Entry(System.currentTimeMillis(), messageLevel, message, error, null))) {
+            dropped.increment();
+        }
+    }
+
+    /** Messages discarded because the queue was full. */
+    public static long getDroppedCount() { return dropped.sum(); }
+
+    /** Waits until everything logged before this call has been written, for command-line tools about to exit. */
+    public static void flush() {
+        flush(10, TimeUnit.SECONDS);
+    }
+
+    private static void flush(long timeout, TimeUnit unit) {
+        CountDownLatch flushed = new CountDownLatch(1);
+        try {
+            if (queue.offer(new Entry(0, null, null, null, flushed), timeout, unit)) {
+                flushed.await(timeout, unit);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void run() {
+        List<Entry> batch = new ArrayList<>(256);
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, 255);
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                System.err.println(TIME.format(Instant.now()) + " WARN  " + (drops - reportedDrops)
+                        + " log messages dropped; the log queue was full");
+                reportedDrops = drops;
+            }
+            for (Entry entry : batch) {
+                if (entry.level() == null) {
+                    System.out.flush();
+                    System.err.flush();
+                    entry.flushed().countDown();
+                    continue;
+                }
+                // Looked up per message, so System.setOut redirection still applies
+                PrintStream out = entry.level().ordinal() <= Level.WARN.ordinal() ? System.err : System.out;
+                out.println(TIME.format(Instant.ofEpochMilli(entry.millis())) + " "
+                        + String.format("%-5s", entry.level()) + " " + entry.message());
+                if (entry.error() != null) {
+                    entry.error().printStackTrace(out);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private static Level parse(String value, Level fallback) {
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown echallan.log.level '" + value + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
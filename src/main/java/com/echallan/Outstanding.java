@@ -0,0 +1,27 @@
+package com.echallan;
+
+import java.time.LocalDate;
+
+/**
+ * What one vehicle owes: its pending challans, their fines and the earliest due date among them.
+ * {@code earliestDueDay} is an epoch day, or {@link Challan#NO_DUE_DAY} when no pending challan has one.
+ */
+public record Outstanding(String vehicleKey, long pendingCount, double pendingFine, long earliestDueDay) {
+    public static Outstanding none(String vehicleKey) {
+        return new Outstanding(vehicleKey, 0, 0, Challan.NO_DUE_DAY);
+    }
+
+    public boolean isClear() {
+        return pendingCount == 0;
+    }
+
+    /** The earliest due date, or null when there is none. */
+    public LocalDate earliestDueDate() {
+        return earliestDueDay != Challan.NO_DUE_DAY ? LocalDate.ofEpochDay(earliestDueDay) : null;
+    }
+
+    /** True when the earliest due day has fully passed, matching {@link Challan#isOverdue()}. */
+    public boolean isOverdue(LocalDate today) {
+        return pendingCount > 0 && earliestDueDay != Challan.NO_DUE_DAY && earliestDueDay < today.toEpochDay();
+    }
+}
@@ -0,0 +1,272 @@
+package com.echallan;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory answer to "how much does this plate owe": pending challan count, pending fine total and earliest
+ * due day per normalized plate. An open-addressing hash table over parallel primitive arrays with linear
+ * probing and backward-shift deletion, so an entry costs 24 bytes and a lookup allocates nothing but the
+ * result. Plates of up to 12 letters and digits are packed into a {@code long} key; anything else (longer
+ * plates, non-Latin letters) goes to a small overflow map.
+ *
+ * <p>{@link Database} builds the index from {@code challans} after opening and applies every committed
+ * change to pending rows while it still holds the writer, so updates arrive in commit order. Lookups take
+ * an optimistic {@link StampedLock} read and only fall back to the read lock if a write raced them.
+ */
+public class OutstandingIndex {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    // Digits 1-10 and letters 11-36 in base 37, so no plate packs to the empty key 0 and 12 characters fit
+    private static final int MAX_PACKED_LENGTH = 12;
+    private static final long EMPTY = 0;
+    // dueDays entry when no pending challan has a due date
+    private static final int NO_DUE_DAY = Integer.MAX_VALUE;
+
+    /**
+     * A committed change to one plate's pending challans. Additions carry the new challan's due day;
+     * removals carry the plate's earliest due day after the change, since a minimum cannot be undone.
+     */
+    record Change(String vehicleKey, int count, long finePaise, long earliestDueDay) {
+        // A row changed, but not a pending one
+        static final Change NONE = new Change("", 0, 0, Challan.NO_DUE_DAY);
+
+        static Change added(Challan challan) {
+            if (!"PENDING".equals(challan.getStatus())) return NONE;
+            return new Change(PlateNumbers.normalize(challan.getVehicleNumber()), 1, paise(challan.getFine()),
+                    challan.getDueDay());
+        }
+
+        static Change removed(String vehicleKey, double fine, long earliestDueDay) {
+            return new Change(vehicleKey, -1, -paise(fine), earliestDueDay);
+        }
+
+        /** {@code count} pending challans of one plate, {@code finePaise} between them, leaving at once. */
+        static Change removed(String vehicleKey, int count, long finePaise, long earliestDueDay) {
+            return new Change(vehicleKey, -count, -finePaise, earliestDueDay);
+        }
+    }
+
+    // Replaced as a whole on resize, so a racing optimistic reader never mixes arrays of two sizes
+    private static final class Table {
+        final long[] keys;
+        final int[] counts;
+        final long[] finePaise;
+        final int[] dueDays;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            counts = new int[capacity];
+            finePaise = new long[capacity];
+            dueDays = new int[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size;
+    // Keys that do not pack: {count, paise, due day}
+    private final Map<String, long[]> overflow = new HashMap<>();
+
+    OutstandingIndex() {
+    }
+
+    /** Dues for a plate in any spelling ("KA 01-AB 1234"); a plate with nothing pending reads as clear. */
+    public Outstanding get(String vehicleNumber) {
+        String key = PlateNumbers.normalize(vehicleNumber);
+        long packed = pack(key);
+        if (packed == EMPTY) {
+            long stamp = lock.readLock();
+            try {
+                long[] entry = overflow.get(key);
+                return entry == null ? Outstanding.none(key) : outstanding(key, (int) entry[0], entry[1], (int) entry[2]);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        long stamp = lock.tryOptimisticRead();
+        Outstanding result = find(key, packed);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = find(key, packed);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return result;
+    }
+
+    /** Plates with at least one pending challan. */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size + overflow.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Bytes held by the table arrays, excluding the overflow map. */
+    public long estimatedBytes() {
+        long stamp = lock.readLock();
+        try {
+            return (long) table.keys.length * (8 + 4 + 8 + 4);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Reads without the lock; the caller validates the stamp. Reads all values before building the result,
+    // and bounds the probe so a torn table cannot loop.
+    private Outstanding find(String key, long packed) {
+        Table t = table;
+        int slot = hash(packed) & t.mask;
+        for (int probes = 0; probes <= t.mask; probes++) {
+            long k = t.keys[slot];
+            if (k == EMPTY) break;
+            if (k == packed) {
+                return outstanding(key, t.counts[slot], t.finePaise[slot], t.dueDays[slot]);
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return Outstanding.none(key);
+    }
+
+    private static Outstanding outstanding(String key, int count, long paise, int dueDay) {
+        return new Outstanding(key, count, paise / 100.0, dueDay == NO_DUE_DAY ? Challan.NO_DUE_DAY : dueDay);
+    }
+
+    // Writes, called by Database under the writer after the change has committed
+
+    void apply(Change change) {
+        if (change == null || change.count() == 0 || change.vehicleKey().isEmpty()) return;
+        long stamp = lock.writeLock();
+        try {
+            long packed = pack(change.vehicleKey());
+            if (packed == EMPTY) {
+                applyOverflow(change);
+            } else {
+                applyPacked(packed, change);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyPacked(long packed, Change change) {
+        Table t = table;
+        int slot = hash(packed) & t.mask;
+        while (t.keys[slot] != EMPTY && t.keys[slot] != packed) {
+            slot = (slot + 1) & t.mask;
+        }
+        if (t.keys[slot] == EMPTY) {
+            // Removing from a plate the index does not hold: nothing to undo
+            if (change.count() < 0) return;
+            t.keys[slot] = packed;
+            t.counts[slot] = 0;
+            t.finePaise[slot] = 0;
+            t.dueDays[slot] = NO_DUE_DAY;
+            size++;
+        }
+        t.counts[slot] += change.count();
+        t.finePaise[slot] += change.finePaise();
+        t.dueDays[slot] = nextDueDay(t.dueDays[slot], change);
+        if (t.counts[slot] <= 0) {
+            delete(t, slot);
+        } else if (size > (t.mask + 1) / 4 * 3) {
+            resize();
+        }
+    }
+
+    private void applyOverflow(Change change) {
+        long[] entry = overflow.get(change.vehicleKey());
+        if (entry == null) {
+            if (change.count() < 0) return;
+            entry = new long[]{0, 0, NO_DUE_DAY};
+            overflow.put(change.vehicleKey(), entry);
+        }
+        entry[0] += change.count();
+        entry[1] += change.finePaise();
+        entry[2] = nextDueDay((int) entry[2], change);
+        if (entry[0] <= 0) {
+            overflow.remove(change.vehicleKey());
+        }
+    }
+
+    private static int nextDueDay(int current, Change change) {
+        int due = change.earliestDueDay() == Challan.NO_DUE_DAY ? NO_DUE_DAY : (int) change.earliestDueDay();
+        return change.count() > 0 ? Math.min(current, due) : due;
+    }
+
+    // Backward-shift deletion: moves later entries of the probe run into the hole, so no tombstones build up
+    private void delete(Table t, int hole) {
+        size--;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & t.mask;
+            long k = t.keys[slot];
+            if (k == EMPTY) break;
+            int home = hash(k) & t.mask;
+            // Move the entry back if its home slot is not in the cyclic range (hole, slot]
+            if (((slot - home) & t.mask) >= ((slot - hole) & t.mask)) {
+                t.keys[hole] = k;
+                t.counts[hole] = t.counts[slot];
+                t.finePaise[hole] = t.finePaise[slot];
+                t.dueDays[hole] = t.dueDays[slot];
+                hole = slot;
+            }
+        }
+        t.keys[hole] = EMPTY;
+    }
+
+    private void resize() {
+        Table old = table;
+        Table grown = new Table(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            long k = old.keys[i];
+            if (k == EMPTY) continue;
+            int slot = hash(k) & grown.mask;
+            while (grown.keys[slot] != EMPTY) {
+                slot = (slot + 1) & grown.mask;
+            }
+            grown.keys[slot] = k;
+            grown.counts[slot] = old.counts[i];
+            grown.finePaise[slot] = old.finePaise[i];
+            grown.dueDays[slot] = old.dueDays[i];
+        }
+        table = grown;
+    }
+
+    // Base-37 packing of a normalized plate, or EMPTY if it is too long or has characters outside A-Z, 0-9
+    static long pack(String key) {
+        if (key.isEmpty() || key.length() > MAX_PACKED_LENGTH) return EMPTY;
+        long packed = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 11;
+            } else {
+                return EMPTY;
+            }
+            packed = packed * 37 + digit;
+        }
+        return packed;
+    }
+
+    // Stafford's mix13 finalizer: packed plates share long common prefixes, so spread every bit
+    private static int hash(long key) {
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (key ^ (key >>> 31));
+    }
+
+    private static long paise(double fine) {
+        return Math.round(fine * 100);
+    }
+}
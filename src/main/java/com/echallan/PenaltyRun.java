@@ -0,0 +1,17 @@
+package com.echallan;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One penalty accrual, as logged in {@code penalty_runs}: the day it brought penalties up to, whether it
+ * recomputed every pending challan or only those crossing a tier since the previous run, how many rows
+ * changed and how long it took.
+ */
+public record PenaltyRun(LocalDate accruedDay, boolean full, long rowsChanged, long elapsedMillis, LocalDateTime finishedAt) {
+    @Override
+    public String toString() {
+        return "Accrued penalties to " + accruedDay + (full ? " (full)" : "") + ": " + rowsChanged
+                + " challans changed in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,150 @@
+package com.echallan;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Tiered late-payment penalties: each tier charges a share of the fine once a challan is at least
+ * {@code minDaysOverdue} days past its due date. Tiers for a specific violation take precedence over the
+ * default tiers (violation {@link #ANY}); within either set the tier with the highest threshold reached
+ * applies. {@link #DEFAULT} is the historical flat 10% from the first overdue day.
+ *
+ * <p>The schedule is stored in the {@code penalty_rules} table and applied there by the daily accrual
+ * ({@link Database#accruePenalties()}); {@link #penalty(String, double, long)} mirrors the SQL for new rows.
+ * As CSV it is {@code violation,min_days_overdue,rate} with {@code *} for any violation.
+ */
+public final class PenaltySchedule {
+    /** Violation of the default tiers, used for violations without tiers of their own. */
+    public static final String ANY = "";
+
+    /** One row of the rule table. */
+    public record Tier(String violation, int minDaysOverdue, double rate) {
+        public Tier {
+            violation = violation == null ? ANY : violation;
+            if (minDaysOverdue < 1) throw new IllegalArgumentException("minDaysOverdue must be at least 1");
+            if (!(rate >= 0)) throw new IllegalArgumentException("rate must be zero or more");
+        }
+    }
+
+    public static final PenaltySchedule DEFAULT = new PenaltySchedule(List.of(new Tier(ANY, 1, Challan.PENALTY_RATE)));
+
+    // Tiers by violation, each list descending by threshold so the first one reached applies
+    private final Map<String, List<Tier>> tiers = new HashMap<>();
+    private final List<Tier> all;
+
+    public PenaltySchedule(List<Tier> tiers) {
+        List<Tier> sorted = new ArrayList<>(tiers);
+        sorted.sort(Comparator.comparing(Tier::violation).thenComparingInt(Tier::minDaysOverdue));
+        for (int i = 1; i < sorted.size(); i++) {
+            Tier previous = sorted.get(i - 1);
+            Tier tier = sorted.get(i);
+            if (previous.violation().equals(tier.violation()) && previous.minDaysOverdue() == tier.minDaysOverdue()) {
+                throw new IllegalArgumentException("Duplicate tier for " + describe(tier.violation()) + " at "
+                        + tier.minDaysOverdue() + " days");
+            }
+        }
+        this.all = List.copyOf(sorted);
+        for (Tier tier : all) {
+            this.tiers.computeIfAbsent(tier.violation(), k -> new ArrayList<>()).add(0, tier);
+        }
+    }
+
+    /** Every tier, by violation and then threshold. */
+    public List<Tier> getTiers() { return all; }
+
+    /** The penalty on a {@code fine} for {@code violation} that is {@code daysOverdue} days past due. */
+    public double penalty(String violation, double fine, long daysOverdue) {
+        Tier tier = tier(tiers.get(violation), daysOverdue);
+        if (tier == null) tier = tier(tiers.get(ANY), daysOverdue);
+        return tier != null ? fine * tier.rate() : 0;
+    }
+
+    private static Tier tier(List<Tier> descending, long daysOverdue) {
+        if (descending == null) return null;
+        for (Tier tier : descending) {
+            if (daysOverdue >= tier.minDaysOverdue()) return tier;
+        }
+        return null;
+    }
+
+    /** Distinct thresholds: a row's penalty only changes on the days it reaches one of these. */
+    int[] thresholds() {
+        return all.stream().mapToInt(Tier::minDaysOverdue).distinct().sorted().toArray();
+    }
+
+    /** Reads {@code violation,min_days_overdue,rate} lines; a header row and {@code #} comments are skipped. */
+    public static PenaltySchedule read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    public static PenaltySchedule read(BufferedReader reader) throws IOException {
+        List<Tier> tiers = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (number == 1 && line.startsWith("\uFEFF")) line = line.substring(1);
+            if (line.isBlank() || line.startsWith("#")) continue;
+            List<String> values = ChallanImporter.parseCsvLine(line);
+            if (number == 1 && values.size() > 1 && values.get(1).trim().equalsIgnoreCase("min_days_overdue")) continue;
+            if (values.size() != 3) {
+                throw new IOException("Line " + number + ": expected violation,min_days_overdue,rate");
+            }
+            try {
+                String violation = values.get(0).trim();
+                tiers.add(new Tier(violation.equals("*") ? ANY : violation, Integer.parseInt(values.get(1).trim()),
+                        Double.parseDouble(values.get(2).trim())));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        try {
+            return new PenaltySchedule(tiers);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /** The schedule in the format {@link #read(Path)} accepts. */
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder("violation,min_days_overdue,rate\n");
+        for (Tier tier : all) {
+            if (tier.violation().equals(ANY)) {
+                sb.append('*');
+            } else {
+                ChallanReport.appendField(sb, tier.violation());
+            }
+            sb.append(',').append(tier.minDaysOverdue()).append(',').append(tier.rate()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String describe(String violation) {
+        return violation.equals(ANY) ? "any violation" : violation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PenaltySchedule other && all.equals(other.all);
+    }
+
+    @Override
+    public int hashCode() {
+        return all.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Tier tier : all) {
+            if (!sb.isEmpty()) sb.append("; ");
+            sb.append(describe(tier.violation())).append(" from day ").append(tier.minDaysOverdue()).append(": ")
+                    .append(tier.rate() * 100).append('%');
+        }
+        return sb.toString();
+    }
+}
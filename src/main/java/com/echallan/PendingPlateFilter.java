@@ -0,0 +1,155 @@
+package com.echallan;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Bloom filter over the normalized plates that have pending challans, so the common checkpoint answer,
+ * "nothing pending", needs no database read. A plate it has never seen is reported clear with certainty;
+ * a plate it has seen may be a false positive, at roughly {@link #getTargetFalsePositiveRate()} while no
+ * more than {@link #getCapacity()} plates have been added.
+ *
+ * <p>The bits live in one {@code long[]} and are only ever set, with an atomic OR, so lookups take no lock
+ * and never see a torn update. Plates cannot be taken out: {@link Database} adds a plate before the row
+ * that makes it pending commits, and rebuilds the filter from {@code challans} periodically to drop plates
+ * that have since been cleared. Bit positions come from one 64-bit hash of the key split in two (double
+ * hashing), mapped onto the array by multiply-shift rather than a modulo.
+ */
+public class PendingPlateFilter {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int MIN_CAPACITY = 1024;
+    // Each Bloom bit array stays addressable by a non-negative int
+    private static final long MAX_BITS = 1L << 31;
+
+    private final long[] words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final double targetFalsePositiveRate;
+    // Bits set so far and plates added that set at least one of them, updated with each add
+    private final LongAdder setBits = new LongAdder();
+    private final LongAdder plates = new LongAdder();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+
+    /** Sized for {@code capacity} plates at {@code falsePositiveRate}: about 9.6 bits a plate at 1%. */
+    PendingPlateFilter(long capacity, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        this.capacity = Math.max(capacity, MIN_CAPACITY);
+        this.targetFalsePositiveRate = falsePositiveRate;
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        bits = Math.min((bits + 63) & ~63L, MAX_BITS);
+        this.words = new long[(int) (bits >>> 6)];
+        this.bitCount = bits;
+        this.hashCount = Math.max(1, (int) Math.round((double) bits / this.capacity * ln2));
+    }
+
+    /** Records a plate key (as {@link PlateNumbers#normalize} returns it) as having a pending challan. */
+    void add(String vehicleKey) {
+        if (vehicleKey == null || vehicleKey.isEmpty()) return;
+        long hash = hash(vehicleKey);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int added = 0;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            long previous = (long) WORDS.getAndBitwiseOr(words, (int) (bit >>> 6), mask);
+            if ((previous & mask) == 0) added++;
+        }
+        if (added > 0) {
+            setBits.add(added);
+            plates.increment();
+        }
+    }
+
+    /**
+     * False if the plate, in any spelling, certainly has no pending challan; true if it may have one.
+     * Counted towards {@link #getNegativeRate()}.
+     */
+    public boolean mightHavePending(String vehicleNumber) {
+        boolean result = contains(PlateNumbers.normalize(vehicleNumber));
+        lookups.increment();
+        if (!result) negatives.increment();
+        return result;
+    }
+
+    /** The bit test alone, on an already normalized key and without touching the counters. */
+    boolean contains(String vehicleKey) {
+        if (vehicleKey.isEmpty()) return false;
+        long hash = hash(vehicleKey);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if (((long) WORDS.getOpaque(words, (int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Maps a 32-bit hash onto [0, bitCount) without a division
+    private long index(int hash) {
+        return ((hash & 0xFFFF_FFFFL) * bitCount) >>> 32;
+    }
+
+    // FNV-1a over the characters, then the MurmurHash3 finalizer to spread both halves
+    private static long hash(String key) {
+        long h = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x0000_0100_0000_01B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51_AFD7_ED55_8CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CE_B9FE_1A85_EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Plates the filter is sized for. */
+    public long getCapacity() { return capacity; }
+
+    /** Plates added so far; a plate whose bits were all set already is not counted. */
+    public long size() { return plates.sum(); }
+
+    public int getHashCount() { return hashCount; }
+
+    public long getBitCount() { return bitCount; }
+
+    public double getTargetFalsePositiveRate() { return targetFalsePositiveRate; }
+
+    /**
+     * The false-positive rate at the current fill, the chance that all {@code k} bits of an unseen plate
+     * are set: {@code (set bits / bits) ^ k}. Rises above the target once more than the capacity is added.
+     */
+    public double getFalsePositiveRate() {
+        return Math.pow((double) setBits.sum() / bitCount, hashCount);
+    }
+
+    /** Lookups through {@link #mightHavePending} since the filter was built. */
+    public long getLookups() { return lookups.sum(); }
+
+    /** Share of those lookups answered "certainly clear", which never reached the database. */
+    public double getNegativeRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) negatives.sum() / total;
+    }
+
+    /** Heap held by the bit array. */
+    public long estimatedBytes() {
+        return (long) words.length * 8 + 64;
+    }
+
+    boolean isOverCapacity() {
+        return plates.sum() > capacity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d plates in %,d KB, %d hashes, false positives %.3f%% (target %.3f%%)", size(),
+                estimatedBytes() / 1024, hashCount, getFalsePositiveRate() * 100, targetFalsePositiveRate * 100);
+    }
+}
@@ -0,0 +1,36 @@
+package com.echallan;
+
+/**
+ * Normalization for vehicle registration numbers. "KA 01-AB 1234", "ka01ab1234" and
+ * "KA01AB1234" all map to the same key, which is what the {@code vehicle_key} column stores.
+ */
+public final class PlateNumbers {
+    private PlateNumbers() {
+    }
+
+    /** Uppercases and drops everything that is not a letter or digit; returns "" for null. */
+    public static String normalize(String plate) {
+        if (plate == null) return "";
+        StringBuilder sb = new StringBuilder(plate.length());
+        for (int i = 0; i < plate.length(); i++) {
+            char c = plate.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                sb.append((char) (c - ('a' - 'A')));
+            } else if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                sb.append(c);
+            } else if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toUpperCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Smallest key greater than every key starting with {@code prefix}, so that
+     * {@code key >= prefix AND key < upperBound(prefix)} is an index range scan.
+     */
+    static String prefixUpperBound(String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        return prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+    }
+}
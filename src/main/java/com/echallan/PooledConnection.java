@@ -0,0 +1,92 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * A long-lived connection handed out by {@link ConnectionPool}. Prepared statements are
+ * cached per SQL string, so callers must close the {@link ResultSet}s they open but never
+ * the statements returned by {@link #prepare(String)}. Closing this object returns it to
+ * the pool instead of closing the physical connection.
+ */
+public class PooledConnection implements AutoCloseable {
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final boolean writer;
+    private final Map<String, PreparedStatement> statements;
+
+    PooledConnection(Connection connection, ConnectionPool pool, boolean writer, int statementCacheSize) {
+        this.connection = connection;
+        this.pool = pool;
+        this.writer = writer;
+        // Access-ordered so ad-hoc SQL cannot grow the cache without bound
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement pstmt = statements.get(sql);
+        if (pstmt == null || pstmt.isClosed()) {
+            pstmt = connection.prepareStatement(sql);
+            statements.put(sql, pstmt);
+        } else {
+            pstmt.clearParameters();
+        }
+        return pstmt;
+    }
+
+    public Connection getConnection() { return connection; }
+
+    public boolean isWriter() { return writer; }
+
+    public void begin() throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    public void rollback() {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            Log.error("Error rolling back transaction: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    void closePhysical() {
+        for (PreparedStatement pstmt : statements.values()) {
+            closeQuietly(pstmt);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Log.error("Error closing connection: " + e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(Statement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // Statement is being discarded anyway
+        }
+    }
+}
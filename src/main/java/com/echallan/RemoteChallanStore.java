@@ -0,0 +1,207 @@
+package com.echallan;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * {@link ChallanStore} backed by a {@link ChallanServer}, for desktop clients sharing one database. Calls
+ * block the calling thread (the app makes them from {@link ChallanService}'s virtual threads); connection
+ * and server errors are logged and reported like {@link Database} reports SQL errors.
+ */
+public class RemoteChallanStore implements ChallanStore {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final String baseUrl;
+    private final HttpClient client;
+    // Sent as a bearer token with every request, or null for a loopback server without one
+    private final String token;
+
+    /** Uses the token from {@link ChallanServer#configuredToken()}, if one is set. */
+    public RemoteChallanStore(String serverUrl) {
+        this(serverUrl, ChallanServer.configuredToken());
+    }
+
+    /** @param serverUrl e.g. {@code http://localhost:8085}; a trailing {@code /api/} is optional */
+    public RemoteChallanStore(String serverUrl, String token) {
+        this.token = token;
+        String url = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+        this.baseUrl = url.endsWith("/api") ? url : url + "/api";
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    public String getBaseUrl() { return baseUrl; }
+
+    @Override
+    public boolean addChallan(Challan challan) {
+        return write("POST", "/challans", ChallanJson.write(challan), "adding challan " + challan.getChallanId());
+    }
+
+    @Override
+    public boolean payChallan(String challanId) {
+        return write("POST", "/challans/" + encode(challanId) + "/pay", null, "paying challan " + challanId);
+    }
+
+    @Override
+    public boolean deleteChallan(String challanId) {
+        return write("DELETE", "/challans/" + encode(challanId), null, "deleting challan " + challanId);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        String body = get("/statistics", "getting statistics");
+        return body != null ? ChallanJson.readStatistics(Json.parseObject(body)) : new HashMap<>();
+    }
+
+    @Override
+    public ChallanSummary getSummary(ChallanFilter filter) {
+        String body = get("/summary" + query(filter, new StringBuilder()), "getting summary");
+        return body != null ? ChallanJson.readSummary(Json.parseObject(body)) : new ChallanSummary(0, 0, 0, 0);
+    }
+
+    @Override
+    public ChallanPage getChallansPage(ChallanFilter filter, ChallanPage.Cursor after, int limit) {
+        StringBuilder query = new StringBuilder();
+        query(filter, query);
+        if (after != null) {
+            param(query, "afterIssueDate", after.issueDate());
+            param(query, "afterId", after.challanId());
+        }
+        param(query, "limit", String.valueOf(limit));
+        String body = get("/challans/page" + query, "getting challans page");
+        return body != null ? ChallanJson.readPage(Json.parseObject(body)) : new ChallanPage(new ArrayList<>(), null);
+    }
+
+    @Override
+    public List<Challan> getChallans(ChallanFilter filter, ChallanSort sort, int offset, int limit) {
+        StringBuilder query = new StringBuilder();
+        query(filter, query);
+        param(query, "sort", sort.column().name());
+        param(query, "desc", String.valueOf(sort.descending()));
+        param(query, "offset", String.valueOf(offset));
+        param(query, "limit", String.valueOf(limit));
+        String body = get("/challans" + query, "getting challans");
+        return body != null ? ChallanJson.readList(Json.parse(body)) : new ArrayList<>();
+    }
+
+    @Override
+    public List<Challan> getOverdueChallans() {
+        String body = get("/challans/overdue", "getting overdue challans");
+        return body != null ? ChallanJson.readList(Json.parse(body)) : new ArrayList<>();
+    }
+
+    @Override
+    public List<Challan> searchArchivedByVehicle(String vehicleNumber, SearchMode mode) {
+        StringBuilder query = new StringBuilder();
+        param(query, "vehicle", vehicleNumber);
+        param(query, "mode", mode.name());
+        String body = get("/archive" + query, "searching archived challans");
+        return body != null ? ChallanJson.readList(Json.parse(body)) : new ArrayList<>();
+    }
+
+    @Override
+    public Outstanding getOutstanding(String vehicleNumber) {
+        StringBuilder query = new StringBuilder();
+        param(query, "vehicle", vehicleNumber);
+        String body = get("/outstanding" + query, "getting outstanding dues");
+        return body != null ? ChallanJson.readOutstanding(Json.parseObject(body))
+                : Outstanding.none(PlateNumbers.normalize(vehicleNumber));
+    }
+
+    @Override
+    public RepeatOffender getRepeatOffender(String vehicleNumber) {
+        StringBuilder query = new StringBuilder();
+        param(query, "vehicle", vehicleNumber);
+        String body = get("/repeat-offenders" + query, "getting repeat offender");
+        List<RepeatOffender> offenders = body != null ? ChallanJson.readRepeatOffenders(Json.parse(body)) : List.of();
+        return offenders.isEmpty() ? null : offenders.get(0);
+    }
+
+    @Override
+    public List<RepeatOffender> getRepeatOffenders() {
+        String body = get("/repeat-offenders", "getting repeat offenders");
+        return body != null ? ChallanJson.readRepeatOffenders(Json.parse(body)) : new ArrayList<>();
+    }
+
+    @Override
+    public boolean testConnection() {
+        String body = get("/health", "checking server health");
+        if (body == null) return false;
+        boolean up = "UP".equals(Json.parseObject(body).get("status"));
+        Log.info(up ? "Connected to challan server at " + baseUrl : "Challan server at " + baseUrl + " cannot reach its database");
+        return up;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    // Returns the response body, or null after logging why there is none
+    private String get(String path, String action) {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET(), action);
+        if (response == null) return null;
+        if (response.statusCode() != 200) {
+            Log.error("Server error while " + action + ": " + response.statusCode() + " " + response.body());
+            return null;
+        }
+        return response.body();
+    }
+
+    private boolean write(String method, String path, String json, String action) {
+        HttpRequest.BodyPublisher body = json != null
+                ? HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)
+                : HttpRequest.BodyPublishers.noBody();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .method(method, body);
+        HttpResponse<String> response = send(request, action);
+        if (response == null) return false;
+        int status = response.statusCode();
+        // 404 and 409 only mean no row changed
+        if (status >= 400 && status != 404 && status != 409) {
+            Log.error("Server error while " + action + ": " + status + " " + response.body());
+        }
+        return status / 100 == 2;
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request, String action) {
+        try {
+            if (token != null) request.header("Authorization", "Bearer " + token);
+            return client.send(request.timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.error("Error " + action + " on " + baseUrl + ": " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static String query(ChallanFilter filter, StringBuilder query) {
+        param(query, "status", filter.status());
+        param(query, "vehicle", filter.vehicleNumber());
+        param(query, "mode", filter.searchMode() != null ? filter.searchMode().name() : null);
+        param(query, "violation", filter.violation());
+        param(query, "overdueAsOf", filter.overdueAsOf() != null ? filter.overdueAsOf().toString() : null);
+        return query.toString();
+    }
+
+    private static void param(StringBuilder query, String name, String value) {
+        if (value == null) return;
+        query.append(query.isEmpty() ? '?' : '&').append(name).append('=').append(encode(value));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
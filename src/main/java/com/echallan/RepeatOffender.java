@@ -0,0 +1,19 @@
+package com.echallan;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A vehicle flagged by {@link RepeatOffenderDetector}: {@code violations} challans in a run where every
+ * {@code threshold} consecutive issuances fall within the window, from {@code firstIssued} to
+ * {@code lastIssued} (issue times as local epoch seconds, like {@link Challan#getIssueDate()}).
+ */
+public record RepeatOffender(String vehicleKey, int violations, long firstIssued, long lastIssued) {
+    public LocalDateTime firstIssuedAt() {
+        return LocalDateTime.ofEpochSecond(firstIssued, 0, ZoneOffset.UTC);
+    }
+
+    public LocalDateTime lastIssuedAt() {
+        return LocalDateTime.ofEpochSecond(lastIssued, 0, ZoneOffset.UTC);
+    }
+}
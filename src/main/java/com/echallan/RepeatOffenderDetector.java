@@ -0,0 +1,223 @@
+package com.echallan;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Flags vehicles issued {@code threshold} or more challans within a sliding window (e.g. 3 in 24 hours)
+ * as each challan commits, without querying the table. Every tracked plate keeps a ring buffer of its
+ * last {@code threshold} issue times as {@code int} seconds, which is all the check needs: the plate is a
+ * repeat offender when the ring is full and its oldest entry is less than a window older than its newest.
+ *
+ * <p>Memory is bounded twice over: a plate whose newest issuance has left the window is dropped, and past
+ * {@code maxPlates} the least recently issued plate is dropped. Plates are kept in order of their last
+ * issuance, so both evictions take them from the head of one linked map. {@link Database} warm-starts the
+ * detector from the rows issued within the window and records every committed insert while it holds the
+ * writer; reads and writes synchronize on the detector.
+ */
+public class RepeatOffenderDetector {
+    // Issue times are stored as seconds after this instant (2020-01-01T00:00), which fits an int until 2088
+    private static final long EPOCH_OFFSET = 1_577_836_800L;
+    // Rough heap cost of one tracked plate besides its ring: map entry, key string and ring object
+    private static final int PLATE_OVERHEAD_BYTES = 160;
+
+    private final int threshold;
+    private final long windowSeconds;
+    private final int maxPlates;
+    // Insertion order is last-issuance order: a recorded plate is removed and put back at the tail
+    private final LinkedHashMap<String, Ring> plates = new LinkedHashMap<>();
+    private final LinkedHashMap<String, RepeatOffender> flagged = new LinkedHashMap<>();
+
+    /** The last {@code threshold} issue times of a plate, oldest at {@code start}. */
+    private static final class Ring {
+        final int[] seconds;
+        int start;
+        int size;
+
+        Ring(int capacity) {
+            seconds = new int[capacity];
+        }
+
+        int oldest() {
+            return seconds[start];
+        }
+
+        int newest() {
+            return seconds[(start + size - 1) % seconds.length];
+        }
+
+        boolean isFull() {
+            return size == seconds.length;
+        }
+
+        void add(int second) {
+            if (size > 0 && second < newest()) {
+                insertOutOfOrder(second);
+            } else if (size < seconds.length) {
+                seconds[(start + size++) % seconds.length] = second;
+            } else {
+                seconds[start] = second;
+                start = (start + 1) % seconds.length;
+            }
+        }
+
+        // Imports and clock skew can deliver an issuance older than the newest one; keep the ring sorted
+        private void insertOutOfOrder(int second) {
+            if (isFull() && second <= oldest()) return;
+            int[] sorted = new int[seconds.length];
+            int n = 0;
+            // A full ring drops its oldest entry to make room
+            for (int i = isFull() ? 1 : 0; i < size; i++) {
+                sorted[n++] = seconds[(start + i) % seconds.length];
+            }
+            int at = n;
+            while (at > 0 && sorted[at - 1] > second) {
+                sorted[at] = sorted[at - 1];
+                at--;
+            }
+            sorted[at] = second;
+            System.arraycopy(sorted, 0, seconds, 0, n + 1);
+            start = 0;
+            size = n + 1;
+        }
+    }
+
+    RepeatOffenderDetector(int threshold, long windowSeconds, int maxPlates) {
+        if (threshold < 2) throw new IllegalArgumentException("threshold must be at least 2");
+        this.threshold = threshold;
+        this.windowSeconds = windowSeconds;
+        this.maxPlates = maxPlates;
+    }
+
+    public int getThreshold() { return threshold; }
+    public long getWindowSeconds() { return windowSeconds; }
+
+    /**
+     * Counts a committed challan. Returns the plate's flag if this issuance makes it, or keeps it, a repeat
+     * offender, otherwise null. Challans issued before the current window, or with an unreadable issue
+     * time, are ignored.
+     */
+    synchronized RepeatOffender record(String vehicleKey, String issueDate) {
+        long issued = issueSecond(issueDate);
+        if (vehicleKey == null || vehicleKey.isEmpty() || issued == Long.MIN_VALUE) return null;
+        long cutoff = nowSecond() - windowSeconds;
+        if (issued <= cutoff || issued - EPOCH_OFFSET > Integer.MAX_VALUE) return null;
+        expire(cutoff);
+
+        Ring ring = plates.remove(vehicleKey);
+        if (ring == null) {
+            ring = new Ring(threshold);
+        }
+        plates.put(vehicleKey, ring);
+        ring.add((int) (issued - EPOCH_OFFSET));
+        if (plates.size() > maxPlates) {
+            evictEldest();
+        }
+
+        if (!ring.isFull() || ring.newest() - ring.oldest() >= windowSeconds) return null;
+        long first = ring.oldest() + EPOCH_OFFSET;
+        long last = ring.newest() + EPOCH_OFFSET;
+        RepeatOffender previous = flagged.remove(vehicleKey);
+        RepeatOffender flag;
+        if (previous != null && previous.lastIssued() > cutoff && first <= previous.lastIssued()) {
+            // Still the same run: one more violation on the existing flag
+            flag = new RepeatOffender(vehicleKey, previous.violations() + 1, Math.min(issued, previous.firstIssued()),
+                    Math.max(last, previous.lastIssued()));
+        } else {
+            flag = new RepeatOffender(vehicleKey, threshold, first, last);
+        }
+        flagged.put(vehicleKey, flag);
+        return flag;
+    }
+
+    /** The plate's flag if its last flagged issuance is still within the window, otherwise null. */
+    public synchronized RepeatOffender get(String vehicleNumber) {
+        RepeatOffender flag = flagged.get(PlateNumbers.normalize(vehicleNumber));
+        return flag != null && flag.lastIssued() > nowSecond() - windowSeconds ? flag : null;
+    }
+
+    /** Every plate flagged within the window, most recently issued first. */
+    public synchronized List<RepeatOffender> offenders() {
+        expire(nowSecond() - windowSeconds);
+        List<RepeatOffender> result = new ArrayList<>(flagged.values());
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Plates with an issuance inside the window. */
+    public synchronized int size() {
+        return plates.size();
+    }
+
+    /** Approximate heap held by tracked plates and their rings. */
+    public synchronized long estimatedBytes() {
+        return (long) plates.size() * (PLATE_OVERHEAD_BYTES + 4L * threshold) + (long) flagged.size() * PLATE_OVERHEAD_BYTES;
+    }
+
+    // Drops plates and flags whose last issuance is at or before the cutoff. Both maps are in issuance
+    // order, so this stops at the first live entry; an out-of-order issuance can shield older entries
+    // behind it until they reach the head.
+    private void expire(long cutoff) {
+        for (Iterator<Ring> it = plates.values().iterator(); it.hasNext(); ) {
+            if (it.next().newest() + EPOCH_OFFSET > cutoff) break;
+            it.remove();
+        }
+        for (Iterator<RepeatOffender> it = flagged.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastIssued() > cutoff) break;
+            it.remove();
+        }
+    }
+
+    private void evictEldest() {
+        Iterator<String> it = plates.keySet().iterator();
+        flagged.remove(it.next());
+        it.remove();
+    }
+
+    private static long nowSecond() {
+        return Challan.now().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * A {@code yyyy-MM-dd HH:mm} issue date (seconds optional; a bare date is midnight) as local epoch
+     * seconds, or {@code Long.MIN_VALUE} if it is not one. Parsed by hand, since it runs on every insert.
+     */
+    static long issueSecond(String issueDate) {
+        if (issueDate == null || issueDate.length() < 10 || issueDate.charAt(4) != '-' || issueDate.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(issueDate, 0, 4);
+        int month = digits(issueDate, 5, 2);
+        int day = digits(issueDate, 8, 2);
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        if (issueDate.length() >= 16) {
+            hour = digits(issueDate, 11, 2);
+            minute = digits(issueDate, 14, 2);
+            if (issueDate.length() >= 19) second = digits(issueDate, 17, 2);
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // The number in text[from, from + count), or -1 if any character is not a digit
+    private static int digits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+}
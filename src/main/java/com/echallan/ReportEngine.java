@@ -0,0 +1,310 @@
+package com.echallan;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Builds a {@link ChallanReport} by scanning {@code challans} in parallel. The table's rowid range is split
+ * fork-join style into chunks; each chunk is read on its own pooled read connection and folded into a
+ * partial aggregate, and the partials are merged as the tasks join. Archive month tables have no rowid
+ * and are one chunk each.
+ *
+ * <p>Each row crosses the JDBC boundary as three values, because every column read costs more than the
+ * aggregation itself and decoding text natively costs more again. SQLite packs the fine in paise with
+ * the status and overdue bits into one integer; the issue date's first 13 characters, the location and
+ * the violation come back as one UTF-8 byte string, which is parsed here; the third is the stored penalty
+ * of a pending row in paise. Rows are grouped by
+ * (location, violation) pair and split into the two dimensions at the end. Every chunk reads its own
+ * snapshot, so a write committed while the report runs may be counted by some chunks and not others.
+ * Archiving would move rows between chunks that way, so {@link Database#getReport()} holds it off until
+ * the scan is done.
+ */
+final class ReportEngine {
+    // Below this many rowids a chunk is not worth another connection round trip
+    private static final long MIN_CHUNK_ROWS = 32_768;
+    // Chunks per worker, so a worker that finishes early can steal the rest of a slow one's range
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private static final int HOURS = 24;
+    // Low bits of the packed integer; the fine in paise sits above them
+    private static final int PAID = 1;
+    private static final int PENDING = 2;
+    private static final int OVERDUE = 4;
+    private static final int STATUS_BITS = 3;
+    // Separates the date prefix, location and violation in the text column
+    private static final char SEPARATOR = '\u001F';
+    private static final String COLUMNS = "IFNULL(substr(issue_date, 1, 13), '') || char(31) || IFNULL(location, '') "
+            + "|| char(31) || IFNULL(violation, ''), "
+            + "(CAST(round(fine * 100) AS INTEGER) << " + STATUS_BITS + ") | CASE status WHEN 'PAID' THEN " + PAID
+            + " WHEN 'PENDING' THEN CASE WHEN due_day < ? THEN " + (PENDING | OVERDUE) + " ELSE " + PENDING + " END ELSE 0 END, "
+            + "CASE WHEN status = 'PENDING' THEN CAST(round(penalty_amount * 100) AS INTEGER) ELSE 0 END";
+
+    private final Database database;
+    private final int parallelism;
+    private final long today;
+
+    ReportEngine(Database database, int parallelism, LocalDate asOf) {
+        this.database = database;
+        this.parallelism = Math.max(1, parallelism);
+        this.today = asOf.toEpochDay();
+    }
+
+    ChallanReport run() throws SQLException {
+        long start = System.nanoTime();
+        long first = 0;
+        long last = -1;
+        List<String> archives = new ArrayList<>();
+        try (PooledConnection conn = database.reader()) {
+            // Both ends come from the table b-tree, not a scan
+            try (ResultSet rs = conn.prepare("SELECT MIN(rowid), MAX(rowid) FROM challans").executeQuery()) {
+                if (rs.next() && rs.getObject(1) != null) {
+                    first = rs.getLong(1);
+                    last = rs.getLong(2);
+                }
+            }
+            try (ResultSet rs = conn.prepare("SELECT table_name FROM challan_archives ORDER BY month").executeQuery()) {
+                while (rs.next()) {
+                    archives.add(rs.getString(1));
+                }
+            }
+        }
+
+        long chunkRows = Math.max(MIN_CHUNK_ROWS, (last - first + 1) / ((long) parallelism * CHUNKS_PER_WORKER) + 1);
+        List<Chunk> chunks = new ArrayList<>();
+        if (last >= first) {
+            chunks.add(new Chunk(null, first, last, chunkRows));
+        }
+        for (String table : archives) {
+            chunks.add(new Chunk(table, 0, 0, chunkRows));
+        }
+
+        Partial total;
+        try (ForkJoinPool workers = new ForkJoinPool(parallelism)) {
+            total = workers.submit(() -> {
+                ForkJoinTask.invokeAll(chunks);
+                Partial merged = new Partial();
+                for (Chunk chunk : chunks) {
+                    merged.merge(chunk.join());
+                }
+                return merged;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while building the report", e);
+        } catch (ExecutionException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+                if (cause instanceof SQLException sql) throw sql;
+            }
+            throw new SQLException("Report failed: " + e.getCause(), e.getCause());
+        }
+        return total.toReport(LocalDate.ofEpochDay(today), System.nanoTime() - start);
+    }
+
+    /** A rowid range of {@code challans} that splits until it is small enough, or one whole archive table. */
+    private final class Chunk extends RecursiveTask<Partial> {
+        private final String table;
+        private final long from;
+        private final long to;
+        private final long chunkRows;
+
+        Chunk(String table, long from, long to, long chunkRows) {
+            this.table = table;
+            this.from = from;
+            this.to = to;
+            this.chunkRows = chunkRows;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (table == null && to - from >= chunkRows) {
+                long middle = from + (to - from) / 2;
+                Chunk left = new Chunk(null, from, middle, chunkRows);
+                left.fork();
+                Partial right = new Chunk(null, middle + 1, to, chunkRows).compute();
+                return left.join().merge(right);
+            }
+            try {
+                return scan();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Error scanning challans for the report", e);
+            }
+        }
+
+        private Partial scan() throws SQLException {
+            Partial partial = new Partial();
+            try (PooledConnection conn = database.reader()) {
+                PreparedStatement pstmt;
+                if (table == null) {
+                    pstmt = conn.prepare("SELECT " + COLUMNS + " FROM challans WHERE rowid BETWEEN ? AND ?");
+                    pstmt.setLong(2, from);
+                    pstmt.setLong(3, to);
+                } else {
+                    pstmt = conn.prepare("SELECT " + COLUMNS + " FROM " + table);
+                }
+                pstmt.setLong(1, today);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        partial.add(rs.getBytes(1), rs.getLong(2), rs.getLong(3));
+                    }
+                }
+            }
+            return partial;
+        }
+    }
+
+    /** Running figures for one key; amounts in paise so sums are exact. */
+    private static final class Totals {
+        long issued;
+        long finesIssued;
+        long paid;
+        long collected;
+        long pending;
+        long pendingAmount;
+        long overdue;
+        long penalties;
+
+        void add(long code, long penalty) {
+            long fine = code >> STATUS_BITS;
+            issued++;
+            finesIssued += fine;
+            if ((code & PAID) != 0) {
+                paid++;
+                collected += fine;
+            } else if ((code & PENDING) != 0) {
+                pending++;
+                pendingAmount += fine;
+                penalties += penalty;
+                if ((code & OVERDUE) != 0) {
+                    overdue++;
+                }
+            }
+        }
+
+        void merge(Totals other) {
+            issued += other.issued;
+            finesIssued += other.finesIssued;
+            paid += other.paid;
+            collected += other.collected;
+            pending += other.pending;
+            pendingAmount += other.pendingAmount;
+            overdue += other.overdue;
+            penalties += other.penalties;
+        }
+
+        ChallanReport.Row toRow(String key) {
+            return new ChallanReport.Row(key, issued, finesIssued / 100.0, paid, collected / 100.0, pending,
+                    pendingAmount / 100.0, overdue, penalties / 100.0);
+        }
+    }
+
+    /** The aggregate of one or more chunks; only ever touched by the task that owns it. */
+    private static final class Partial {
+        // Keyed by location + SEPARATOR + violation
+        final Map<String, Totals> pairs = new HashMap<>();
+        // Index HOURS collects rows without a readable issue time
+        final Totals[] hours = new Totals[HOURS + 1];
+        // Keyed by year * 100 + month, 0 when the issue date does not start with one
+        final Map<Integer, Totals> months = new HashMap<>();
+
+        void add(byte[] text, long code, long penalty) {
+            int date = 0;
+            while (text[date] != SEPARATOR) {
+                date++;
+            }
+            pairs.computeIfAbsent(new String(text, date + 1, text.length - date - 1, StandardCharsets.UTF_8),
+                    k -> new Totals()).add(code, penalty);
+
+            // "yyyy-MM-dd HH", matching the month prefix ChallanArchive accepts
+            int hour = HOURS;
+            if (date == 13 && text[11] >= '0' && text[11] <= '2' && isDigit(text[12])) {
+                hour = Math.min((text[11] - '0') * 10 + text[12] - '0', HOURS);
+            }
+            Totals byHour = hours[hour];
+            if (byHour == null) {
+                byHour = hours[hour] = new Totals();
+            }
+            byHour.add(code, penalty);
+
+            int month = 0;
+            if (date >= 7 && isDigit(text[0]) && isDigit(text[1]) && isDigit(text[2]) && isDigit(text[3])
+                    && text[4] == '-' && isDigit(text[5]) && isDigit(text[6])) {
+                month = ((text[0] - '0') * 1000 + (text[1] - '0') * 100 + (text[2] - '0') * 10 + text[3] - '0') * 100
+                        + (text[5] - '0') * 10 + text[6] - '0';
+            }
+            months.computeIfAbsent(month, k -> new Totals()).add(code, penalty);
+        }
+
+        private static boolean isDigit(byte b) {
+            return b >= '0' && b <= '9';
+        }
+
+        Partial merge(Partial other) {
+            merge(pairs, other.pairs);
+            for (int i = 0; i < hours.length; i++) {
+                if (other.hours[i] == null) continue;
+                if (hours[i] == null) {
+                    hours[i] = other.hours[i];
+                } else {
+                    hours[i].merge(other.hours[i]);
+                }
+            }
+            merge(months, other.months);
+            return this;
+        }
+
+        private static <K> void merge(Map<K, Totals> into, Map<K, Totals> from) {
+            for (Map.Entry<K, Totals> entry : from.entrySet()) {
+                Totals existing = into.putIfAbsent(entry.getKey(), entry.getValue());
+                if (existing != null) {
+                    existing.merge(entry.getValue());
+                }
+            }
+        }
+
+        ChallanReport toReport(LocalDate asOf, long elapsedNanos) {
+            Map<String, Totals> locations = new HashMap<>();
+            Map<String, Totals> violations = new HashMap<>();
+            for (Map.Entry<String, Totals> pair : pairs.entrySet()) {
+                String key = pair.getKey();
+                int separator = key.indexOf(SEPARATOR);
+                locations.computeIfAbsent(key.substring(0, separator), k -> new Totals()).merge(pair.getValue());
+                violations.computeIfAbsent(key.substring(separator + 1), k -> new Totals()).merge(pair.getValue());
+            }
+            Map<ChallanReport.Dimension, List<ChallanReport.Row>> rows = new EnumMap<>(ChallanReport.Dimension.class);
+            rows.put(ChallanReport.Dimension.LOCATION, sorted(locations, key -> key));
+            rows.put(ChallanReport.Dimension.VIOLATION, sorted(violations, key -> key));
+            List<ChallanReport.Row> byHour = new ArrayList<>();
+            Totals all = new Totals();
+            // The unknown-hour slot sorts first, like the empty key elsewhere
+            if (hours[HOURS] != null) {
+                byHour.add(hours[HOURS].toRow(""));
+                all.merge(hours[HOURS]);
+            }
+            for (int hour = 0; hour < HOURS; hour++) {
+                if (hours[hour] == null) continue;
+                byHour.add(hours[hour].toRow(String.format("%02d", hour)));
+                all.merge(hours[hour]);
+            }
+            rows.put(ChallanReport.Dimension.HOUR, List.copyOf(byHour));
+            rows.put(ChallanReport.Dimension.MONTH, sorted(months,
+                    month -> month == 0 ? "" : String.format("%04d-%02d", month / 100, month % 100)));
+            return new ChallanReport(asOf, rows, all.toRow(""), elapsedNanos);
+        }
+
+        private static <K> List<ChallanReport.Row> sorted(Map<K, Totals> totals, Function<K, String> keyName) {
+            List<ChallanReport.Row> rows = new ArrayList<>(totals.size());
+            for (Map.Entry<K, Totals> entry : totals.entrySet()) {
+                rows.add(entry.getValue().toRow(keyName.apply(entry.getKey())));
+            }
+            rows.sort(Comparator.comparing(ChallanReport.Row::key));
+            return List.copyOf(rows);
+        }
+    }
+}
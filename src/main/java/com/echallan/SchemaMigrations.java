@@ -0,0 +1,245 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.List;
+
+/**
+ * Versioned schema of the challan database. {@code PRAGMA user_version} holds the number of migrations
+ * applied, so opening an up-to-date file costs one query and no metadata scans. Missing migrations run in
+ * order, each in its own transaction together with the version bump, so an interrupted upgrade resumes
+ * where it stopped. A step that fills in a value for existing rows does that first, in chunks committed
+ * one at a time, so a large file is not rewritten in a single transaction and an interrupted backfill
+ * resumes with the rows still missing. Migrations only add tables, columns, indexes, triggers and views;
+ * none drops or rewrites challan data.
+ *
+ * <p>Files written before versioning report version 0 yet may already hold some of these objects, so
+ * every step checks for what it creates.
+ */
+final class SchemaMigrations {
+    private interface Migration {
+        void apply(PooledConnection conn) throws SQLException;
+    }
+
+    // backfill, when present, runs before the step's transaction and commits as it goes
+    private record Step(String description, Migration migration, Migration backfill) {
+        Step(String description, Migration migration) {
+            this(description, migration, null);
+        }
+    }
+
+    // Rows per backfill transaction
+    private static final int BACKFILL_CHUNK_SIZE = 10_000;
+
+    // Append only: a step's position is its version number
+    private static final List<Step> STEPS = List.of(
+            new Step("challans table and listing indexes", SchemaMigrations::createChallans),
+            new Step("normalized vehicle_key column", SchemaMigrations::addVehicleKey,
+                    SchemaMigrations::backfillVehicleKey),
+            new Step("FTS5 trigram index on plates", SchemaMigrations::addTrigramIndex),
+            new Step("due_day generated column", SchemaMigrations::addDueDay),
+            new Step("challan_stats summary table", ChallanStatistics::install),
+            new Step("archive registry and history views", ChallanArchive::install),
+            new Step("materialized penalty_amount and penalty rules", SchemaMigrations::addPenalties),
+            new Step("challan_events change log", ChallanEvents::install),
+            new Step("gates for the triggers bulk writes replace", TriggerGates::install));
+
+    static final int CURRENT_VERSION = STEPS.size();
+
+    private SchemaMigrations() {
+    }
+
+    /** Brings the schema up to {@link #CURRENT_VERSION}; returns the version the file was at before. */
+    static int migrate(PooledConnection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version > CURRENT_VERSION) {
+            throw new SQLException("Database schema version " + version + " is newer than this build supports ("
+                    + CURRENT_VERSION + ")");
+        }
+        for (int next = version; next < CURRENT_VERSION; next++) {
+            Step step = STEPS.get(next);
+            long start = System.nanoTime();
+            try {
+                if (step.backfill() != null) {
+                    step.backfill().apply(conn);
+                }
+                conn.begin();
+                try (Statement stmt = conn.getConnection().createStatement()) {
+                    step.migration().apply(conn);
+                    stmt.execute("PRAGMA user_version = " + (next + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                throw new SQLException("Schema migration " + (next + 1) + " (" + step.description() + ") failed: "
+                        + e.getMessage(), e);
+            }
+            Log.info("Applied schema migration " + (next + 1) + ": " + step.description() + " in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+        return version;
+    }
+
+    static boolean hasTrigramIndex(PooledConnection conn) throws SQLException {
+        try (ResultSet rs = conn.prepare("SELECT 1 FROM sqlite_master WHERE name = 'challans_plate_fts'").executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    // 1. Files from before the issue_date column were once dropped and recreated; now the columns are added
+    private static void createChallans(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS challans (
+                    challan_id TEXT PRIMARY KEY,
+                    vehicle_number TEXT NOT NULL,
+                    violation TEXT NOT NULL,
+                    fine REAL NOT NULL,
+                    status TEXT DEFAULT 'PENDING',
+                    issue_date TEXT,
+                    due_date TEXT,
+                    location TEXT DEFAULT 'Not Specified'
+                )
+            """);
+            addColumnIfMissing(conn, stmt, "status", "TEXT DEFAULT 'PENDING'");
+            addColumnIfMissing(conn, stmt, "issue_date", "TEXT");
+            addColumnIfMissing(conn, stmt, "due_date", "TEXT");
+            addColumnIfMissing(conn, stmt, "location", "TEXT DEFAULT 'Not Specified'");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_challans_issue ON challans(issue_date, challan_id)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_challans_status_issue ON challans(status, issue_date, challan_id)");
+        }
+    }
+
+    // 2. Normalized plate for exact and prefix search
+    private static void addVehicleKey(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            addColumnIfMissing(conn, stmt, "vehicle_key", "TEXT");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_challans_vehicle_key ON challans(vehicle_key)");
+        }
+    }
+
+    // Keys for rows written before the column existed, in short transactions so the writer is not held
+    // for the whole table and a restart picks up the rows still NULL
+    private static void backfillVehicleKey(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            addColumnIfMissing(conn, stmt, "vehicle_key", "TEXT");
+        }
+        long total = 0;
+        try (PreparedStatement select = conn.prepareStatement(
+                     "SELECT rowid, vehicle_number FROM challans WHERE vehicle_key IS NULL LIMIT " + BACKFILL_CHUNK_SIZE);
+             PreparedStatement update = conn.prepareStatement("UPDATE challans SET vehicle_key = ? WHERE rowid = ?")) {
+            while (true) {
+                int batch = 0;
+                pooled.begin();
+                try {
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            update.setString(1, PlateNumbers.normalize(rs.getString(2)));
+                            update.setLong(2, rs.getLong(1));
+                            update.addBatch();
+                            batch++;
+                        }
+                    }
+                    if (batch > 0) update.executeBatch();
+                    pooled.commit();
+                } catch (SQLException e) {
+                    pooled.rollback();
+                    throw e;
+                }
+                if (batch == 0) break;
+                total += batch;
+            }
+        }
+        if (total > 0) {
+            Log.info("Backfilled vehicle_key for " + total + " challans");
+        }
+    }
+
+    // 3. External-content FTS5 table: the index stores only trigrams, the plates stay in challans.
+    // SQLite builds without FTS5 skip it and substring search falls back to a scan.
+    private static void addTrigramIndex(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            boolean exists;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'challans_plate_fts'")) {
+                exists = rs.next();
+            }
+            try {
+                stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS challans_plate_fts USING fts5(vehicle_key, content='challans', content_rowid='rowid', tokenize='trigram')");
+            } catch (SQLException e) {
+                Log.warn("FTS5 trigram index unavailable, substring search will scan: " + e.getMessage());
+                return;
+            }
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS challans_plate_fts_insert AFTER INSERT ON challans BEGIN
+                    INSERT INTO challans_plate_fts(rowid, vehicle_key) VALUES (new.rowid, new.vehicle_key);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS challans_plate_fts_delete AFTER DELETE ON challans BEGIN
+                    INSERT INTO challans_plate_fts(challans_plate_fts, rowid, vehicle_key) VALUES ('delete', old.rowid, old.vehicle_key);
+                END
+            """);
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS challans_plate_fts_update AFTER UPDATE OF vehicle_key ON challans BEGIN
+                    INSERT INTO challans_plate_fts(challans_plate_fts, rowid, vehicle_key) VALUES ('delete', old.rowid, old.vehicle_key);
+                    INSERT INTO challans_plate_fts(rowid, vehicle_key) VALUES (new.rowid, new.vehicle_key);
+                END
+            """);
+            if (!exists) {
+                stmt.execute("INSERT INTO challans_plate_fts(challans_plate_fts) VALUES ('rebuild')");
+                Log.info("Built trigram index for vehicle search");
+            }
+        }
+    }
+
+    /*
+     * 4. The due date as an epoch day, so overdue checks are an integer range scan on (status, due_day)
+     * instead of parsing dates in Java. A virtual generated column: always in step with due_date, free to
+     * add to an existing table and takes no space outside the index.
+     */
+    private static void addDueDay(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            addColumnIfMissing(conn, stmt, "due_day", "INTEGER GENERATED ALWAYS AS "
+                    + "(CAST(julianday(due_date) - 2440587.5 AS INTEGER)) VIRTUAL");
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_challans_status_due ON challans(status, due_day)");
+        }
+    }
+
+    // 7. The late-payment penalty stored on each row, carried into the summary and the archive, and the
+    // rule table the daily accrual applies. Stored penalties start at zero until the first accrual.
+    private static void addPenalties(PooledConnection conn) throws SQLException {
+        addPenaltyAmount(conn);
+        ChallanStatistics.addPenalties(conn);
+        ChallanArchive.addPenalties(conn);
+        ChallanPenalties.install(conn);
+    }
+
+    private static void addPenaltyAmount(PooledConnection pooled) throws SQLException {
+        Connection conn = pooled.getConnection();
+        try (Statement stmt = conn.createStatement()) {
+            addColumnIfMissing(conn, stmt, "penalty_amount", "REAL NOT NULL DEFAULT 0");
+        }
+    }
+
+    private static void addColumnIfMissing(Connection conn, Statement stmt, String column, String definition)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM pragma_table_xinfo('challans') WHERE name = ?")) {
+            pstmt.setString(1, column);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return;
+            }
+        }
+        stmt.execute("ALTER TABLE challans ADD COLUMN " + column + " " + definition);
+        Log.info("Added " + column + " column to challans");
+    }
+}
@@ -0,0 +1,11 @@
+package com.echallan;
+
+/** How {@link Database#searchByVehicle(String, SearchMode)} matches the normalized plate. */
+public enum SearchMode {
+    /** Whole plate, served by the {@code vehicle_key} B-tree index. */
+    EXACT,
+    /** Leading characters, served by a range scan on the same index. */
+    PREFIX,
+    /** Anywhere in the plate, served by the FTS5 trigram index for 3+ characters. */
+    SUBSTRING
+}
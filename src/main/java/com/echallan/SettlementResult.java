@@ -0,0 +1,84 @@
+package com.echallan;
+
+import java.util.*;
+
+/**
+ * Outcome of a bulk payment settlement: how many challans were newly marked PAID, and which IDs were
+ * already paid or matched no challan. Everything is counted in full but only the first
+ * {@link #MAX_RECORDED_IDS} IDs of each kind are kept, so a file of unknown IDs cannot exhaust memory.
+ */
+public class SettlementResult {
+    public static final int MAX_RECORDED_IDS = 10_000;
+
+    private long settled;
+    private long alreadyPaid;
+    private long unmatched;
+    private long failed;
+    private long elapsedNanos;
+    private final List<String> alreadyPaidIds = new ArrayList<>();
+    private final List<String> unmatchedIds = new ArrayList<>();
+
+    void addSettled(long count) {
+        settled += count;
+    }
+
+    void addAlreadyPaid(String challanId) {
+        alreadyPaid++;
+        if (alreadyPaidIds.size() < MAX_RECORDED_IDS) {
+            alreadyPaidIds.add(challanId);
+        }
+    }
+
+    void addUnmatched(String challanId) {
+        unmatched++;
+        if (unmatchedIds.size() < MAX_RECORDED_IDS) {
+            unmatchedIds.add(challanId);
+        }
+    }
+
+    void addFailed(long count) {
+        failed += count;
+    }
+
+    void merge(SettlementResult other) {
+        settled += other.settled;
+        alreadyPaid += other.alreadyPaid;
+        unmatched += other.unmatched;
+        failed += other.failed;
+        for (String id : other.alreadyPaidIds) {
+            if (alreadyPaidIds.size() >= MAX_RECORDED_IDS) break;
+            alreadyPaidIds.add(id);
+        }
+        for (String id : other.unmatchedIds) {
+            if (unmatchedIds.size() >= MAX_RECORDED_IDS) break;
+            unmatchedIds.add(id);
+        }
+    }
+
+    void addElapsedNanos(long nanos) {
+        elapsedNanos += nanos;
+    }
+
+    /** Challans changed to PAID by this settlement. */
+    public long getSettled() { return settled; }
+    /** IDs that were PAID before this settlement reached them, archived ones and repeats in the file included. */
+    public long getAlreadyPaid() { return alreadyPaid; }
+    /** IDs with no challan, hot or archived. */
+    public long getUnmatched() { return unmatched; }
+    /** IDs not applied because their chunk failed to commit, plus lines that could not be read as an ID. */
+    public long getFailed() { return failed; }
+    public List<String> getAlreadyPaidIds() { return Collections.unmodifiableList(alreadyPaidIds); }
+    public List<String> getUnmatchedIds() { return Collections.unmodifiableList(unmatchedIds); }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    /** IDs processed per second, whatever their outcome. */
+    public double getIdsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (settled + alreadyPaid + unmatched + failed) * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Settled " + settled + " challans, already paid " + alreadyPaid + ", unmatched " + unmatched
+                + ", failed " + failed + String.format(" (%.0f IDs/s)", getIdsPerSecond());
+    }
+}
@@ -0,0 +1,156 @@
+package com.echallan;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style 64-bit IDs: 41 bits of milliseconds since {@link #EPOCH}, a 10-bit node ID and a 12-bit
+ * per-millisecond sequence, so each node issues up to 4,096 IDs per millisecond and nodes never collide.
+ * IDs increase with time on every node. The text form ({@link #nextId()}) is {@code "CH"} followed by 13
+ * Crockford base32 digits, which sort in the same order as the numbers.
+ *
+ * <p>The generator is lock-free: the last timestamp and sequence live in one {@link AtomicLong} advanced by
+ * compare-and-set. If the wall clock steps backwards, numbering continues from the last millisecond issued
+ * rather than repeating IDs; once that millisecond's sequence runs out the generator borrows the next one
+ * instead of stalling until the clock catches up.
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+    /** 2024-01-01T00:00:00Z; 41 bits of milliseconds from here last until 2093. */
+    public static final long EPOCH = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    public static final String PREFIX = "CH";
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << 41) - 1;
+    // Waiting for the next millisecond is fine; waiting out a large clock step is not
+    private static final long MAX_WAIT_MILLIS = 2;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int TEXT_LENGTH = 13;
+
+    private final long nodeBits;
+    private final LongSupplier clock;
+    // (milliseconds since EPOCH << SEQUENCE_BITS) | sequence of the last ID issued
+    private final AtomicLong state;
+
+    public SnowflakeIdGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis, 0);
+    }
+
+    /**
+     * @param clock        wall clock in epoch milliseconds
+     * @param lastIssuedId an ID this node issued before, e.g. read back after a restart, that new IDs must
+     *                     exceed even if the clock is now behind it; 0 if none
+     */
+    public SnowflakeIdGenerator(int nodeId, LongSupplier clock, long lastIssuedId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("nodeId must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+        this.state = new AtomicLong(((lastIssuedId >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS)
+                | (lastIssuedId & SEQUENCE_MASK));
+    }
+
+    /**
+     * Node ID from the {@code echallan.node.id} system property, or else derived from the host name.
+     * Terminals sharing a database should set the property, since two host names can hash alike.
+     */
+    public static int nodeIdFromEnvironment() {
+        String configured = System.getProperty("echallan.node.id");
+        if (configured != null) {
+            return Integer.parseInt(configured.trim());
+        }
+        try {
+            return Math.floorMod(InetAddress.getLocalHost().getHostName().hashCode(), MAX_NODE_ID + 1);
+        } catch (UnknownHostException e) {
+            Log.warn("Could not read host name for the ID generator node; using node 0");
+            return 0;
+        }
+    }
+
+    public long nextLong() {
+        while (true) {
+            long current = state.get();
+            long last = current >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            if (now < 0) {
+                throw new IllegalStateException("Clock is before the ID epoch: " + Instant.ofEpochMilli(now + EPOCH));
+            }
+
+            long next;
+            if (now > last) {
+                next = now << SEQUENCE_BITS;
+            } else if ((current & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // Same millisecond, or the clock stepped back: keep counting in the last millisecond issued
+                next = current + 1;
+            } else if (last - now < MAX_WAIT_MILLIS) {
+                // Sequence exhausted; the next millisecond is about to start
+                Thread.onSpinWait();
+                continue;
+            } else {
+                // Exhausted while the clock is well behind: borrow the next millisecond
+                next = (last + 1) << SEQUENCE_BITS;
+            }
+            if ((next >>> SEQUENCE_BITS) > MAX_TIMESTAMP) {
+                throw new IllegalStateException("ID timestamp space exhausted");
+            }
+            if (state.compareAndSet(current, next)) {
+                return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    @Override
+    public String nextId() {
+        return PREFIX + toText(nextLong());
+    }
+
+    /** Epoch milliseconds at which {@code id} was issued (by the generator's clock). */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    /** Fixed-width Crockford base32, so text order matches numeric order for non-negative IDs. */
+    public static String toText(long id) {
+        char[] text = new char[TEXT_LENGTH];
+        for (int i = TEXT_LENGTH - 1; i >= 0; i--) {
+            text[i] = DIGITS[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(text);
+    }
+
+    /** Inverse of {@link #toText(long)}; also accepts the {@code "CH"}-prefixed form of {@link #nextId()}. */
+    public static long parse(String text) {
+        String digits = text.startsWith(PREFIX) ? text.substring(PREFIX.length()) : text;
+        if (digits.length() != TEXT_LENGTH) {
+            throw new IllegalArgumentException("Not a generated challan ID: " + text);
+        }
+        long id = 0;
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            int value = indexOf(Character.toUpperCase(digits.charAt(i)));
+            if (value < 0 || (i == 0 && value > 15)) {
+                throw new IllegalArgumentException("Not a generated challan ID: " + text);
+            }
+            id = (id << 5) | value;
+        }
+        return id;
+    }
+
+    private static int indexOf(char c) {
+        for (int i = 0; i < DIGITS.length; i++) {
+            if (DIGITS[i] == c) return i;
+        }
+        return -1;
+    }
+}
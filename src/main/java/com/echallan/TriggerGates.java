@@ -0,0 +1,63 @@
+package com.echallan;
+
+import java.sql.*;
+import java.util.Map;
+
+/**
+ * Switches for per-row triggers that set-based writes replace. Each gated trigger carries a {@code WHEN}
+ * clause that skips it while its gate's row is in {@code challan_trigger_gates}; a bulk path inserts the
+ * row at the start of its transaction and deletes it before committing. Unlike dropping and recreating the
+ * triggers this leaves the schema alone, so pooled connections keep their prepared statements, and a gate
+ * row is never committed: an interrupted transaction rolls it back and the triggers stay on.
+ */
+final class TriggerGates {
+    /** The per-row insert triggers that bulk inserts replace with one statement per chunk. */
+    static final String BULK_INSERT = "bulk_insert";
+    /** The statistics update trigger that settlement and penalty accrual replace with bulk adjustments. */
+    static final String STATS_UPDATE = "stats_update";
+
+    private static final Map<String, String> GATED_TRIGGERS = Map.of(
+            "challans_plate_fts_insert", BULK_INSERT,
+            "challan_stats_insert", BULK_INSERT,
+            ChallanEvents.INSERT_TRIGGER, BULK_INSERT,
+            "challan_stats_update", STATS_UPDATE);
+
+    private TriggerGates() {
+    }
+
+    /** Schema migration: the gate table, and the gated triggers recreated with their {@code WHEN} clause. */
+    static void install(PooledConnection conn) throws SQLException {
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS challan_trigger_gates (gate TEXT PRIMARY KEY) WITHOUT ROWID");
+            for (Map.Entry<String, String> trigger : GATED_TRIGGERS.entrySet()) {
+                String sql;
+                try (ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'trigger' AND name = '"
+                        + trigger.getKey() + "'")) {
+                    // The trigram trigger is missing where SQLite has no FTS5
+                    if (!rs.next()) continue;
+                    sql = rs.getString(1);
+                }
+                if (sql.contains("challan_trigger_gates")) continue;
+                // None of these triggers has a WHEN clause of its own, so the first BEGIN opens the body
+                String gated = sql.replaceFirst("(?i)\\s+BEGIN\\b", " WHEN NOT EXISTS (SELECT 1 FROM challan_trigger_gates "
+                        + "WHERE gate = '" + trigger.getValue() + "') BEGIN");
+                stmt.execute("DROP TRIGGER " + trigger.getKey());
+                stmt.execute(gated);
+            }
+        }
+    }
+
+    /** Turns off the triggers behind {@code gate} for the rest of the caller's transaction. */
+    static void suspend(PooledConnection conn, String gate) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("INSERT OR IGNORE INTO challan_trigger_gates (gate) VALUES (?)");
+        pstmt.setString(1, gate);
+        pstmt.executeUpdate();
+    }
+
+    /** Turns the triggers behind {@code gate} back on; must run before the caller's transaction commits. */
+    static void resume(PooledConnection conn, String gate) throws SQLException {
+        PreparedStatement pstmt = conn.prepare("DELETE FROM challan_trigger_gates WHERE gate = ?");
+        pstmt.setString(1, gate);
+        pstmt.executeUpdate();
+    }
+}
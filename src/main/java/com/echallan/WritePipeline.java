@@ -0,0 +1,334 @@
+package com.echallan;
+
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-writer queue with group commit. Writes from any number of threads are queued and applied by one
+ * writer thread, many to a transaction, so a burst of N writes costs one commit (and one fsync) instead of
+ * N. While one batch commits the next one collects in the queue; when writers are contending the writer
+ * also waits up to {@link DatabaseConfig#getWriteBatchDelayMillis()} for a batch to fill, up to
+ * {@link DatabaseConfig#getWriteBatchSize()} writes. A lone writer is committed at once. Each write runs
+ * under its own savepoint, so a failing write is rolled back alone and the rest of its batch still commits.
+ * The writer thread waits for the write connection as long as a bulk import or maintenance job holds it,
+ * rather than failing the batch when {@link DatabaseConfig#getAcquireTimeoutMillis()} runs out.
+ *
+ * <p>Futures complete, in submission order, only after the batch holding the write has committed, with
+ * {@code synchronous=FULL} when {@link DatabaseConfig#isDurableWrites()} is set. The queue is FIFO and
+ * there is one writer, so writes to the same challan apply in the order they were submitted.
+ */
+public class WritePipeline implements AutoCloseable {
+    /**
+     * A queued mutation. {@link #apply} returns null if it changed no row, otherwise what the change did
+     * to the plate's dues ({@link OutstandingIndex.Change#NONE} when nothing pending was touched).
+     */
+    sealed interface Write permits Add, Pay, Delete {
+        OutstandingIndex.Change apply(Database database, PooledConnection conn) throws SQLException;
+
+        void committed(Database database, OutstandingIndex.Change change);
+
+        DatabaseMetrics.Operation operation();
+    }
+
+    record Add(Challan challan) implements Write {
+        public OutstandingIndex.Change apply(Database database, PooledConnection conn) throws SQLException {
+            return database.insert(conn, challan) ? OutstandingIndex.Change.added(challan) : null;
+        }
+
+        public void committed(Database database, OutstandingIndex.Change change) {
+            database.cacheAdded(challan, change);
+        }
+
+        public DatabaseMetrics.Operation operation() {
+            return DatabaseMetrics.Operation.ADD_CHALLAN;
+        }
+    }
+
+    record Pay(String challanId) implements Write {
+        public OutstandingIndex.Change apply(Database database, PooledConnection conn) throws SQLException {
+            return database.markPaid(conn, challanId);
+        }
+
+        public void committed(Database database, OutstandingIndex.Change change) {
+            database.cachePaid(challanId, change);
+        }
+
+        public DatabaseMetrics.Operation operation() {
+            return DatabaseMetrics.Operation.PAY_CHALLAN;
+        }
+    }
+
+    record Delete(String challanId) implements Write {
+        public OutstandingIndex.Change apply(Database database, PooledConnection conn) throws SQLException {
+            return database.remove(conn, challanId);
+        }
+
+        public void committed(Database database, OutstandingIndex.Change change) {
+            database.cacheRemoved(challanId, change);
+        }
+
+        public DatabaseMetrics.Operation operation() {
+            return DatabaseMetrics.Operation.DELETE_CHALLAN;
+        }
+    }
+
+    private record Pending(Write write, CompletableFuture<Boolean> result, long submittedNanos) {
+    }
+
+    // Queued instead of a write to tell the writer thread to finish
+    private static final Pending SHUTDOWN = new Pending(null, null, 0);
+
+    private final Database database;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    // Waits for the writer longer than this are logged; other callers would have given up
+    private final long acquireTimeoutMillis;
+    // PRAGMA statements wrapped around each batch, or null when the configured mode is already durable
+    private final String durableSql;
+    private final String restoreSql;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private boolean closed;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+
+    WritePipeline(Database database, DatabaseConfig config) {
+        this.database = database;
+        this.maxBatchSize = config.getWriteBatchSize();
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getWriteBatchDelayMillis());
+        this.acquireTimeoutMillis = config.getAcquireTimeoutMillis();
+        String synchronous = config.getSynchronous();
+        boolean raise = config.isDurableWrites() && !synchronous.equals("FULL") && !synchronous.equals("EXTRA");
+        this.durableSql = raise ? "PRAGMA synchronous = FULL" : null;
+        this.restoreSql = raise ? "PRAGMA synchronous = " + synchronous : null;
+        this.writer = Thread.ofPlatform().name("challan-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Queues an insert. A challan that bulk import would reject (blank ID or plate, no violation, bad fine) is not
+     * queued: its future completes with false and the reason is logged.
+     */
+    public CompletableFuture<Boolean> addChallan(Challan challan) {
+        String problem = Database.validate(challan);
+        if (problem != null) {
+            Log.warn("Challan " + (challan != null ? challan.getChallanId() : null) + " not added: " + problem);
+            database.getMetrics().recordError(DatabaseMetrics.Operation.ADD_CHALLAN);
+            return CompletableFuture.completedFuture(false);
+        }
+        return submit(new Add(challan));
+    }
+
+    public CompletableFuture<Boolean> payChallan(String challanId) {
+        return submit(new Pay(challanId));
+    }
+
+    public CompletableFuture<Boolean> deleteChallan(String challanId) {
+        return submit(new Delete(challanId));
+    }
+
+    CompletableFuture<Boolean> submit(Write write) {
+        Objects.requireNonNull(write, "write");
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        // Under the same lock as close(), so nothing is queued behind the shutdown marker
+        synchronized (this) {
+            if (!closed) {
+                queue.add(new Pending(write, result, System.nanoTime()));
+                return result;
+            }
+        }
+        result.completeExceptionally(new IllegalStateException("Write pipeline is closed"));
+        return result;
+    }
+
+    /** Number of writes applied and number of transactions used for them so far. */
+    public long getWriteCount() { return writes.sum(); }
+    public long getCommitCount() { return commits.sum(); }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        int lastBatchSize = 0;
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Pending first = queue.take();
+                if (first == SHUTDOWN) break;
+                batch.add(first);
+                stopping = drain(batch);
+                // Waiting only pays off when other writers are active; a lone writer commits at once
+                if (!stopping && maxDelayNanos > 0 && (batch.size() > 1 || lastBatchSize > 1)) {
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) break;
+                        Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) break;
+                        if (next == SHUTDOWN) {
+                            stopping = true;
+                            break;
+                        }
+                        batch.add(next);
+                        if (drain(batch)) {
+                            stopping = true;
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (!batch.isEmpty()) {
+                lastBatchSize = batch.size();
+                try {
+                    commit(batch);
+                } catch (RuntimeException e) {
+                    // commit() completes every future itself; this keeps the writer thread alive if it could not
+                    Log.error("Write batch of " + batch.size() + " failed: " + e.getMessage(), e);
+                    for (Pending pending : batch) {
+                        pending.result().completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+        }
+        // Only reached early if the writer was interrupted; fail whatever it did not get to
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            if (pending != SHUTDOWN) {
+                pending.result().completeExceptionally(new IllegalStateException("Write pipeline is closed"));
+            }
+        }
+    }
+
+    // Moves already queued writes into the batch without waiting; true if the shutdown marker was reached
+    private boolean drain(List<Pending> batch) {
+        while (batch.size() < maxBatchSize) {
+            Pending next = queue.poll();
+            if (next == null) return false;
+            if (next == SHUTDOWN) return true;
+            batch.add(next);
+        }
+        return false;
+    }
+
+    private void commit(List<Pending> batch) {
+        long start = System.nanoTime();
+        DatabaseMetrics metrics = database.getMetrics();
+        OutstandingIndex.Change[] applied = new OutstandingIndex.Change[batch.size()];
+        // What a write threw instead of returning; its future completes exceptionally
+        RuntimeException[] failed = new RuntimeException[batch.size()];
+        try (PooledConnection conn = database.awaitWriter()) {
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (waitedMillis > acquireTimeoutMillis) {
+                Log.warn("Write batch of " + batch.size() + " waited " + waitedMillis + " ms for the write connection");
+            }
+            if (durableSql != null) {
+                conn.prepare(durableSql).execute();
+            }
+            try {
+                applyAndCommit(conn, batch, applied, failed);
+            } finally {
+                // The transaction has committed or rolled back by now; SQLite refuses the pragma inside one
+                if (restoreSql != null) {
+                    restoreSynchronous(conn);
+                }
+            }
+            // Still holding the writer, so the cache and dues index see changes in commit order
+            boolean changed = false;
+            for (int i = 0; i < batch.size(); i++) {
+                if (applied[i] != null) {
+                    committed(batch.get(i).write(), applied[i]);
+                    changed = true;
+                }
+            }
+            if (changed) database.eventsCommitted();
+        } catch (SQLException | RuntimeException e) {
+            Log.error("Error committing write batch of " + batch.size() + ": " + e.getMessage());
+            metrics.recordError(DatabaseMetrics.Operation.WRITE_BATCH);
+            metrics.record(DatabaseMetrics.Operation.WRITE_BATCH, start, 0);
+            for (Pending pending : batch) {
+                metrics.recordError(pending.write().operation());
+                metrics.record(pending.write().operation(), pending.submittedNanos(), 0);
+                pending.result().complete(false);
+            }
+            return;
+        }
+        commits.increment();
+        writes.add(batch.size());
+        metrics.record(DatabaseMetrics.Operation.WRITE_BATCH, start, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            // From submission, so the time spent queued behind other batches counts
+            metrics.record(pending.write().operation(), pending.submittedNanos(), applied[i] != null ? 1 : 0);
+            if (failed[i] != null) {
+                pending.result().completeExceptionally(failed[i]);
+            } else {
+                pending.result().complete(applied[i] != null);
+            }
+        }
+    }
+
+    // Each write under its own savepoint: an SQLException fails it with false, a RuntimeException fails it
+    // exceptionally (recorded in failed), and either way the rest of the batch still commits
+    private void applyAndCommit(PooledConnection conn, List<Pending> batch, OutstandingIndex.Change[] applied,
+                                RuntimeException[] failed) throws SQLException {
+        conn.begin();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                Write write = batch.get(i).write();
+                Savepoint savepoint = conn.getConnection().setSavepoint();
+                try {
+                    applied[i] = write.apply(database, conn);
+                    conn.getConnection().releaseSavepoint(savepoint);
+                } catch (SQLException | RuntimeException e) {
+                    conn.getConnection().rollback(savepoint);
+                    applied[i] = null;
+                    if (e instanceof RuntimeException runtime) failed[i] = runtime;
+                    database.getMetrics().recordError(write.operation());
+                    Log.error("Write " + write + " failed: " + e, e instanceof RuntimeException ? e : null);
+                }
+            }
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        }
+    }
+
+    // The write has committed, so a failing cache, dues index or repeat-offender hook does not fail it
+    private void committed(Write write, OutstandingIndex.Change change) {
+        try {
+            write.committed(database, change);
+        } catch (RuntimeException e) {
+            Log.error("Write " + write + " committed but updating the in-memory state failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void restoreSynchronous(PooledConnection conn) {
+        try {
+            conn.prepare(restoreSql).execute();
+        } catch (SQLException e) {
+            // Logged rather than thrown, so it never hides the error that ended the batch
+            Log.warn("Could not restore " + restoreSql + ": " + e.getMessage());
+        }
+    }
+
+    /** Applies everything already queued, then stops the writer thread. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.add(SHUTDOWN);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}